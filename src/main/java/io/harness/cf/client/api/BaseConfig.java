@@ -46,6 +46,35 @@ public class BaseConfig {
   /** store previous and current version of the FeatureConfig */
   @Builder.Default private final boolean enableFeatureSnapshot = false;
 
+  /**
+   * Maximum number of cached evaluation results per flag and target. Cached results are dropped
+   * automatically when the flag, its prerequisites or its segments change. 0 disables the cache.
+   */
+  @Builder.Default private final int evaluationCacheSize = 0;
+
+  /**
+   * Keep flags and segments in an unbounded copy-on-write snapshot instead of the configured cache.
+   * Evaluations read a consistent version of all flags and segments and updates never evict.
+   */
+  @Builder.Default private final boolean enableSnapshotRepository = false;
+
+  /**
+   * Local file holding a last known good copy of all flags and segments, written by the SDK. If
+   * set, the file is loaded at startup and evaluations are served from it until the first fetch
+   * from the server completes and replaces it.
+   */
+  private final String warmStartFile;
+
+  /** How often, in seconds, the warm start file is rewritten if flags or segments changed */
+  @Builder.Default private final int warmStartWriteIntervalInSeconds = 60;
+
+  /**
+   * How long, in milliseconds, a fetch triggered by a stream event waits for further events about
+   * the same flag or segment. Events arriving meanwhile, or while the fetch runs, are merged into a
+   * single fetch. 0 fetches right away.
+   */
+  @Builder.Default private final long streamUpdateDebounceInMillis = 0;
+
   /** Get metrics post frequency in seconds */
   public int getFrequency() {
     return Math.max(frequency, Config.MIN_FREQUENCY);
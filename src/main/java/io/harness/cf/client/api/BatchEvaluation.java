@@ -0,0 +1,101 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.client.dto.Target;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * BatchEvaluation reads targets in chunks and evaluates the chunks on an executor. A bounded
+ * number of chunks is in flight at any time and results are handed out in the order the targets
+ * were read, so arbitrarily large inputs can be streamed through with constant memory.
+ */
+final class BatchEvaluation implements Iterator<TargetEvaluation> {
+
+  static final int CHUNK_SIZE = 64;
+  static final int MAX_CHUNKS_IN_FLIGHT = 16;
+
+  private final Iterator<? extends Target> targets;
+  private final Function<List<Target>, List<TargetEvaluation>> evaluator;
+  private final Executor executor;
+  private final Runnable onComplete;
+  private final Deque<CompletableFuture<List<TargetEvaluation>>> inFlight = new ArrayDeque<>();
+  private final AtomicBoolean completed = new AtomicBoolean();
+  private Iterator<TargetEvaluation> current = Collections.emptyIterator();
+
+  BatchEvaluation(
+      Iterator<? extends Target> targets,
+      Function<List<Target>, List<TargetEvaluation>> evaluator,
+      Executor executor,
+      Runnable onComplete) {
+    this.targets = targets;
+    this.evaluator = evaluator;
+    this.executor = executor;
+    this.onComplete = onComplete;
+  }
+
+  Stream<TargetEvaluation> stream() {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(this::close);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      submit();
+      if (inFlight.isEmpty()) {
+        close();
+        return false;
+      }
+      current = join(inFlight.poll()).iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public TargetEvaluation next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  private void submit() {
+    while (inFlight.size() < MAX_CHUNKS_IN_FLIGHT && targets.hasNext()) {
+      final List<Target> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (chunk.size() < CHUNK_SIZE && targets.hasNext()) {
+        chunk.add(targets.next());
+      }
+      inFlight.add(CompletableFuture.supplyAsync(() -> evaluator.apply(chunk), executor));
+    }
+  }
+
+  private List<TargetEvaluation> join(CompletableFuture<List<TargetEvaluation>> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      close();
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void close() {
+    if (completed.compareAndSet(false, true)) {
+      CompletableFuture<List<TargetEvaluation>> pending;
+      while ((pending = inFlight.poll()) != null) {
+        pending.cancel(false);
+      }
+      onComplete.run();
+    }
+  }
+}
@@ -0,0 +1,591 @@
+package io.harness.cf.client.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import io.harness.cf.model.*;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.NonNull;
+
+/**
+ * BinaryCodec is a compact, versioned binary encoding of {@link FeatureConfig}, {@link Segment} and
+ * {@link FeatureSnapshot}. Fields are written in the fixed order of the API schema without names,
+ * and every distinct string is written once into a table at the start of the value and referenced
+ * by index afterwards, so identifiers repeated across variations, rules and clauses cost a byte or
+ * two. Decoding reads straight from a {@link ByteBuffer}, such as a memory-mapped file, without
+ * copying it first, and each distinct string is only materialized once per value.
+ *
+ * <p>Layout: the magic bytes {@code FB}, a format version byte, a type byte, the string table (a
+ * varint count followed by varint length prefixed UTF-8 strings) and the body. Counts and string
+ * references are unsigned varints, with 0 standing for null. Numbers are zigzag varints.
+ */
+public final class BinaryCodec {
+
+  static final int FORMAT_VERSION = 1;
+
+  private static final byte MAGIC_0 = 'F';
+  private static final byte MAGIC_1 = 'B';
+
+  private static final byte FEATURE_CONFIG = 1;
+  private static final byte SEGMENT = 2;
+  private static final byte FEATURE_SNAPSHOT = 3;
+
+  /** target attributes are free-form, they are kept as JSON inside the string table */
+  private static final Gson GSON = new Gson();
+
+  private BinaryCodec() {}
+
+  /**
+   * Encodes a value
+   *
+   * @param value a {@link FeatureConfig}, {@link Segment} or {@link FeatureSnapshot}
+   * @return the encoded bytes
+   * @throws IllegalArgumentException if the value has any other type
+   */
+  public static byte[] encode(@NonNull Object value) {
+    final Writer writer = new Writer();
+    final byte type;
+    if (value instanceof FeatureConfig) {
+      type = FEATURE_CONFIG;
+      writer.writeFeatureConfig((FeatureConfig) value);
+    } else if (value instanceof Segment) {
+      type = SEGMENT;
+      writer.writeSegment((Segment) value);
+    } else if (value instanceof FeatureSnapshot) {
+      type = FEATURE_SNAPSHOT;
+      final FeatureSnapshot snapshot = (FeatureSnapshot) value;
+      writer.writeFeatureConfig(snapshot.getCurrent());
+      writer.writeFeatureConfig(snapshot.getPrevious());
+    } else {
+      throw new IllegalArgumentException("Unsupported type " + value.getClass().getName());
+    }
+    return writer.toByteArray(type);
+  }
+
+  /**
+   * Decodes a value from the position to the limit of the buffer. The buffer itself is not
+   * modified.
+   *
+   * @param buffer the encoded bytes
+   * @return a {@link FeatureConfig}, {@link Segment} or {@link FeatureSnapshot}
+   * @throws IllegalArgumentException if the bytes are not a value in a supported format version
+   */
+  public static Object decode(@NonNull ByteBuffer buffer) {
+    final Reader reader = new Reader(buffer);
+    try {
+      final byte type = reader.readHeader();
+      switch (type) {
+        case FEATURE_CONFIG:
+          return reader.readFeatureConfig();
+        case SEGMENT:
+          return reader.readSegment();
+        case FEATURE_SNAPSHOT:
+          final FeatureSnapshot snapshot = new FeatureSnapshot();
+          snapshot.setCurrent(reader.readFeatureConfig());
+          snapshot.setPrevious(reader.readFeatureConfig());
+          return snapshot;
+        default:
+          throw new IllegalArgumentException("Unknown value type " + type);
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated or malformed value", e);
+    }
+  }
+
+  /** Decodes a value of the given type, see {@link #decode(ByteBuffer)} */
+  public static <T> T decode(@NonNull ByteBuffer buffer, @NonNull Class<T> type) {
+    final Object value = decode(buffer);
+    if (!type.isInstance(value)) {
+      throw new IllegalArgumentException(
+          "Expected " + type.getSimpleName() + " but found " + value.getClass().getSimpleName());
+    }
+    return type.cast(value);
+  }
+
+  public static byte[] encode(@NonNull FeatureConfig featureConfig) {
+    return encode((Object) featureConfig);
+  }
+
+  public static byte[] encode(@NonNull Segment segment) {
+    return encode((Object) segment);
+  }
+
+  public static byte[] encode(@NonNull FeatureSnapshot snapshot) {
+    return encode((Object) snapshot);
+  }
+
+  private static final class Writer {
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<String> table = new ArrayList<>();
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    byte[] toByteArray(byte type) {
+      final Writer out = new Writer();
+      out.ensure(size + 16 + table.size() * 8);
+      out.writeByte(MAGIC_0);
+      out.writeByte(MAGIC_1);
+      out.writeByte(FORMAT_VERSION);
+      out.writeByte(type);
+      out.writeVarint(table.size());
+      for (String string : table) {
+        final byte[] utf8 = string.getBytes(UTF_8);
+        out.writeVarint(utf8.length);
+        out.writeBytes(utf8, 0, utf8.length);
+      }
+      out.writeBytes(bytes, 0, size);
+      return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    void writeFeatureConfig(FeatureConfig flag) {
+      if (!writePresence(flag)) {
+        return;
+      }
+      writeString(flag.getProject());
+      writeString(flag.getEnvironment());
+      writeString(flag.getFeature());
+      writeString(flag.getState() == null ? null : flag.getState().getValue());
+      writeString(flag.getKind() == null ? null : flag.getKind().getValue());
+      writeList(flag.getVariations(), this::writeVariation);
+      writeList(flag.getRules(), this::writeServingRule);
+      writeServe(flag.getDefaultServe());
+      writeString(flag.getOffVariation());
+      writeList(flag.getPrerequisites(), this::writePrerequisite);
+      writeList(flag.getVariationToTargetMap(), this::writeVariationMap);
+      writeLong(flag.getVersion());
+    }
+
+    void writeSegment(Segment segment) {
+      if (!writePresence(segment)) {
+        return;
+      }
+      writeString(segment.getIdentifier());
+      writeString(segment.getName());
+      writeString(segment.getEnvironment());
+      writeList(segment.getTags(), this::writeTag);
+      writeList(segment.getIncluded(), this::writeTarget);
+      writeList(segment.getExcluded(), this::writeTarget);
+      writeList(segment.getRules(), this::writeClause);
+      writeList(segment.getServingRules(), this::writeGroupServingRule);
+      writeLong(segment.getCreatedAt());
+      writeLong(segment.getModifiedAt());
+      writeLong(segment.getVersion());
+    }
+
+    private void writeVariation(Variation variation) {
+      writeString(variation.getIdentifier());
+      writeString(variation.getValue());
+      writeString(variation.getName());
+      writeString(variation.getDescription());
+    }
+
+    private void writeServingRule(ServingRule rule) {
+      writeString(rule.getRuleId());
+      writeInteger(rule.getPriority());
+      writeList(rule.getClauses(), this::writeClause);
+      writeServe(rule.getServe());
+    }
+
+    private void writeGroupServingRule(GroupServingRule rule) {
+      writeString(rule.getRuleId());
+      writeInteger(rule.getPriority());
+      writeList(rule.getClauses(), this::writeClause);
+    }
+
+    private void writeClause(Clause clause) {
+      writeString(clause.getId());
+      writeString(clause.getAttribute());
+      writeString(clause.getOp());
+      writeList(clause.getValues(), this::writeString);
+      writeBoolean(clause.getNegate());
+    }
+
+    private void writeServe(Serve serve) {
+      if (!writePresence(serve)) {
+        return;
+      }
+      final Distribution distribution = serve.getDistribution();
+      if (writePresence(distribution)) {
+        writeString(distribution.getBucketBy());
+        writeList(distribution.getVariations(), this::writeWeightedVariation);
+      }
+      writeString(serve.getVariation());
+    }
+
+    private void writeWeightedVariation(WeightedVariation variation) {
+      writeString(variation.getVariation());
+      writeInteger(variation.getWeight());
+    }
+
+    private void writePrerequisite(Prerequisite prerequisite) {
+      writeString(prerequisite.getFeature());
+      writeList(prerequisite.getVariations(), this::writeString);
+    }
+
+    private void writeVariationMap(VariationMap map) {
+      writeString(map.getVariation());
+      writeList(map.getTargets(), this::writeTargetMap);
+      writeList(map.getTargetSegments(), this::writeString);
+    }
+
+    private void writeTargetMap(TargetMap target) {
+      writeString(target.getIdentifier());
+      writeString(target.getName());
+    }
+
+    private void writeTag(Tag tag) {
+      writeString(tag.getName());
+      writeString(tag.getIdentifier());
+    }
+
+    private void writeTarget(Target target) {
+      writeString(target.getIdentifier());
+      writeString(target.getAccount());
+      writeString(target.getOrg());
+      writeString(target.getEnvironment());
+      writeString(target.getProject());
+      writeString(target.getName());
+      writeBoolean(target.getAnonymous());
+      writeString(target.getAttributes() == null ? null : GSON.toJson(target.getAttributes()));
+      writeLong(target.getCreatedAt());
+      writeList(target.getSegments(), this::writeSegment);
+    }
+
+    // the schema has no null list elements, any that are present are dropped
+    private <T> void writeList(List<T> list, Consumer<T> element) {
+      if (list == null) {
+        writeVarint(0);
+        return;
+      }
+      int count = 0;
+      for (T value : list) {
+        if (value != null) {
+          count++;
+        }
+      }
+      writeVarint(count + 1);
+      for (T value : list) {
+        if (value != null) {
+          element.accept(value);
+        }
+      }
+    }
+
+    private boolean writePresence(Object value) {
+      writeByte(value == null ? 0 : 1);
+      return value != null;
+    }
+
+    private void writeString(String value) {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index == null) {
+        index = table.size();
+        strings.put(value, index);
+        table.add(value);
+      }
+      writeVarint(index + 1);
+    }
+
+    private void writeBoolean(Boolean value) {
+      writeByte(value == null ? 0 : value ? 2 : 1);
+    }
+
+    private void writeInteger(Integer value) {
+      writeLong(value == null ? null : value.longValue());
+    }
+
+    private void writeLong(Long value) {
+      if (writePresence(value)) {
+        writeVarint((value << 1) ^ (value >> 63));
+      }
+    }
+
+    private void writeVarint(long value) {
+      ensure(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+      ensure(1);
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] source, int offset, int length) {
+      ensure(length);
+      System.arraycopy(source, offset, bytes, size, length);
+      size += length;
+    }
+
+    private void ensure(int additional) {
+      if (size + additional > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+      }
+    }
+  }
+
+  private static final class Reader {
+
+    private final ByteBuffer buffer;
+    private String[] table;
+
+    Reader(ByteBuffer buffer) {
+      // a duplicate shares the content but keeps its own position
+      this.buffer = buffer.duplicate();
+    }
+
+    byte readHeader() {
+      if (buffer.remaining() < 4 || buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+        throw new IllegalArgumentException("Not a binary encoded value");
+      }
+      final int version = buffer.get();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported format version " + version);
+      }
+      final byte type = buffer.get();
+      final int count = readCount(readVarint());
+      table = new String[count];
+      for (int i = 0; i < count; i++) {
+        table[i] = readUtf8(readCount(readVarint()));
+      }
+      return type;
+    }
+
+    FeatureConfig readFeatureConfig() {
+      if (!readPresence()) {
+        return null;
+      }
+      final FeatureConfig flag = new FeatureConfig();
+      flag.setProject(readString());
+      flag.setEnvironment(readString());
+      flag.setFeature(readString());
+      final String state = readString();
+      flag.setState(state == null ? null : FeatureState.fromValue(state));
+      final String kind = readString();
+      flag.setKind(kind == null ? null : FeatureConfig.KindEnum.fromValue(kind));
+      flag.setVariations(readList(this::readVariation));
+      flag.setRules(readList(this::readServingRule));
+      flag.setDefaultServe(readServe());
+      flag.setOffVariation(readString());
+      flag.setPrerequisites(readList(this::readPrerequisite));
+      flag.setVariationToTargetMap(readList(this::readVariationMap));
+      flag.setVersion(readLong());
+      return flag;
+    }
+
+    Segment readSegment() {
+      if (!readPresence()) {
+        return null;
+      }
+      final Segment segment = new Segment();
+      segment.setIdentifier(readString());
+      segment.setName(readString());
+      segment.setEnvironment(readString());
+      segment.setTags(readList(this::readTag));
+      segment.setIncluded(readList(this::readTarget));
+      segment.setExcluded(readList(this::readTarget));
+      segment.setRules(readList(this::readClause));
+      segment.setServingRules(readList(this::readGroupServingRule));
+      segment.setCreatedAt(readLong());
+      segment.setModifiedAt(readLong());
+      segment.setVersion(readLong());
+      return segment;
+    }
+
+    private Variation readVariation() {
+      final Variation variation = new Variation();
+      variation.setIdentifier(readString());
+      variation.setValue(readString());
+      variation.setName(readString());
+      variation.setDescription(readString());
+      return variation;
+    }
+
+    private ServingRule readServingRule() {
+      final ServingRule rule = new ServingRule();
+      rule.setRuleId(readString());
+      rule.setPriority(readInteger());
+      rule.setClauses(readList(this::readClause));
+      rule.setServe(readServe());
+      return rule;
+    }
+
+    private GroupServingRule readGroupServingRule() {
+      final GroupServingRule rule = new GroupServingRule();
+      rule.setRuleId(readString());
+      rule.setPriority(readInteger());
+      rule.setClauses(readList(this::readClause));
+      return rule;
+    }
+
+    private Clause readClause() {
+      final Clause clause = new Clause();
+      clause.setId(readString());
+      clause.setAttribute(readString());
+      clause.setOp(readString());
+      clause.setValues(readList(this::readString));
+      clause.setNegate(readBoolean());
+      return clause;
+    }
+
+    private Serve readServe() {
+      if (!readPresence()) {
+        return null;
+      }
+      final Serve serve = new Serve();
+      if (readPresence()) {
+        final Distribution distribution = new Distribution();
+        distribution.setBucketBy(readString());
+        distribution.setVariations(readList(this::readWeightedVariation));
+        serve.setDistribution(distribution);
+      }
+      serve.setVariation(readString());
+      return serve;
+    }
+
+    private WeightedVariation readWeightedVariation() {
+      final WeightedVariation variation = new WeightedVariation();
+      variation.setVariation(readString());
+      variation.setWeight(readInteger());
+      return variation;
+    }
+
+    private Prerequisite readPrerequisite() {
+      final Prerequisite prerequisite = new Prerequisite();
+      prerequisite.setFeature(readString());
+      prerequisite.setVariations(readList(this::readString));
+      return prerequisite;
+    }
+
+    private VariationMap readVariationMap() {
+      final VariationMap map = new VariationMap();
+      map.setVariation(readString());
+      map.setTargets(readList(this::readTargetMap));
+      map.setTargetSegments(readList(this::readString));
+      return map;
+    }
+
+    private TargetMap readTargetMap() {
+      final TargetMap target = new TargetMap();
+      target.setIdentifier(readString());
+      target.setName(readString());
+      return target;
+    }
+
+    private Tag readTag() {
+      final Tag tag = new Tag();
+      tag.setName(readString());
+      tag.setIdentifier(readString());
+      return tag;
+    }
+
+    private Target readTarget() {
+      final Target target = new Target();
+      target.setIdentifier(readString());
+      target.setAccount(readString());
+      target.setOrg(readString());
+      target.setEnvironment(readString());
+      target.setProject(readString());
+      target.setName(readString());
+      target.setAnonymous(readBoolean());
+      final String attributes = readString();
+      target.setAttributes(attributes == null ? null : GSON.fromJson(attributes, Object.class));
+      target.setCreatedAt(readLong());
+      target.setSegments(readList(this::readSegment));
+      return target;
+    }
+
+    private <T> List<T> readList(Supplier<T> element) {
+      final long count = readVarint();
+      if (count == 0) {
+        return null;
+      }
+      final int size = readCount(count - 1);
+      final List<T> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(element.get());
+      }
+      return list;
+    }
+
+    private boolean readPresence() {
+      return buffer.get() != 0;
+    }
+
+    private String readString() {
+      final long index = readVarint();
+      if (index == 0) {
+        return null;
+      }
+      if (index > table.length) {
+        throw new IllegalArgumentException("String reference " + index + " out of range");
+      }
+      return table[(int) index - 1];
+    }
+
+    private Boolean readBoolean() {
+      final byte value = buffer.get();
+      return value == 0 ? null : value == 2;
+    }
+
+    private Integer readInteger() {
+      final Long value = readLong();
+      return value == null ? null : value.intValue();
+    }
+
+    private Long readLong() {
+      if (!readPresence()) {
+        return null;
+      }
+      final long value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final byte b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed varint");
+    }
+
+    // a count can never exceed the bytes left, which also guards allocations on corrupt input
+    private int readCount(long count) {
+      if (count < 0 || count > buffer.remaining()) {
+        throw new IllegalArgumentException("Count " + count + " exceeds the remaining bytes");
+      }
+      return (int) count;
+    }
+
+    private String readUtf8(int length) {
+      final String value;
+      if (buffer.hasArray()) {
+        value =
+            new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        ((Buffer) buffer).position(buffer.position() + length);
+      } else {
+        final byte[] utf8 = new byte[length];
+        buffer.get(utf8);
+        value = new String(utf8, UTF_8);
+      }
+      return value;
+    }
+  }
+}
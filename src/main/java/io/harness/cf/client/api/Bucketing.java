@@ -0,0 +1,73 @@
+package io.harness.cf.client.api;
+
+import com.sangupta.murmur.Murmur3;
+import lombok.NonNull;
+
+/**
+ * Bucketing maps a bucketBy attribute value to a percentage bucket between 1 and 100. The hash is
+ * MurmurHash3 (x86, 32 bit, seed 0) over the UTF-8 bytes of {@code bucketBy + ":" + value}. The
+ * bytes are encoded into a per thread buffer so a call does not allocate.
+ */
+final class Bucketing {
+
+  // buffers grown past this size are used once and not kept by the thread
+  private static final int MAX_RETAINED_BUFFER_BYTES = 4096;
+
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+  private Bucketing() {}
+
+  static int bucket(@NonNull String bucketBy, @NonNull String value) {
+    // UTF-8 needs at most 3 bytes per char, a surrogate pair takes 4 bytes for 2 chars
+    final int maxBytes = (bucketBy.length() + 1 + value.length()) * 3;
+    byte[] buffer = BUFFER.get();
+    if (buffer.length < maxBytes) {
+      buffer = new byte[maxBytes];
+      if (maxBytes <= MAX_RETAINED_BUFFER_BYTES) {
+        BUFFER.set(buffer);
+      }
+    }
+
+    int length = encodeUtf8(bucketBy, buffer, 0);
+    buffer[length++] = ':';
+    length = encodeUtf8(value, buffer, length);
+
+    final long hash = Murmur3.hash_x86_32(buffer, length, 0);
+    return (int) (hash % Evaluator.ONE_HUNDRED) + 1;
+  }
+
+  /**
+   * Encodes the string as UTF-8 at the given offset and returns the offset after the last byte
+   * written. Unpaired surrogates are replaced with '?', the same as {@link String#getBytes}.
+   */
+  static int encodeUtf8(String value, byte[] buffer, int offset) {
+    int pos = offset;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xC0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+          buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+          buffer[pos++] = '?';
+        }
+      } else {
+        buffer[pos++] = (byte) (0xE0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return pos;
+  }
+}
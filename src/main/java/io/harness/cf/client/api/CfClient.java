@@ -6,8 +6,17 @@ import io.harness.cf.client.dto.Message;
 import io.harness.cf.client.dto.Target;
 import io.harness.cf.client.logger.LogUtil;
 import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.Variation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 import lombok.NonNull;
 
 public class CfClient implements AutoCloseable {
@@ -85,6 +94,7 @@ public class CfClient implements AutoCloseable {
     client.on(event, consumer);
   }
 
+  /** Snapshots of all flags with the given identifier prefix, see {@link #getFeatureSnapshot} */
   public List<FeatureSnapshot> getAllFeatureSnapshots(String prefix) {
     return client.getFeatureSnapshots(prefix);
   }
@@ -93,10 +103,66 @@ public class CfClient implements AutoCloseable {
     return client.getFeatureSnapshots();
   }
 
+  /**
+   * Lazily looks up the snapshots of all flags with the given identifier prefix, so that large
+   * environments can be processed without holding every snapshot in memory.
+   *
+   * @param parallel look snapshots up on the common fork join pool, in no particular order
+   */
+  public Stream<FeatureSnapshot> streamAllFeatureSnapshots(String prefix, boolean parallel) {
+    return client.streamFeatureSnapshots(prefix, parallel);
+  }
+
+  /**
+   * Writes the snapshots of all flags with the given identifier prefix to the output as
+   * newline-delimited JSON. The output is flushed but not closed.
+   *
+   * @param parallel serialize snapshots concurrently, lines are then written in no particular order
+   * @return the number of snapshots written
+   */
+  public long exportAllFeatureSnapshots(
+      String prefix, @NonNull OutputStream out, boolean parallel) throws IOException {
+    return client.exportFeatureSnapshots(prefix, out, parallel);
+  }
+
+  /**
+   * Snapshot of the current and, if enabled, previous version of a flag. Each call returns a new
+   * deep copy that the caller owns.
+   */
   public FeatureSnapshot getFeatureSnapshot(@NonNull String identifier) {
     return client.getFeatureSnapshot(identifier);
   }
 
+  /**
+   * Age of the snapshot loaded from {@link BaseConfig#getWarmStartFile()} while evaluations are
+   * served from it. Empty if no snapshot was loaded or the first fetch from the server replaced it.
+   */
+  public Optional<Duration> getWarmStartSnapshotAge() {
+    return client.getWarmStartSnapshotAge();
+  }
+
+  /** Counters of the evaluation cache, see {@link BaseConfig#getEvaluationCacheSize()} */
+  public EvaluationCacheStats getEvaluationCacheStats() {
+    return client.getEvaluationCacheStats();
+  }
+
+  /**
+   * Number of targets indexed from variation target maps and segment include and exclude lists,
+   * with an estimate of the memory the indexes retain. Computed on each call from the current
+   * flags and segments.
+   */
+  public TargetIndexStats getTargetIndexStats() {
+    return client.getTargetIndexStats();
+  }
+
+  /**
+   * Queue depth and lag of each thread applying stream events. Events for one flag or segment are
+   * always applied by the same thread, in the order they arrived.
+   */
+  public List<StripeStats> getStreamUpdateStats() {
+    return client.getStreamUpdateStats();
+  }
+
   public void off() {
     client.off();
   }
@@ -135,6 +201,55 @@ public class CfClient implements AutoCloseable {
     return client.jsonVariation(identifier, target, defaultValue);
   }
 
+  /**
+   * Evaluates every flag for the given target in a single pass.
+   *
+   * @return an unmodifiable map of flag identifier to variation
+   */
+  public Map<String, Variation> evaluateAll(final Target target) {
+    return client.evaluateAll("", target);
+  }
+
+  /**
+   * Evaluates the flags whose identifier starts with the given prefix for the given target in a
+   * single pass.
+   *
+   * @return an unmodifiable map of flag identifier to variation
+   */
+  public Map<String, Variation> evaluateAll(@NonNull final String prefix, final Target target) {
+    return client.evaluateAll(prefix, target);
+  }
+
+  /**
+   * Evaluates one flag for many targets in parallel on the common fork-join pool. Targets are read
+   * lazily and results are returned in the order of the input. Each served variation is reported
+   * to analytics with its target.
+   *
+   * @return a sequential stream with one result per target
+   */
+  public Stream<TargetEvaluation> evaluateBatch(
+      @NonNull final String identifier, @NonNull final Iterable<? extends Target> targets) {
+    return client.evaluateBatch(identifier, targets.iterator(), ForkJoinPool.commonPool(), false);
+  }
+
+  /**
+   * Evaluates one flag for many targets in parallel on the given executor. All targets are
+   * evaluated against the flag and segment versions stored when this method is called.
+   *
+   * @param aggregateMetrics if true, analytics receive one count per variation when the stream is
+   *     exhausted or closed rather than one event per target
+   * @return a sequential stream with one result per target, in the order of the input
+   */
+  public Stream<TargetEvaluation> evaluateBatch(
+      @NonNull final String identifier,
+      @NonNull final Stream<? extends Target> targets,
+      @NonNull final Executor executor,
+      final boolean aggregateMetrics) {
+    return client
+        .evaluateBatch(identifier, targets.iterator(), executor, aggregateMetrics)
+        .onClose(targets::close);
+  }
+
   public void close() {
     client.close();
   }
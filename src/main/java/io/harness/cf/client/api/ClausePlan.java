@@ -0,0 +1,87 @@
+package io.harness.cf.client.api;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import lombok.Getter;
+
+/**
+ * ClausePlan is the compiled form of a {@link io.harness.cf.model.Clause}. The operator is resolved
+ * to an enum once so evaluation does not need to dispatch on strings, and the values of an {@code
+ * in} clause are hashed so membership checks do not depend on the size of the list.
+ */
+@Getter
+final class ClausePlan {
+
+  enum Op {
+    STARTS_WITH,
+    ENDS_WITH,
+    MATCH,
+    CONTAINS,
+    EQUAL,
+    EQUAL_SENSITIVE,
+    IN,
+    SEGMENT_MATCH,
+    UNKNOWN;
+
+    static Op of(String operator) {
+      if (operator == null) {
+        return UNKNOWN;
+      }
+      switch (operator) {
+        case Operators.STARTS_WITH:
+          return STARTS_WITH;
+        case Operators.ENDS_WITH:
+          return ENDS_WITH;
+        case Operators.MATCH:
+          return MATCH;
+        case Operators.CONTAINS:
+          return CONTAINS;
+        case Operators.EQUAL:
+          return EQUAL;
+        case Operators.EQUAL_SENSITIVE:
+          return EQUAL_SENSITIVE;
+        case Operators.IN:
+          return IN;
+        case Operators.SEGMENT_MATCH:
+          return SEGMENT_MATCH;
+        default:
+          return UNKNOWN;
+      }
+    }
+  }
+
+  private final Op op;
+  private final String operator;
+  private final String attribute;
+  private final List<String> values;
+
+  /** first clause value, or null if the clause has no values */
+  private final String value;
+
+  /** values of an in clause for constant time lookup, empty for other operators */
+  private final Set<String> valueSet;
+
+  /** compiled regex of a match clause, null for other operators or if the regex is invalid */
+  private final Pattern pattern;
+
+  ClausePlan(String operator, String attribute, List<String> values, Pattern pattern) {
+    this.op = Op.of(operator);
+    this.operator = operator;
+    this.attribute = attribute;
+    this.values = values;
+    this.value = values.isEmpty() ? null : values.get(0);
+    this.valueSet =
+        this.op == Op.IN && !values.isEmpty()
+            ? Collections.unmodifiableSet(new HashSet<>(values))
+            : Collections.emptySet();
+    this.pattern = pattern;
+  }
+
+  @Override
+  public String toString() {
+    return attribute + " " + operator + " " + values;
+  }
+}
@@ -2,6 +2,9 @@ package io.harness.cf.client.api;
 
 import com.google.gson.JsonObject;
 import io.harness.cf.client.dto.Target;
+import io.harness.cf.model.Variation;
+import java.util.Collections;
+import java.util.Map;
 
 public interface Evaluation {
 
@@ -16,4 +19,13 @@ public interface Evaluation {
 
   JsonObject jsonVariation(
       String identifier, Target target, JsonObject defaultValue, FlagEvaluateCallback callback);
+
+  /**
+   * Evaluates every flag with the given identifier prefix for the target. The default evaluates
+   * none and returns an empty map.
+   */
+  default Map<String, Variation> evaluateAll(
+      String prefix, Target target, FlagEvaluateCallback callback) {
+    return Collections.emptyMap();
+  }
 }
@@ -0,0 +1,188 @@
+package io.harness.cf.client.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.harness.cf.client.dto.Target;
+import io.harness.cf.model.Prerequisite;
+import io.harness.cf.model.Variation;
+import java.util.*;
+import lombok.Getter;
+
+/**
+ * EvaluationCache holds evaluation results per flag and target. Keys include the revision of every
+ * plan the result depends on: the flag, its referenced segments and, transitively, the segments
+ * they match in their own rules and the flag's prerequisites. Storing a new version of any of them
+ * produces a new plan revision, so stale entries are never matched again and age out of the
+ * bounded cache.
+ */
+final class EvaluationCache {
+
+  private static final long MISSING = 0;
+
+  @Getter
+  static final class Result {
+    /** evaluated variation, null if the flag could not be evaluated */
+    private final Variation variation;
+
+    /** true if the variation was served by evaluation and should be reported to analytics */
+    private final boolean served;
+
+    Result(Variation variation, boolean served) {
+      this.variation = variation;
+      this.served = served;
+    }
+  }
+
+  static final class Key {
+    private final String flag;
+    private final String identifier;
+    private final String name;
+    private final Map<String, Object> attributes;
+    private final long[] revisions;
+    private final int hash;
+
+    private Key(
+        String flag,
+        String identifier,
+        String name,
+        Map<String, Object> attributes,
+        long[] revisions,
+        int hash) {
+      this.flag = flag;
+      this.identifier = identifier;
+      this.name = name;
+      this.attributes = attributes;
+      this.revisions = revisions;
+      this.hash = hash;
+    }
+
+    Key(String flag, Target target, long[] revisions) {
+      this.flag = flag;
+      this.identifier = target == null ? null : target.getIdentifier();
+      this.name = target == null ? null : target.getName();
+      this.attributes = target == null ? null : target.getAttributes();
+      this.revisions = revisions;
+      this.hash =
+          31 * Objects.hash(flag, identifier, name, attributes) + Arrays.hashCode(revisions);
+    }
+
+    /** Copy of this key that does not share the caller's attribute map */
+    Key detach() {
+      if (attributes == null) {
+        return this;
+      }
+      return new Key(flag, identifier, name, new HashMap<>(attributes), revisions, hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key that = (Key) o;
+      return hash == that.hash
+          && flag.equals(that.flag)
+          && Objects.equals(identifier, that.identifier)
+          && Objects.equals(name, that.name)
+          && Arrays.equals(revisions, that.revisions)
+          && Objects.equals(attributes, that.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final Cache<Key, Result> cache;
+
+  EvaluationCache(long maximumSize) {
+    this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  Key key(FlagPlan flag, Target target, PlanQuery plans) {
+    final RevisionList revisions = new RevisionList();
+    addRevisions(flag, plans, revisions, null);
+    return new Key(flag.getIdentifier(), target, revisions.toArray());
+  }
+
+  Result get(Key key) {
+    return cache.getIfPresent(key);
+  }
+
+  void put(Key key, Result result) {
+    cache.put(key.detach(), result);
+  }
+
+  EvaluationCacheStats stats() {
+    final CacheStats stats = cache.stats();
+    return new EvaluationCacheStats(
+        stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+  }
+
+  private static void addRevisions(
+      FlagPlan flag, PlanQuery plans, RevisionList revisions, Set<String> visited) {
+    revisions.add(flag.getRevision());
+    for (String segment : flag.getSegmentIdentifiers()) {
+      addRevisions(segment, plans, revisions, null);
+    }
+    if (flag.getPrerequisites().isEmpty()) {
+      return;
+    }
+
+    if (visited == null) {
+      visited = new HashSet<>();
+      visited.add(flag.getIdentifier());
+    }
+    for (Prerequisite prerequisite : flag.getPrerequisites()) {
+      final String identifier = prerequisite.getFeature();
+      final Optional<FlagPlan> plan =
+          identifier == null ? Optional.empty() : plans.getFlagPlan(identifier);
+      if (!plan.isPresent()) {
+        revisions.add(MISSING);
+      } else if (visited.add(identifier)) {
+        addRevisions(plan.get(), plans, revisions, visited);
+      }
+    }
+  }
+
+  // segments are tracked in their own visited set, a segment may share its identifier with a flag
+  private static void addRevisions(
+      String segment, PlanQuery plans, RevisionList revisions, Set<String> visited) {
+    final SegmentPlan plan = segment == null ? null : plans.getSegmentPlan(segment).orElse(null);
+    if (plan == null) {
+      revisions.add(MISSING);
+      return;
+    }
+    revisions.add(plan.getRevision());
+    if (plan.getSegmentIdentifiers().isEmpty()) {
+      return;
+    }
+
+    if (visited == null) {
+      visited = new HashSet<>();
+      visited.add(segment);
+    }
+    for (String nested : plan.getSegmentIdentifiers()) {
+      if (nested == null || visited.add(nested)) {
+        addRevisions(nested, plans, revisions, visited);
+      }
+    }
+  }
+
+  private static final class RevisionList {
+    private long[] values = new long[4];
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package io.harness.cf.client.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Counters of the evaluation cache, all zero if the cache is disabled */
+@AllArgsConstructor
+@Data
+public class EvaluationCacheStats {
+  static final EvaluationCacheStats DISABLED = new EvaluationCacheStats(0, 0, 0, 0);
+
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long size;
+}
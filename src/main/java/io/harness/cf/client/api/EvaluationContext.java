@@ -0,0 +1,84 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.client.dto.Target;
+import io.harness.cf.model.Variation;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Getter;
+
+/**
+ * EvaluationContext carries the state of one evaluation pass for a single target: the version of
+ * the plans the pass reads from and the results resolved so far. Segment membership is resolved at
+ * most once per segment and reused by every flag and prerequisite evaluated in the same pass. The
+ * same applies to prerequisite flags, each one is evaluated and checked at most once. Instances are
+ * not thread safe and must not outlive the pass.
+ */
+final class EvaluationContext {
+
+  enum Membership {
+    INCLUDED,
+    EXCLUDED,
+    NONE
+  }
+
+  @Getter private final Target target;
+  @Getter private final PlanQuery plans;
+
+  private Map<String, Membership> segments;
+  private Map<String, Optional<Variation>> prerequisiteVariations;
+  private Map<String, Boolean> prerequisiteResults;
+  private Set<String> visiting;
+
+  EvaluationContext(Target target, PlanQuery plans) {
+    this.target = target;
+    this.plans = plans;
+  }
+
+  Membership getSegmentMembership(String identifier) {
+    return segments == null ? null : segments.get(identifier);
+  }
+
+  void putSegmentMembership(String identifier, Membership membership) {
+    if (segments == null) {
+      segments = new HashMap<>();
+    }
+    segments.put(identifier, membership);
+  }
+
+  Optional<Variation> getPrerequisiteVariation(String identifier) {
+    return prerequisiteVariations == null ? null : prerequisiteVariations.get(identifier);
+  }
+
+  void putPrerequisiteVariation(String identifier, Optional<Variation> variation) {
+    if (prerequisiteVariations == null) {
+      prerequisiteVariations = new HashMap<>();
+    }
+    prerequisiteVariations.put(identifier, variation);
+  }
+
+  Boolean getPrerequisiteResult(String identifier) {
+    return prerequisiteResults == null ? null : prerequisiteResults.get(identifier);
+  }
+
+  void putPrerequisiteResult(String identifier, boolean result) {
+    if (prerequisiteResults == null) {
+      prerequisiteResults = new HashMap<>();
+    }
+    prerequisiteResults.put(identifier, result);
+  }
+
+  /** Marks the prerequisites of a flag as being checked, false if they already are (a cycle) */
+  boolean enter(String identifier) {
+    if (visiting == null) {
+      visiting = new HashSet<>();
+    }
+    return visiting.add(identifier);
+  }
+
+  void exit(String identifier) {
+    visiting.remove(identifier);
+  }
+}
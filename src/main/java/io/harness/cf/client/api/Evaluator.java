@@ -1,16 +1,16 @@
 package io.harness.cf.client.api;
 
-import static io.harness.cf.client.api.Operators.*;
-
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.sangupta.murmur.Murmur3;
 import io.harness.cf.client.common.SdkCodes;
 import io.harness.cf.client.common.StringUtils;
-import io.harness.cf.client.common.Utils;
 import io.harness.cf.client.dto.Target;
 import io.harness.cf.model.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -20,12 +20,62 @@ public class Evaluator implements Evaluation {
 
   public static final int ONE_HUNDRED = 100;
 
+  private static final int NO_BUCKET = -1;
+
+  private static final Gson GSON = new Gson();
+
   private final Query query;
+  private final PlanQuery plans;
   private final BaseConfig config;
+  private final EvaluationCache cache;
 
   public Evaluator(Query query, BaseConfig config) {
+    this(
+        query,
+        query instanceof PlanQuery ? (PlanQuery) query : PlanQuery.compiling(query),
+        config,
+        config != null && config.getEvaluationCacheSize() > 0
+            ? new EvaluationCache(config.getEvaluationCacheSize())
+            : null);
+  }
+
+  private Evaluator(Query query, PlanQuery plans, BaseConfig config, EvaluationCache cache) {
     this.query = query;
+    this.plans = plans;
     this.config = config;
+    this.cache = cache;
+  }
+
+  public EvaluationCacheStats getEvaluationCacheStats() {
+    return cache == null ? EvaluationCacheStats.DISABLED : cache.stats();
+  }
+
+  /** Sizes of the target indexes of the current flag and segment plans */
+  public TargetIndexStats getTargetIndexStats() {
+    final PlanQuery current = plans.current();
+    int flagCount = 0;
+    long flagTargets = 0;
+    long bytes = 0;
+    final Iterator<String> identifiers = query.streamFeatureIdentifiers("").iterator();
+    while (identifiers.hasNext()) {
+      final FlagPlan flag = current.getFlagPlan(identifiers.next()).orElse(null);
+      if (flag != null) {
+        flagCount++;
+        flagTargets += flag.getTargetIndex().size();
+        bytes += flag.getTargetIndexBytes();
+      }
+    }
+    int segmentCount = 0;
+    long segmentTargets = 0;
+    for (String identifier : query.getAllSegmentIdentifiers()) {
+      final SegmentPlan segment = current.getSegmentPlan(identifier).orElse(null);
+      if (segment != null) {
+        segmentCount++;
+        segmentTargets += segment.getIncluded().size() + segment.getExcluded().size();
+        bytes += segment.getIndexBytes();
+      }
+    }
+    return new TargetIndexStats(flagCount, flagTargets, segmentCount, segmentTargets, bytes);
   }
 
   protected Optional<Object> getAttrValue(Target target, @NonNull String attribute) {
@@ -54,66 +104,85 @@ public class Evaluator implements Evaluation {
     return Optional.empty();
   }
 
+  /** @deprecated variations are looked up in the compiled {@link FlagPlan} */
+  @Deprecated
   protected Optional<Variation> findVariation(
       @NonNull List<Variation> variations, String identifier) {
-    if (identifier == null || Utils.isEmpty(variations)) {
+    if (identifier == null || variations.isEmpty()) {
       log.debug("Empty identifier {} or variations {} occurred", identifier, variations);
       return Optional.empty();
     }
-    Optional<Variation> variation =
-        variations.stream().filter(v -> v.getIdentifier().equals(identifier)).findFirst();
-    log.trace("Variation {} found in variations {}", identifier, variations);
-    return variation;
+    return variations.stream().filter(v -> identifier.equals(v.getIdentifier())).findFirst();
   }
 
   static int getNormalizedNumber(@NonNull Object property, @NonNull String bucketBy) {
-    byte[] value = String.join(":", bucketBy, property.toString()).getBytes();
-    long hasher = Murmur3.hash_x86_32(value, value.length, 0);
-    int result = (int) (hasher % Evaluator.ONE_HUNDRED) + 1;
-    log.debug("normalized number for {} = {}", new String(value), result);
+    final String value = property.toString();
+    final int result = Bucketing.bucket(bucketBy, value);
+    if (log.isDebugEnabled()) {
+      log.debug("normalized number for {}:{} = {}", bucketBy, value, result);
+    }
     return result;
   }
 
   protected boolean isEnabled(Target target, String bucketBy, int percentage) {
+    final int bucketId = getBucket(target, bucketBy);
+    return bucketId != NO_BUCKET && percentage > 0 && bucketId <= percentage;
+  }
+
+  private int getBucket(Target target, String bucketBy) {
     Optional<Object> attrValue = getAttrValue(target, bucketBy);
     if (!attrValue.isPresent()) {
       String oldBB = bucketBy;
       bucketBy = "identifier";
       attrValue = getAttrValue(target, bucketBy);
       if (!attrValue.isPresent()) {
-        return false;
+        return NO_BUCKET;
       }
       SdkCodes.warnBucketByAttributeNotFound(oldBB, target.getIdentifier());
     }
     int bucketId = getNormalizedNumber(attrValue.get(), bucketBy);
     if (log.isDebugEnabled()) {
-      log.debug(
-          "MM3 percentage_check={} bucket_by={} value={} bucket={}",
-          percentage,
-          bucketBy,
-          attrValue.orElse(""),
-          bucketId);
+      log.debug("MM3 bucket_by={} value={} bucket={}", bucketBy, attrValue.get(), bucketId);
     }
-    return percentage > 0 && bucketId <= percentage;
+    return bucketId;
   }
 
+  /** @deprecated evaluation runs on the compiled {@link ServePlan} */
+  @Deprecated
   protected Optional<String> evaluateDistribution(Distribution distribution, Target target) {
     if (distribution == null) {
       log.debug("Distribution is empty");
       return Optional.empty();
     }
+    return evaluateDistribution(
+        PlanCompiler.compileServe(new Serve().distribution(distribution)), target);
+  }
 
-    String variation = "";
-    int totalPercentage = 0;
-    for (WeightedVariation weightedVariation : distribution.getVariations()) {
-      variation = weightedVariation.getVariation();
-      log.debug("Checking variation {}", variation);
-      totalPercentage += weightedVariation.getWeight();
-      if (isEnabled(target, distribution.getBucketBy(), totalPercentage)) {
-        log.debug("Enabled for distribution {}", distribution);
-        return Optional.of(weightedVariation.getVariation());
+  Optional<String> evaluateDistribution(ServePlan distribution, Target target) {
+    if (distribution == null || !distribution.isDistribution()) {
+      log.debug("Distribution is empty");
+      return Optional.empty();
+    }
+
+    final List<String> variations = distribution.getVariations();
+    if (variations.isEmpty()) {
+      log.debug("Distribution has no variations");
+      return Optional.of("");
+    }
+
+    // the target is hashed once, then checked against the running total of weights
+    final int bucketId = getBucket(target, distribution.getBucketBy());
+    if (bucketId != NO_BUCKET) {
+      final int[] cumulativeWeights = distribution.getCumulativeWeights();
+      for (int i = 0; i < cumulativeWeights.length; i++) {
+        final int percentage = cumulativeWeights[i];
+        if (percentage > 0 && bucketId <= percentage) {
+          log.debug("Enabled for distribution {}", variations);
+          return Optional.of(variations.get(i));
+        }
       }
     }
+    final String variation = variations.get(variations.size() - 1);
     log.debug("Variation of distribution evaluation {}", variation);
     return Optional.of(variation);
   }
@@ -123,25 +192,28 @@ public class Evaluator implements Evaluation {
       log.debug("Clause is empty");
       return false;
     }
-    // operator is required
-    final String operator = clause.getOp();
-    if (operator.isEmpty()) {
-      log.debug("Clause {} operator is empty!", clause);
+    return evaluateClausePlan(PlanCompiler.compileClause(clause), newContext(target));
+  }
+
+  boolean evaluateClausePlan(ClausePlan clause, EvaluationContext context) {
+    final ClausePlan.Op op = clause.getOp();
+    if (op == ClausePlan.Op.UNKNOWN) {
+      log.debug("operator {} not found", clause.getOperator());
       return false;
     }
 
-    if (operator.equals(SEGMENT_MATCH)) {
-      log.debug("Clause operator is {}, evaluate on segment", operator);
-      return isTargetIncludedOrExcludedInSegment(clause.getValues(), target);
+    if (op == ClausePlan.Op.SEGMENT_MATCH) {
+      log.debug("Clause operator is {}, evaluate on segment", clause.getOperator());
+      return isTargetIncludedOrExcludedInSegment(clause.getValues(), context);
     }
 
-    if (clause.getValues().isEmpty()) {
+    final String value = clause.getValue();
+    if (value == null) {
       log.debug("Clause values is empty");
       return false;
     }
 
-    String value = clause.getValues().get(0);
-    Optional<Object> attrValue = getAttrValue(target, clause.getAttribute());
+    Optional<Object> attrValue = getAttrValue(context.getTarget(), clause.getAttribute());
 
     if (!attrValue.isPresent()) {
       log.debug("AttrValue is empty on clause {}", clause);
@@ -149,14 +221,14 @@ public class Evaluator implements Evaluation {
     }
 
     String object = attrValue.get().toString();
-    log.debug("evaluate clause with object {} operator {} and value {}", object, operator, value);
-    switch (operator) {
+    log.debug("evaluate clause with object {} operator {} and value {}", object, op, value);
+    switch (op) {
       case STARTS_WITH:
         return object.startsWith(value);
       case ENDS_WITH:
         return object.endsWith(value);
       case MATCH:
-        return object.matches(value);
+        return clause.getPattern() != null && clause.getPattern().matcher(object).matches();
       case CONTAINS:
         return object.contains(value);
       case EQUAL:
@@ -164,21 +236,27 @@ public class Evaluator implements Evaluation {
       case EQUAL_SENSITIVE:
         return object.equals(value);
       case IN:
-        return clause.getValues().contains(object);
+        return clause.getValueSet().contains(object);
       default:
-        log.debug("operator {} not found", operator);
+        log.debug("operator {} not found", op);
         return false;
     }
   }
 
+  /** @deprecated evaluation runs on compiled {@link ClausePlan}s */
+  @Deprecated
   protected boolean evaluateClausesV2(List<Clause> clauses, Target target) {
-    if (clauses == null || clauses.isEmpty()) {
+    return evaluateClausesV2(PlanCompiler.compileClauses(clauses), newContext(target));
+  }
+
+  boolean evaluateClausesV2(List<ClausePlan> clauses, EvaluationContext context) {
+    if (clauses.isEmpty()) {
       return false;
     }
 
     // New style rules require that all clauses are true
-    for (Clause clause : clauses) {
-      if (!evaluateClause(clause, target)) {
+    for (ClausePlan clause : clauses) {
+      if (!evaluateClausePlan(clause, context)) {
         return false;
       }
     }
@@ -186,9 +264,15 @@ public class Evaluator implements Evaluation {
     return true;
   }
 
+  /** @deprecated evaluation runs on compiled {@link ClausePlan}s */
+  @Deprecated
   protected boolean evaluateClauses(List<Clause> clauses, Target target) {
-    for (Clause clause : clauses) {
-      if (evaluateClause(clause, target)) {
+    return evaluateClauses(PlanCompiler.compileClauses(clauses), newContext(target));
+  }
+
+  boolean evaluateClauses(List<ClausePlan> clauses, EvaluationContext context) {
+    for (ClausePlan clause : clauses) {
+      if (evaluateClausePlan(clause, context)) {
         // If any clause returns true we return true - rules being treated as OR
         log.debug("Successful evaluation of clause {}", clause);
         return true;
@@ -203,52 +287,74 @@ public class Evaluator implements Evaluation {
    * isTargetIncludedOrExcludedInSegment determines if the given target is included by a segment
    *
    * @param segmentList a list of segments
-   * @param target the target to check if its included
+   * @param context the evaluation context of the target to check if its included
    * @return true if the target is included in the segment via rules
    */
-  private boolean isTargetIncludedOrExcludedInSegment(List<String> segmentList, Target target) {
+  private boolean isTargetIncludedOrExcludedInSegment(
+      List<String> segmentList, EvaluationContext context) {
     for (String segmentIdentifier : segmentList) {
-      final Optional<Segment> optionalSegment = query.getSegment(segmentIdentifier);
-      if (optionalSegment.isPresent()) {
-        final Segment segment = optionalSegment.get();
-        // Should Target be excluded - if in excluded list we return false
-        if (isTargetInList(target, segment.getExcluded())) {
-          log.debug("Target excluded from segment {} via exclude list", segment.getIdentifier());
-          return false;
-        }
-
-        // Should Target be included - if in included list we return true
-        if (isTargetInList(target, segment.getIncluded())) {
-          log.debug("Target included in segment {} via include list", segment.getIdentifier());
-          return true;
-        }
+      EvaluationContext.Membership membership = context.getSegmentMembership(segmentIdentifier);
+      if (membership == null) {
+        membership =
+            context
+                .getPlans()
+                .getSegmentPlan(segmentIdentifier)
+                .map(segment -> getSegmentMembership(segment, context))
+                .orElse(EvaluationContext.Membership.NONE);
+        context.putSegmentMembership(segmentIdentifier, membership);
+      }
 
-        // New style rules, if sent by BE prefer those first
-        List<GroupServingRule> newServingRules = segment.getServingRules();
-        if (newServingRules != null && !newServingRules.isEmpty()) {
-
-          for (GroupServingRule servingRule : newServingRules) {
-            if (evaluateClausesV2(servingRule.getClauses(), target)) {
-              return true;
-            }
-          }
-        } else {
-          // Legacy rules
-          // Should Target be included via segment rules
-          List<Clause> rules = segment.getRules();
-          if ((rules != null) && !rules.isEmpty() && evaluateClauses(rules, target)) {
-            log.debug("Target included in segment {} via rules", segment.getName());
-            return true;
-          }
-        }
+      if (membership == EvaluationContext.Membership.EXCLUDED) {
+        return false;
+      }
+      if (membership == EvaluationContext.Membership.INCLUDED) {
+        return true;
       }
     }
     log.debug("Target groups empty return false");
     return false;
   }
 
+  private EvaluationContext.Membership getSegmentMembership(
+      SegmentPlan segment, EvaluationContext context) {
+    final Target target = context.getTarget();
+    // Should Target be excluded - if in excluded list we return false
+    if (isTargetInList(target, segment.getExcluded())) {
+      log.debug("Target excluded from segment {} via exclude list", segment.getIdentifier());
+      return EvaluationContext.Membership.EXCLUDED;
+    }
+
+    // Should Target be included - if in included list we return true
+    if (isTargetInList(target, segment.getIncluded())) {
+      log.debug("Target included in segment {} via include list", segment.getIdentifier());
+      return EvaluationContext.Membership.INCLUDED;
+    }
+
+    // New style rules, if sent by BE prefer those first
+    List<List<ClausePlan>> newServingRules = segment.getServingRules();
+    if (!newServingRules.isEmpty()) {
+
+      for (List<ClausePlan> servingRule : newServingRules) {
+        if (evaluateClausesV2(servingRule, context)) {
+          return EvaluationContext.Membership.INCLUDED;
+        }
+      }
+    } else {
+      // Legacy rules
+      // Should Target be included via segment rules
+      List<ClausePlan> rules = segment.getRules();
+      if (!rules.isEmpty() && evaluateClauses(rules, context)) {
+        log.debug("Target included in segment {} via rules", segment.getIdentifier());
+        return EvaluationContext.Membership.INCLUDED;
+      }
+    }
+    return EvaluationContext.Membership.NONE;
+  }
+
+  /** @deprecated evaluation runs on compiled rule plans */
+  @Deprecated
   protected boolean evaluateRule(ServingRule servingRule, Target target) {
-    return this.evaluateClauses(servingRule.getClauses(), target);
+    return evaluateClauses(servingRule.getClauses(), target);
   }
 
   protected Optional<String> evaluateRules(List<ServingRule> servingRules, Target target) {
@@ -256,28 +362,32 @@ public class Evaluator implements Evaluation {
       log.debug("There is no target or serving rule");
       return Optional.empty();
     }
+    return evaluateRulePlans(
+        PlanCompiler.compileRules(servingRules), newContext(target));
+  }
 
-    final List<ServingRule> rules = new ArrayList<>(servingRules);
+  Optional<String> evaluateRulePlans(List<FlagPlan.RulePlan> rules, EvaluationContext context) {
+    if (context.getTarget() == null) {
+      log.debug("There is no target or serving rule");
+      return Optional.empty();
+    }
 
-    log.debug("Sorting serving rules {}", rules);
-    rules.sort(Comparator.comparing(ServingRule::getPriority));
-    log.debug("Sorted serving rules {}", rules);
-    for (ServingRule rule : rules) {
+    for (FlagPlan.RulePlan rule : rules) {
       // if evaluation is false just continue to next rule
-      if (!this.evaluateRule(rule, target)) {
+      if (!this.evaluateClauses(rule.getClauses(), context)) {
         log.debug("Unsuccessful evaluation of rule {} continue to next rule", rule);
         continue;
       }
 
       // rule matched, check if there is distribution
-      Distribution distribution = rule.getServe().getDistribution();
-      if (distribution != null) {
-        log.debug("Evaluate distribution {}", distribution);
-        return evaluateDistribution(distribution, target);
+      final ServePlan serve = rule.getServe();
+      if (serve.isDistribution()) {
+        log.debug("Evaluate distribution {}", serve.getVariations());
+        return evaluateDistribution(serve, context.getTarget());
       }
 
       // rule matched, here must be variation if distribution is undefined or null
-      String identifier = rule.getServe().getVariation();
+      String identifier = serve.getVariation();
       if (identifier != null) {
         log.debug("Return rule variation identifier {}", identifier);
         return Optional.of(identifier);
@@ -287,105 +397,150 @@ public class Evaluator implements Evaluation {
     return Optional.empty();
   }
 
+  /** @deprecated evaluation runs on the target index of the compiled {@link FlagPlan} */
+  @Deprecated
   protected Optional<String> evaluateVariationMap(
       @NonNull List<VariationMap> variationMaps, Target target) {
+    return evaluateVariationMap(
+        PlanCompiler.compileFlag(new FeatureConfig().variationToTargetMap(variationMaps)),
+        newContext(target));
+  }
+
+  Optional<String> evaluateVariationMap(@NonNull FlagPlan flag, EvaluationContext context) {
+    final Target target = context.getTarget();
     if (target == null) {
       log.debug("Target is null");
       return Optional.empty();
     }
-    for (VariationMap variationMap : variationMaps) {
-      List<TargetMap> targets = variationMap.getTargets();
-      if (targets != null) {
-        Optional<TargetMap> found =
-            targets.stream()
-                .filter(
-                    t -> {
-                      if (t.getIdentifier() != null)
-                        return t.getIdentifier().equals(target.getIdentifier());
-                      return false;
-                    })
-                .findFirst();
-        if (found.isPresent()) {
-          log.debug("Evaluate variationMap with result {}", variationMap.getVariation());
-          return Optional.of(variationMap.getVariation());
-        }
-      }
-
-      List<String> segmentIdentifiers = variationMap.getTargetSegments();
-      if (segmentIdentifiers != null
-          && isTargetIncludedOrExcludedInSegment(segmentIdentifiers, target)) {
+    final List<FlagPlan.TargetMapping> mappings = flag.getTargetMappings();
+    final Integer targetMapping = flag.getTargetIndex().get(target.getIdentifier());
+    // segments of mappings listed before the one explicitly naming the target take precedence
+    final int limit = targetMapping == null ? mappings.size() : targetMapping;
+    for (int i = 0; i < limit; i++) {
+      final FlagPlan.TargetMapping mapping = mappings.get(i);
+      List<String> segmentIdentifiers = mapping.getSegments();
+      if (!segmentIdentifiers.isEmpty()
+          && isTargetIncludedOrExcludedInSegment(segmentIdentifiers, context)) {
         log.debug(
             "Evaluate variationMap with segment identifiers {} and return {}",
             segmentIdentifiers,
-            variationMap.getVariation());
-        return Optional.of(variationMap.getVariation());
+            mapping.getVariation());
+        return Optional.of(mapping.getVariation());
       }
     }
+    if (targetMapping != null) {
+      final String variation = mappings.get(targetMapping).getVariation();
+      log.debug("Evaluate variationMap with result {}", variation);
+      return Optional.of(variation);
+    }
     return Optional.empty();
   }
 
+  /** @deprecated evaluation runs on the compiled {@link FlagPlan} */
+  @Deprecated
   protected Optional<Variation> evaluateFlag(@NonNull FeatureConfig featureConfig, Target target) {
-    Optional<String> variation = Optional.of(featureConfig.getOffVariation());
-    if (featureConfig.getState() == FeatureState.ON) {
-      variation = Optional.empty();
-      if (featureConfig.getVariationToTargetMap() != null)
-        variation = evaluateVariationMap(featureConfig.getVariationToTargetMap(), target);
-      if (!variation.isPresent()) variation = evaluateRules(featureConfig.getRules(), target);
+    return evaluateFlag(PlanCompiler.compileFlag(featureConfig), newContext(target));
+  }
+
+  Optional<Variation> evaluateFlag(@NonNull FlagPlan flag, EvaluationContext context) {
+    Optional<String> variation = Optional.ofNullable(flag.getOffVariation());
+    if (flag.isOn()) {
+      variation = evaluateVariationMap(flag, context);
+      if (!variation.isPresent()) variation = evaluateRulePlans(flag.getRules(), context);
       if (!variation.isPresent())
-        variation = evaluateDistribution(featureConfig.getDefaultServe().getDistribution(), target);
+        variation = evaluateDistribution(flag.getDefaultServe(), context.getTarget());
       if (!variation.isPresent())
-        variation = Optional.ofNullable(featureConfig.getDefaultServe().getVariation());
+        variation = Optional.ofNullable(flag.getDefaultServe().getVariation());
     }
-    if (variation.isPresent()) return findVariation(featureConfig.getVariations(), variation.get());
+    if (variation.isPresent()) return flag.findVariation(variation.get());
     log.debug("No variation found return empty");
     return Optional.empty();
   }
 
+  /** @deprecated evaluation runs on the compiled {@link FlagPlan} */
+  @Deprecated
   protected boolean checkPreRequisite(FeatureConfig parentFeatureConfig, Target target) {
-    List<Prerequisite> prerequisites = parentFeatureConfig.getPrerequisites();
-    if (!Utils.isEmpty(prerequisites)) {
-      log.debug(
-          "Checking pre requisites {} of parent feature {}",
-          prerequisites,
-          parentFeatureConfig.getFeature());
-      for (Prerequisite pqs : prerequisites) {
-        String preReqFeature = pqs.getFeature();
-        Optional<FeatureConfig> preReqFeatureConfig = query.getFlag(preReqFeature);
-        if (!preReqFeatureConfig.isPresent()) {
-          log.error(
-              "Could not retrieve the pre requisite details of feature flag :{}", preReqFeature);
-          return true;
-        }
+    return checkPreRequisite(PlanCompiler.compileFlag(parentFeatureConfig), newContext(target));
+  }
 
-        // Pre requisite variation value evaluated below
-        Optional<Variation> preReqEvaluatedVariation =
-            evaluateFlag(preReqFeatureConfig.get(), target);
-        if (!preReqEvaluatedVariation.isPresent()) {
-          log.error(
-              "Could not evaluate the prerequisite details of feature flag :{}", preReqFeature);
-          return true;
-        }
-        log.debug(
-            "Pre requisite flag {} has variation {} for target {}",
-            preReqFeatureConfig.get().getFeature(),
-            preReqEvaluatedVariation.get(),
-            target);
-
-        // Compare if the pre requisite variation is a possible valid value of
-        // the pre requisite FF
-        List<String> validPreReqVariations = pqs.getVariations();
-        log.debug(
-            "Pre requisite flag {} should have the variations {}",
-            preReqFeatureConfig.get().getFeature(),
-            validPreReqVariations);
-        if (validPreReqVariations.stream()
-            .noneMatch(
-                element -> element.contains(preReqEvaluatedVariation.get().getIdentifier()))) {
+  /**
+   * Checks the prerequisites of a flag depth first, so prerequisites of prerequisites are checked
+   * before their dependents complete. Evaluated variations and check results are memoized in the
+   * context, a prerequisite shared by several flags is evaluated once. A prerequisite cycle fails
+   * the check.
+   */
+  boolean checkPreRequisite(FlagPlan parentFlag, EvaluationContext context) {
+    List<Prerequisite> prerequisites = parentFlag.getPrerequisites();
+    if (prerequisites.isEmpty()) {
+      return true;
+    }
+
+    final String identifier = parentFlag.getIdentifier();
+    final Boolean memoized = context.getPrerequisiteResult(identifier);
+    if (memoized != null) {
+      return memoized;
+    }
+    if (!context.enter(identifier)) {
+      log.warn("Prerequisite cycle detected at feature flag {}, prerequisites fail", identifier);
+      return false;
+    }
+
+    final boolean result;
+    try {
+      result = checkPrerequisiteList(parentFlag, prerequisites, context);
+    } finally {
+      context.exit(identifier);
+    }
+    context.putPrerequisiteResult(identifier, result);
+    return result;
+  }
+
+  private boolean checkPrerequisiteList(
+      FlagPlan parentFlag, List<Prerequisite> prerequisites, EvaluationContext context) {
+    log.debug(
+        "Checking pre requisites {} of parent feature {}",
+        prerequisites,
+        parentFlag.getIdentifier());
+    for (Prerequisite pqs : prerequisites) {
+      String preReqFeature = pqs.getFeature();
+      Optional<FlagPlan> preReqFlag = context.getPlans().getFlagPlan(preReqFeature);
+      if (!preReqFlag.isPresent()) {
+        log.error(
+            "Could not retrieve the pre requisite details of feature flag :{}", preReqFeature);
+        return true;
+      }
+
+      // Pre requisite variation value evaluated below
+      Optional<Variation> preReqEvaluatedVariation =
+          context.getPrerequisiteVariation(preReqFeature);
+      if (preReqEvaluatedVariation == null) {
+        preReqEvaluatedVariation = evaluateFlag(preReqFlag.get(), context);
+        context.putPrerequisiteVariation(preReqFeature, preReqEvaluatedVariation);
+      }
+      if (!preReqEvaluatedVariation.isPresent()) {
+        log.error(
+            "Could not evaluate the prerequisite details of feature flag :{}", preReqFeature);
+        return true;
+      }
+      final String preReqVariation = preReqEvaluatedVariation.get().getIdentifier();
+      log.debug(
+          "Pre requisite flag {} has variation {} for target {}",
+          preReqFlag.get().getIdentifier(),
+          preReqEvaluatedVariation.get(),
+          context.getTarget());
+
+      // Compare if the pre requisite variation is a possible valid value of
+      // the pre requisite FF
+      List<String> validPreReqVariations = pqs.getVariations();
+      log.debug(
+          "Pre requisite flag {} should have the variations {}",
+          preReqFlag.get().getIdentifier(),
+          validPreReqVariations);
+      if (validPreReqVariations.stream().noneMatch(element -> element.contains(preReqVariation))) {
+        return false;
+      } else {
+        if (!checkPreRequisite(preReqFlag.get(), context)) {
           return false;
-        } else {
-          if (!checkPreRequisite(preReqFeatureConfig.get(), target)) {
-            return false;
-          }
         }
       }
     }
@@ -405,48 +560,180 @@ public class Evaluator implements Evaluation {
       MDC.put(targetKey, target.getIdentifier());
     }
     try {
-      Optional<FeatureConfig> flag = query.getFlag(identifier);
+      // one evaluation reads one version of the flags and segments
+      final EvaluationContext context = newContext(target);
+      Optional<FlagPlan> flag = context.getPlans().getFlagPlan(identifier);
       if (!flag.isPresent() || flag.get().getKind() != expected) {
         return Optional.empty();
       }
 
-      if (!Utils.isEmpty(flag.get().getPrerequisites())) {
-        boolean prereq = checkPreRequisite(flag.get(), target);
-        if (!prereq) {
-          return findVariation(flag.get().getVariations(), flag.get().getOffVariation());
-        }
-      }
+      final EvaluationCache.Result result = resolve(flag.get(), context);
 
-      final Optional<Variation> variation = evaluateFlag(flag.get(), target);
-      if (variation.isPresent()) {
-        if (callback != null) {
-          callback.processEvaluation(flag.get(), target, variation.get());
-        }
-        return variation;
+      // analytics are reported for cached results as well
+      if (result.isServed() && callback != null) {
+        callback.processEvaluation(flag.get().getConfig(), target, result.getVariation());
       }
+      return Optional.ofNullable(result.getVariation());
     } finally {
       MDC.remove(flagKey);
       MDC.remove(targetKey);
     }
-    return Optional.empty();
   }
 
   /**
-   * isTargetInList determines if the specified target is in the list of targets
+   * Evaluates every flag whose identifier starts with the given prefix for one target. Segment
+   * membership is resolved once per segment and shared across all flags, and served variations
+   * are reported to the callback in a single batch.
    *
-   * @param target a target that we want to check if it is in the list
-   * @param listOfTargets a list of targets
-   * @return true if target is in listOfTargets otherwise returns false
+   * @param prefix flag identifier prefix, empty for all flags
+   * @param target the target to evaluate the flags for
+   * @param callback receives the served variations, may be null
+   * @return an unmodifiable map of flag identifier to the evaluated variation, flags that could
+   *     not be evaluated are left out
    */
-  private boolean isTargetInList(Target target, List<io.harness.cf.model.Target> listOfTargets) {
-    if (listOfTargets != null) {
-      for (io.harness.cf.model.Target includedTarget : listOfTargets) {
-        if (includedTarget.getIdentifier().contains(target.getIdentifier())) {
-          return true;
-        }
+  public Map<String, Variation> evaluateAll(
+      @NonNull String prefix, Target target, FlagEvaluateCallback callback) {
+    final String targetKey = "target";
+    MDC.put(targetKey, target != null ? target.getIdentifier() : "_no_target");
+    try {
+      final Map<String, Variation> variations = new HashMap<>();
+      final Map<String, Variation> served = new HashMap<>();
+      final EvaluationContext context = newContext(target);
+      try (Stream<String> identifiers = query.streamFeatureIdentifiers(prefix)) {
+        identifiers.forEach(
+            identifier -> {
+              final Optional<FlagPlan> flag = context.getPlans().getFlagPlan(identifier);
+              if (!flag.isPresent()) {
+                return;
+              }
+              final EvaluationCache.Result result = resolve(flag.get(), context);
+              if (result.getVariation() != null) {
+                variations.put(identifier, result.getVariation());
+                if (result.isServed()) {
+                  served.put(identifier, result.getVariation());
+                }
+              }
+            });
+      }
+
+      if (callback != null && !served.isEmpty()) {
+        callback.processEvaluations(target, served);
       }
+      return Collections.unmodifiableMap(variations);
+    } finally {
+      MDC.remove(targetKey);
     }
-    return false;
+  }
+
+  /**
+   * Evaluates one flag for many targets in parallel. The flag, its prerequisites and its segments
+   * are captured when this method is called, so every target is evaluated against the same
+   * versions even if they are updated while the batch runs. Targets are read lazily in chunks and
+   * results are returned in the order of the input.
+   *
+   * @param identifier the flag to evaluate
+   * @param targets the targets to evaluate the flag for, read lazily
+   * @param executor runs the evaluation of each chunk of targets
+   * @param aggregateMetrics if true, served variations are counted and reported to the callback
+   *     once the stream is exhausted or closed, instead of once per target. Aggregated counts are
+   *     not attributed to individual targets.
+   * @param callback receives the served variations, may be null
+   * @return a sequential stream of results, one per input target
+   */
+  public Stream<TargetEvaluation> evaluateBatch(
+      @NonNull String identifier,
+      @NonNull Iterator<? extends Target> targets,
+      @NonNull Executor executor,
+      boolean aggregateMetrics,
+      FlagEvaluateCallback callback) {
+    final PlanQuery current = plans.current();
+    final FlagPlan flag = current.getFlagPlan(identifier).orElse(null);
+    final Evaluator snapshot =
+        flag == null
+            ? null
+            : new Evaluator(query, PlanQuery.snapshot(current, flag), config, cache);
+    final Map<Variation, LongAdder> counts =
+        aggregateMetrics && callback != null ? new ConcurrentHashMap<>() : null;
+
+    final BatchEvaluation batch =
+        new BatchEvaluation(
+            targets,
+            chunk -> {
+              final List<TargetEvaluation> results = new ArrayList<>(chunk.size());
+              final Map<Variation, Long> chunkCounts = counts == null ? null : new HashMap<>();
+              for (Target target : chunk) {
+                Variation variation = null;
+                if (flag != null) {
+                  final EvaluationCache.Result result =
+                      snapshot.resolve(flag, snapshot.newContext(target));
+                  variation = result.getVariation();
+                  if (result.isServed() && callback != null) {
+                    if (chunkCounts != null) {
+                      chunkCounts.merge(variation, 1L, Long::sum);
+                    } else {
+                      callback.processEvaluation(flag.getConfig(), target, variation);
+                    }
+                  }
+                }
+                results.add(new TargetEvaluation(target, variation));
+              }
+              if (chunkCounts != null) {
+                chunkCounts.forEach(
+                    (variation, count) ->
+                        counts.computeIfAbsent(variation, k -> new LongAdder()).add(count));
+              }
+              return results;
+            },
+            executor,
+            () -> {
+              if (counts != null && !counts.isEmpty()) {
+                final Map<Variation, Long> totals = new HashMap<>();
+                counts.forEach((variation, count) -> totals.put(variation, count.sum()));
+                callback.processEvaluationCounts(flag.getConfig(), totals);
+              }
+            });
+    return batch.stream();
+  }
+
+  private EvaluationContext newContext(Target target) {
+    return new EvaluationContext(target, plans.current());
+  }
+
+  private EvaluationCache.Result resolve(FlagPlan flag, EvaluationContext context) {
+    if (cache == null) {
+      return evaluateResult(flag, context);
+    }
+    final EvaluationCache.Key key = cache.key(flag, context.getTarget(), context.getPlans());
+    EvaluationCache.Result result = cache.get(key);
+    if (result == null) {
+      result = evaluateResult(flag, context);
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  private EvaluationCache.Result evaluateResult(FlagPlan flag, EvaluationContext context) {
+    if (!flag.getPrerequisites().isEmpty()) {
+      boolean prereq = checkPreRequisite(flag, context);
+      if (!prereq) {
+        return new EvaluationCache.Result(
+            flag.findVariation(flag.getOffVariation()).orElse(null), false);
+      }
+    }
+
+    final Optional<Variation> variation = evaluateFlag(flag, context);
+    return new EvaluationCache.Result(variation.orElse(null), variation.isPresent());
+  }
+
+  /**
+   * isTargetInList determines if the specified target is in the set of target identifiers
+   *
+   * @param target a target that we want to check if it is in the list
+   * @param listOfTargets an index of target identifiers
+   * @return true if target is in listOfTargets otherwise returns false
+   */
+  private boolean isTargetInList(Target target, Set<String> listOfTargets) {
+    return target.getIdentifier() != null && listOfTargets.contains(target.getIdentifier());
   }
 
   public boolean boolVariation(
@@ -455,7 +742,10 @@ public class Evaluator implements Evaluation {
         evaluate(identifier, target, FeatureConfig.KindEnum.BOOLEAN, callback);
 
     if (variation.isPresent()) {
-      return Boolean.parseBoolean(variation.get().getValue());
+      final FlagPlan.ParsedValue parsed = getParsedValue(identifier, variation.get());
+      return parsed != null
+          ? parsed.isBooleanValue()
+          : Boolean.parseBoolean(variation.get().getValue());
     }
 
     SdkCodes.warnDefaultVariationServed(identifier, target, String.valueOf(defaultValue), config);
@@ -481,6 +771,10 @@ public class Evaluator implements Evaluation {
         evaluate(identifier, target, FeatureConfig.KindEnum.INT, callback);
 
     if (variation.isPresent()) {
+      final FlagPlan.ParsedValue parsed = getParsedValue(identifier, variation.get());
+      if (parsed != null && parsed.getNumberValue() != null) {
+        return parsed.getNumberValue();
+      }
       return Double.parseDouble(variation.get().getValue());
     }
 
@@ -494,10 +788,23 @@ public class Evaluator implements Evaluation {
         evaluate(identifier, target, FeatureConfig.KindEnum.JSON, callback);
 
     if (variation.isPresent()) {
-      return new Gson().fromJson(variation.get().getValue(), JsonObject.class);
+      final FlagPlan.ParsedValue parsed = getParsedValue(identifier, variation.get());
+      if (parsed != null && parsed.getJsonValue() != null) {
+        // the parsed object is shared, callers get their own copy
+        return parsed.getJsonValue().deepCopy();
+      }
+      return GSON.fromJson(variation.get().getValue(), JsonObject.class);
     }
 
     SdkCodes.warnDefaultVariationServed(identifier, target, defaultValue.toString(), config);
     return defaultValue;
   }
+
+  /**
+   * Looks up the value parsed at store time for a variation. Returns null if the flag was updated
+   * after the variation was evaluated, callers then parse the raw value.
+   */
+  private FlagPlan.ParsedValue getParsedValue(String identifier, Variation variation) {
+    return plans.getFlagPlan(identifier).map(plan -> plan.getParsedValue(variation)).orElse(null);
+  }
 }
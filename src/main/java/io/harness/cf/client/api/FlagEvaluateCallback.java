@@ -3,10 +3,18 @@ package io.harness.cf.client.api;
 import io.harness.cf.client.dto.Target;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.Variation;
+import java.util.Map;
 import lombok.NonNull;
 
 interface FlagEvaluateCallback {
 
   void processEvaluation(
       @NonNull FeatureConfig featureConfig, Target target, @NonNull Variation variation);
+
+  /** Batch form of {@link #processEvaluation}, keyed by flag identifier */
+  void processEvaluations(Target target, @NonNull Map<String, Variation> variations);
+
+  /** Number of times each variation of a flag was served, not attributed to any target */
+  void processEvaluationCounts(
+      @NonNull FeatureConfig featureConfig, @NonNull Map<Variation, Long> counts);
 }
@@ -0,0 +1,159 @@
+package io.harness.cf.client.api;
+
+import com.google.gson.JsonObject;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.FeatureState;
+import io.harness.cf.model.Prerequisite;
+import io.harness.cf.model.Variation;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import lombok.Getter;
+
+/**
+ * FlagPlan is an immutable, pre-resolved view of a {@link FeatureConfig} built once per stored flag
+ * version. Rules are sorted by priority, operators are resolved and variations are indexed by
+ * identifier so the evaluator never has to re-interpret the raw model.
+ */
+@Getter
+final class FlagPlan {
+
+  @Getter
+  static final class RulePlan {
+    private final String ruleId;
+    private final List<ClausePlan> clauses;
+    private final ServePlan serve;
+
+    RulePlan(String ruleId, List<ClausePlan> clauses, ServePlan serve) {
+      this.ruleId = ruleId;
+      this.clauses = clauses;
+      this.serve = serve;
+    }
+
+    @Override
+    public String toString() {
+      return "RulePlan(" + ruleId + ")";
+    }
+  }
+
+  @Getter
+  static final class TargetMapping {
+    private final String variation;
+    private final List<String> segments;
+
+    TargetMapping(String variation, List<String> segments) {
+      this.variation = variation;
+      this.segments = segments;
+    }
+  }
+
+  /**
+   * Value of a variation parsed according to the flag kind. Number and JSON values are null if the
+   * variation could not be parsed.
+   */
+  @Getter
+  static final class ParsedValue {
+    private final Variation variation;
+    private final boolean booleanValue;
+    private final Double numberValue;
+
+    /** shared between callers, must be copied before being handed out */
+    private final JsonObject jsonValue;
+
+    ParsedValue(
+        Variation variation, boolean booleanValue, Double numberValue, JsonObject jsonValue) {
+      this.variation = variation;
+      this.booleanValue = booleanValue;
+      this.numberValue = numberValue;
+      this.jsonValue = jsonValue;
+    }
+  }
+
+  private final FeatureConfig config;
+
+  /** unique per compiled plan, changes every time the flag is stored */
+  private final long revision;
+
+  private final String identifier;
+  private final FeatureConfig.KindEnum kind;
+  private final boolean on;
+  private final String offVariation;
+  private final Map<String, Variation> variations;
+
+  /** variation identifier to its parsed value */
+  private final Map<String, ParsedValue> parsedValues;
+  private final List<TargetMapping> targetMappings;
+
+  /** target identifier to the index of the first target mapping that lists it */
+  private final Map<String, Integer> targetIndex;
+
+  /** approximate retained size of the target index in bytes */
+  private final long targetIndexBytes;
+
+  private final List<RulePlan> rules;
+  private final ServePlan defaultServe;
+  private final List<Prerequisite> prerequisites;
+
+  /** identifiers of the segments referenced by target mappings and rules */
+  private final List<String> segmentIdentifiers;
+
+  FlagPlan(
+      long revision,
+      FeatureConfig config,
+      Map<String, Variation> variations,
+      Map<String, ParsedValue> parsedValues,
+      List<TargetMapping> targetMappings,
+      Map<String, Integer> targetIndex,
+      List<RulePlan> rules,
+      ServePlan defaultServe,
+      List<Prerequisite> prerequisites,
+      List<String> segmentIdentifiers) {
+    this.revision = revision;
+    this.config = config;
+    this.identifier = config.getFeature();
+    this.kind = config.getKind();
+    this.on = config.getState() == FeatureState.ON;
+    this.offVariation = config.getOffVariation();
+    this.variations = variations;
+    this.parsedValues = parsedValues;
+    this.targetMappings = targetMappings;
+    this.targetIndex = targetIndex;
+    this.targetIndexBytes = PlanCompiler.estimateIndexBytes(targetIndex.keySet());
+    this.rules = rules;
+    this.defaultServe = defaultServe;
+    this.prerequisites = prerequisites;
+    this.segmentIdentifiers = segmentIdentifiers;
+  }
+
+  Optional<Variation> findVariation(String identifier) {
+    if (identifier == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(variations.get(identifier));
+  }
+
+  /**
+   * Returns the parsed value of a variation evaluated from this plan, or null if the variation does
+   * not belong to this plan.
+   */
+  ParsedValue getParsedValue(Variation variation) {
+    final ParsedValue value = parsedValues.get(variation.getIdentifier());
+    return value != null && value.getVariation() == variation ? value : null;
+  }
+
+  /**
+   * Returns a new snapshot of this flag version and the given previous version. Both are deep
+   * copies made for this call only, so callers may modify them and they never change when the
+   * repository does.
+   */
+  FeatureSnapshot getSnapshot(Supplier<FeatureConfig> previous) {
+    return new FeatureSnapshot(ModelCopier.copy(config), ModelCopier.copy(previous.get()));
+  }
+
+  @Override
+  public String toString() {
+    return "FlagPlan(" + identifier + ")";
+  }
+}
@@ -0,0 +1,24 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.List;
+import lombok.NonNull;
+
+/**
+ * A {@link Repository} that counts its writes. A fetch reads the generation before it starts and
+ * applies its result only if no other write happened in between, so a response that was already
+ * outdated when it arrived never overwrites or deletes what a stream event stored meanwhile.
+ */
+interface GenerationalRepository extends Repository {
+
+  /** Returns a number that changes with every write that changes a flag or segment */
+  long getGeneration();
+
+  /**
+   * Same as {@link #replaceAll(List, List)}, but applies nothing and returns false if the
+   * repository was written since it was at the given generation
+   */
+  boolean replaceAll(
+      @NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments, long generation);
+}
@@ -1,5 +1,6 @@
 package io.harness.cf.client.api;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.harness.cf.client.common.SdkCodes;
 import io.harness.cf.client.connector.*;
@@ -7,12 +8,30 @@ import io.harness.cf.client.dto.Message;
 import io.harness.cf.client.dto.Target;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.Segment;
 import io.harness.cf.model.Variation;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,8 +51,11 @@ class InnerClient
     METRICS,
   }
 
+  private static final Gson SNAPSHOT_GSON = new Gson();
+
   private Connector connector;
-  private Evaluation evaluator;
+  private Evaluator evaluator;
+  private WarmStart warmStart;
   private Repository repository;
   private BaseConfig options;
   private AuthService authService;
@@ -88,9 +110,22 @@ class InnerClient
     this.connector = connector;
     this.connector.setOnUnauthorized(this::onUnauthorized);
     // initialization
-    repository =
-        new StorageRepository(
-            options.getCache(), options.getStore(), this, options.isEnableFeatureSnapshot());
+    if (options.isEnableSnapshotRepository()) {
+      repository =
+          new SnapshotRepository(options.getStore(), this, options.isEnableFeatureSnapshot());
+    } else {
+      repository =
+          new StorageRepository(
+              options.getCache(), options.getStore(), this, options.isEnableFeatureSnapshot());
+    }
+    if (options.getWarmStartFile() != null) {
+      warmStart =
+          new WarmStart(
+              Paths.get(options.getWarmStartFile()),
+              repository,
+              options.getWarmStartWriteIntervalInSeconds());
+      warmStart.load();
+    }
     evaluator = new Evaluator(repository, options);
     authService = new AuthService(this.connector, options.getPollIntervalInSeconds(), this);
     pollProcessor =
@@ -98,7 +133,9 @@ class InnerClient
     metricsProcessor =
         new MetricsProcessor(
             this.connector, this.options, this, connector.getShouldFlushAnalyticsOnClose());
-    updateProcessor = new UpdateProcessor(this.connector, this.repository, this);
+    updateProcessor =
+        new UpdateProcessor(
+            this.connector, this.repository, this, options.getStreamUpdateDebounceInMillis());
 
     // start with authentication
     authService.start();
@@ -159,26 +196,52 @@ class InnerClient
     log.error("PollerProcessor failed while initializing, exception: ", exc);
   }
 
+  @Override
+  public void onPollerFetched(
+      @NonNull final List<FeatureConfig> flags, @NonNull final List<Segment> segments) {
+    if (warmStart != null) {
+      warmStart.reconcile();
+    }
+  }
+
   @Override
   public void onFlagStored(@NonNull final String identifier) {
+    onRepositoryChanged();
     notifyConsumers(Event.CHANGED, identifier);
   }
 
   @Override
   public void onFlagDeleted(@NonNull final String identifier) {
+    onRepositoryChanged();
     notifyConsumers(Event.CHANGED, identifier);
   }
 
   @Override
   public void onSegmentStored(@NonNull final String identifier) {
+    onRepositoryChanged();
     repository.findFlagsBySegment(identifier).forEach(s -> notifyConsumers(Event.CHANGED, s));
   }
 
   @Override
   public void onSegmentDeleted(@NonNull final String identifier) {
+    onRepositoryChanged();
     repository.findFlagsBySegment(identifier).forEach(s -> notifyConsumers(Event.CHANGED, s));
   }
 
+  private void onRepositoryChanged() {
+    if (warmStart != null) {
+      warmStart.onChanged();
+    }
+  }
+
+  /**
+   * Age of the warm start snapshot while evaluations are served from it, empty if none was loaded
+   * or the first fetch from the server has replaced it
+   */
+  public Optional<Duration> getWarmStartSnapshotAge() {
+    return warmStart == null ? Optional.empty() : warmStart.getSnapshotAge();
+  }
+
   @Override
   public void onMetricsReady() {
     initialize(Processor.METRICS);
@@ -336,6 +399,66 @@ class InnerClient
     return snapshots;
   }
 
+  /**
+   * Returns the snapshots of all flags with the given identifier prefix lazily. Identifiers are
+   * read from the repository index as the stream advances and each snapshot is copied when the
+   * stream reaches it, so nothing is held once it has been consumed. Flags deleted in the meantime
+   * are skipped.
+   */
+  public Stream<FeatureSnapshot> streamFeatureSnapshots(String prefix, boolean parallel) {
+    if (!options.isEnableFeatureSnapshot()) {
+      log.debug("FeatureSnapshot disabled, snapshot will contain only current version.");
+    }
+    final Stream<String> identifiers = repository.streamFeatureIdentifiers(prefix);
+    final Stream<String> stream = parallel ? identifiers.parallel().unordered() : identifiers;
+    return stream.map(repository::getFeatureSnapshot).filter(Objects::nonNull);
+  }
+
+  /**
+   * Writes the snapshots of all flags with the given identifier prefix to the output as
+   * newline-delimited JSON, one snapshot per line. In parallel mode snapshots are serialized
+   * concurrently and lines are written in no particular order. The output is flushed, not closed.
+   *
+   * @return the number of snapshots written
+   */
+  public long exportFeatureSnapshots(String prefix, @NonNull OutputStream out, boolean parallel)
+      throws IOException {
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    final LongAdder count = new LongAdder();
+    try (Stream<FeatureSnapshot> snapshots = streamFeatureSnapshots(prefix, parallel)) {
+      snapshots
+          .map(SNAPSHOT_GSON::toJson)
+          .forEach(
+              line -> {
+                synchronized (writer) {
+                  try {
+                    writer.write(line);
+                    writer.write('\n');
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                }
+                count.increment();
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.flush();
+    return count.sum();
+  }
+
+  public EvaluationCacheStats getEvaluationCacheStats() {
+    return evaluator.getEvaluationCacheStats();
+  }
+
+  public TargetIndexStats getTargetIndexStats() {
+    return evaluator.getTargetIndexStats();
+  }
+
+  public List<StripeStats> getStreamUpdateStats() {
+    return updateProcessor == null ? Collections.emptyList() : updateProcessor.getStats();
+  }
+
   public FeatureSnapshot getFeatureSnapshot(@NonNull String identifier) {
     if (!options.isEnableFeatureSnapshot()) {
       log.debug("FeatureSnapshot disabled, snapshot will contain only current version.");
@@ -382,6 +505,28 @@ class InnerClient
     return evaluator.jsonVariation(identifier, target, defaultValue, this);
   }
 
+  /**
+   * Evaluates all flags, or the flags whose identifier starts with the given prefix, for one
+   * target.
+   *
+   * @return an unmodifiable map of flag identifier to variation
+   */
+  public Map<String, Variation> evaluateAll(@NonNull final String prefix, final Target target) {
+    return evaluator.evaluateAll(prefix, target, this);
+  }
+
+  /**
+   * Evaluates one flag for each of the given targets in parallel, see {@link
+   * Evaluator#evaluateBatch}.
+   */
+  public Stream<TargetEvaluation> evaluateBatch(
+      @NonNull final String identifier,
+      @NonNull final Iterator<? extends Target> targets,
+      @NonNull final Executor executor,
+      final boolean aggregateMetrics) {
+    return evaluator.evaluateBatch(identifier, targets, executor, aggregateMetrics, this);
+  }
+
   @Override
   public void processEvaluation(
       @NonNull FeatureConfig featureConfig, Target target, @NonNull Variation variation) {
@@ -390,6 +535,21 @@ class InnerClient
     }
   }
 
+  @Override
+  public void processEvaluations(Target target, @NonNull Map<String, Variation> variations) {
+    if (this.options.isAnalyticsEnabled()) {
+      metricsProcessor.registerEvaluations(target, variations);
+    }
+  }
+
+  @Override
+  public void processEvaluationCounts(
+      @NonNull FeatureConfig featureConfig, @NonNull Map<Variation, Long> counts) {
+    if (this.options.isAnalyticsEnabled()) {
+      metricsProcessor.registerEvaluationCounts(featureConfig.getFeature(), counts);
+    }
+  }
+
   public void close() {
     log.info("Closing the client");
     closing = true;
@@ -401,6 +561,9 @@ class InnerClient
     connector.setIsShuttingDown();
     off();
     authService.close();
+    if (warmStart != null) {
+      warmStart.close();
+    }
     repository.close();
     pollProcessor.close();
     updateProcessor.close();
@@ -0,0 +1,447 @@
+package io.harness.cf.client.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+import io.harness.cf.client.common.Storage;
+import io.harness.cf.client.logger.LogUtil;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MappedLogStore is a persistent {@link Storage} backed by an append-only, memory-mapped file.
+ * Every {@link #set} and {@link #delete} appends one checksummed record, and only the offset of the
+ * latest record per key is kept on the heap. Values are decoded from the mapped file when they are
+ * read. On open the file is replayed and anything after the last intact record, such as a record
+ * torn by a crash, is discarded. Superseded records are removed by compaction, which rewrites the
+ * live records into a new file and atomically replaces the old one.
+ *
+ * <p>Supported values are {@link FeatureConfig} and {@link Segment}, kept in the {@link
+ * BinaryCodec} format, and {@link String}. The file is limited to 2 GB.
+ */
+@Slf4j
+public class MappedLogStore implements Storage, AutoCloseable {
+
+  private static final int MAGIC = 0x4646_4C53;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 8;
+
+  /** payload length and CRC32 of the payload */
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private static final long INITIAL_MAPPING_SIZE = 1 << 20;
+  private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+  private static final byte TOMBSTONE = 0;
+  private static final byte STRING = 1;
+  private static final byte FEATURE_CONFIG = 2;
+  private static final byte SEGMENT = 3;
+
+  static {
+    LogUtil.setSystemProps();
+  }
+
+  private final Path path;
+  private final boolean syncOnWrite;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** key to the offset of its latest record */
+  private final Map<String, Integer> index = new HashMap<>();
+
+  private final ScheduledExecutorService compactor;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int end;
+  private long liveBytes;
+  private boolean closed;
+
+  /**
+   * Opens or creates the store, compacting once a minute if needed. Writes are not synced: they
+   * survive a crash of the process, but the latest ones may be lost if the machine goes down, in
+   * which case the torn tail is discarded on open and the flags are fetched again.
+   */
+  public MappedLogStore(@NonNull String filename) {
+    this(filename, false, 60);
+  }
+
+  /**
+   * @param syncOnWrite force every write to disk before returning. This flushes the mapped pages
+   *     on every set and delete, which costs a disk round trip per write and serializes writers
+   *     behind it, so only enable it if losing the last writes on power loss is not acceptable.
+   * @param compactionIntervalSeconds how often to check whether compaction is needed, 0 disables
+   *     background compaction
+   */
+  public MappedLogStore(
+      @NonNull String filename, boolean syncOnWrite, long compactionIntervalSeconds) {
+    this.path = Paths.get(filename);
+    this.syncOnWrite = syncOnWrite;
+    try {
+      open();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    log.info("MappedLogStore initialized with {} keys", index.size());
+
+    if (compactionIntervalSeconds > 0) {
+      compactor =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                final Thread thread = new Thread(r, "MappedLogStore-compaction");
+                thread.setDaemon(true);
+                return thread;
+              });
+      compactor.scheduleWithFixedDelay(
+          this::compactIfNeeded,
+          compactionIntervalSeconds,
+          compactionIntervalSeconds,
+          TimeUnit.SECONDS);
+    } else {
+      compactor = null;
+    }
+  }
+
+  @Override
+  public void set(@NonNull String key, @NonNull Object value) {
+    if (value instanceof FeatureConfig) {
+      append(key, FEATURE_CONFIG, BinaryCodec.encode((FeatureConfig) value));
+    } else if (value instanceof Segment) {
+      append(key, SEGMENT, BinaryCodec.encode((Segment) value));
+    } else if (value instanceof String) {
+      append(key, STRING, ((String) value).getBytes(UTF_8));
+    } else {
+      log.error(
+          "Exception was raised when storing the key {} with the error message unsupported type {}",
+          key,
+          value.getClass().getName());
+    }
+  }
+
+  @Override
+  public Object get(@NonNull String key) {
+    lock.readLock().lock();
+    try {
+      final Integer offset = index.get(key);
+      return offset == null ? null : decode(offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void delete(@NonNull String key) {
+    lock.readLock().lock();
+    try {
+      if (!index.containsKey(key)) {
+        return;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    append(key, TOMBSTONE, new byte[0]);
+  }
+
+  @Override
+  public List<String> keys() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(index.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Compacts the file if superseded records take more space than live ones */
+  public void compactIfNeeded() {
+    final long live;
+    final long dead;
+    lock.readLock().lock();
+    try {
+      live = liveBytes;
+      dead = end - HEADER_SIZE - liveBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (dead > Math.max(live, MIN_COMPACTION_BYTES)) {
+      compact();
+    }
+  }
+
+  /** Rewrites the live records into a new file that atomically replaces the current one */
+  public void compact() {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      final long start = System.currentTimeMillis();
+      final int previousEnd = end;
+      final Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+      Files.deleteIfExists(compacted);
+
+      // keep the records in file order
+      final List<Map.Entry<String, Integer>> records = new ArrayList<>(index.entrySet());
+      records.sort(Map.Entry.comparingByValue());
+      final Map<String, Integer> offsets = new HashMap<>(records.size() * 4 / 3 + 1);
+      int offset = HEADER_SIZE;
+      try (FileChannel out = FileChannel.open(compacted, CREATE_NEW, WRITE)) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION);
+        write(out, header);
+        for (Map.Entry<String, Integer> record : records) {
+          final int size = recordSize(record.getValue());
+          write(out, range(buffer, record.getValue(), record.getValue() + size));
+          offsets.put(record.getKey(), offset);
+          offset += size;
+        }
+        out.force(true);
+      }
+
+      // the current file stays open until the new one is in place, so if the move fails the
+      // store carries on with it unchanged
+      try {
+        moveCompacted(compacted, path);
+      } catch (IOException ex) {
+        Files.deleteIfExists(compacted);
+        throw ex;
+      }
+      final FileChannel previous = channel;
+      channel = FileChannel.open(path, READ, WRITE);
+      map(Math.max(INITIAL_MAPPING_SIZE, 2L * offset));
+      previous.close();
+      index.clear();
+      index.putAll(offsets);
+      end = offset;
+      liveBytes = offset - HEADER_SIZE;
+      log.debug(
+          "MappedLogStore compacted from {} to {} bytes in {}ms",
+          previousEnd,
+          end,
+          System.currentTimeMillis() - start);
+    } catch (IOException ex) {
+      log.error("Exception was raised while compacting the store {}", ex.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Atomically replaces the store file with the compacted one */
+  void moveCompacted(Path compacted, Path target) throws IOException {
+    Files.move(
+        compacted, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @Override
+  public void close() {
+    if (compactor != null) {
+      compactor.shutdownNow();
+    }
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      buffer.force();
+      channel.close();
+      log.debug("MappedLogStore closed");
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(path, CREATE, READ, WRITE);
+    final long size = channel.size();
+    map(Math.max(size, INITIAL_MAPPING_SIZE));
+    if (size < HEADER_SIZE || buffer.getInt(0) == 0) {
+      buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION);
+      end = HEADER_SIZE;
+      return;
+    }
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+      channel.close();
+      throw new IOException("Unsupported file format: " + path);
+    }
+    replay();
+  }
+
+  // rebuilds the index from the records in the file and stops at the first incomplete record
+  private void replay() {
+    int offset = HEADER_SIZE;
+    int size;
+    while ((size = validRecordSize(offset)) > 0) {
+      final ByteBuffer record = range(buffer, offset + RECORD_HEADER_SIZE, offset + size);
+      final byte type = record.get();
+      final String key = readKey(record);
+      final Integer previous = type == TOMBSTONE ? index.remove(key) : index.put(key, offset);
+      if (previous != null) {
+        liveBytes -= recordSize(previous);
+      }
+      if (type != TOMBSTONE) {
+        liveBytes += size;
+      }
+      offset += size;
+    }
+    end = offset;
+
+    if (end + 4 <= buffer.capacity() && buffer.getInt(end) != 0) {
+      log.warn("MappedLogStore discarded an incomplete record at offset {}", end);
+      for (int i = end; i < buffer.capacity(); i++) {
+        buffer.put(i, (byte) 0);
+      }
+    }
+  }
+
+  private void append(String key, byte type, byte[] value) {
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    if (keyBytes.length > 0xFFFF) {
+      log.error(
+          "Exception was raised when storing the key {} with the error message key too long",
+          key);
+      return;
+    }
+    final int payload = 1 + 2 + keyBytes.length + value.length;
+    final int size = RECORD_HEADER_SIZE + payload;
+
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        log.warn("MappedLogStore is closed, key {} not stored", key);
+        return;
+      }
+      ensureCapacity((long) end + size + 4);
+      range(buffer, end + RECORD_HEADER_SIZE, end + size)
+          .put(type)
+          .putShort((short) keyBytes.length)
+          .put(keyBytes)
+          .put(value);
+
+      final CRC32 crc = new CRC32();
+      crc.update(range(buffer, end + RECORD_HEADER_SIZE, end + size));
+      buffer.putInt(end + size, 0);
+      buffer.putInt(end + 4, (int) crc.getValue());
+      buffer.putInt(end, payload);
+      if (syncOnWrite) {
+        buffer.force();
+      }
+
+      final Integer previous = type == TOMBSTONE ? index.remove(key) : index.put(key, end);
+      if (previous != null) {
+        liveBytes -= recordSize(previous);
+      }
+      if (type != TOMBSTONE) {
+        liveBytes += size;
+      }
+      end += size;
+      log.debug("MappedLogStore appended key {} at offset {}", key, end - size);
+    } catch (IOException ex) {
+      log.error(
+          "Exception was raised when storing the key {} with the error message {}",
+          key,
+          ex.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private Object decode(int offset) {
+    final int payload = buffer.getInt(offset);
+    final ByteBuffer record =
+        range(buffer, offset + RECORD_HEADER_SIZE, offset + RECORD_HEADER_SIZE + payload);
+    final byte type = record.get();
+    final int keyLength = record.getShort() & 0xFFFF;
+    ((Buffer) record).position(record.position() + keyLength);
+
+    switch (type) {
+      case FEATURE_CONFIG:
+        return BinaryCodec.decode(record, FeatureConfig.class);
+      case SEGMENT:
+        return BinaryCodec.decode(record, Segment.class);
+      case STRING:
+        final byte[] value = new byte[record.remaining()];
+        record.get(value);
+        return new String(value, UTF_8);
+      default:
+        log.error("Unknown record type {} at offset {}", type, offset);
+        return null;
+    }
+  }
+
+  /** Returns the size of an intact record at the offset, or 0 if there is none */
+  private int validRecordSize(int offset) {
+    if ((long) offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+      return 0;
+    }
+    final int payload = buffer.getInt(offset);
+    if (payload < 3 || (long) offset + RECORD_HEADER_SIZE + payload > buffer.capacity()) {
+      return 0;
+    }
+    final int keyLength = buffer.getShort(offset + RECORD_HEADER_SIZE + 1) & 0xFFFF;
+    if (3 + keyLength > payload) {
+      return 0;
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(range(buffer, offset + RECORD_HEADER_SIZE, offset + RECORD_HEADER_SIZE + payload));
+    if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+      return 0;
+    }
+    return RECORD_HEADER_SIZE + payload;
+  }
+
+  private int recordSize(int offset) {
+    return RECORD_HEADER_SIZE + buffer.getInt(offset);
+  }
+
+  private static String readKey(ByteBuffer record) {
+    final byte[] key = new byte[record.getShort() & 0xFFFF];
+    record.get(key);
+    return new String(key, UTF_8);
+  }
+
+  private void ensureCapacity(long required) throws IOException {
+    if (required > buffer.capacity()) {
+      map(Math.max(2L * buffer.capacity(), required));
+    }
+  }
+
+  private void map(long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Store file would exceed 2 GB: " + path);
+    }
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+  }
+
+  // Buffer casts keep the Java 8 method signatures when compiled with a newer JDK
+  private static ByteBuffer range(ByteBuffer buffer, int from, int to) {
+    final ByteBuffer range = buffer.duplicate();
+    ((Buffer) range).limit(to);
+    ((Buffer) range).position(from);
+    return range;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer source) throws IOException {
+    while (source.hasRemaining()) {
+      channel.write(source);
+    }
+  }
+}
@@ -36,6 +36,10 @@ class MetricsProcessor {
       freqMap.compute(key, (k, v) -> (v == null) ? 1L : v + 1L);
     }
 
+    void add(K key, long delta) {
+      freqMap.compute(key, (k, v) -> (v == null) ? delta : v + delta);
+    }
+
     int size() {
       return freqMap.size();
     }
@@ -137,7 +141,35 @@ class MetricsProcessor {
   }
 
   void registerEvaluation(Target target, String featureName, Variation variation) {
+    registerEvent(new MetricEvent(featureName, registerTarget(target), variation));
+    evalCounter.increment();
+  }
+
+  /** Registers the evaluations of several flags for one target, the target is tracked once */
+  void registerEvaluations(Target target, Map<String, Variation> variations) {
+    final Target metricTarget = registerTarget(target);
+    for (Map.Entry<String, Variation> entry : variations.entrySet()) {
+      registerEvent(new MetricEvent(entry.getKey(), metricTarget, entry.getValue()));
+    }
+    evalCounter.add(variations.size());
+  }
+
+  /** Registers variation counts of a flag against the global target */
+  void registerEvaluationCounts(String featureName, Map<Variation, Long> counts) {
+    long total = 0;
+    for (Map.Entry<Variation, Long> entry : counts.entrySet()) {
+      final MetricEvent metricsEvent = new MetricEvent(featureName, globalTarget, entry.getKey());
+      if (!frequencyMap.containsKey(metricsEvent) && frequencyMap.size() + 1 > maxFreqMapSize) {
+        metricsEvalsDropped.add(entry.getValue());
+      } else {
+        frequencyMap.add(metricsEvent, entry.getValue());
+      }
+      total += entry.getValue();
+    }
+    evalCounter.add(total);
+  }
 
+  private Target registerTarget(Target target) {
     Target metricTarget = globalTarget;
 
     if (target != null) {
@@ -150,16 +182,15 @@ class MetricsProcessor {
         }
       }
     }
+    return metricTarget;
+  }
 
-    final MetricEvent metricsEvent = new MetricEvent(featureName, metricTarget, variation);
-
+  private void registerEvent(MetricEvent metricsEvent) {
     if (!frequencyMap.containsKey(metricsEvent) && frequencyMap.size() + 1 > maxFreqMapSize) {
       metricsEvalsDropped.increment();
     } else {
       frequencyMap.increment(metricsEvent);
     }
-
-    evalCounter.increment();
   }
 
   /** This method sends the metrics data to the analytics server and resets the cache */
@@ -0,0 +1,182 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.model.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * ModelCopier makes deep copies of the generated, mutable flag and segment model. Every object and
+ * list is copied, strings and enums are immutable and shared. This walks the object graph once, with no
+ * serialization in between, so a copy costs about as much as building the objects by hand.
+ */
+final class ModelCopier {
+
+  private ModelCopier() {}
+
+  static FeatureSnapshot copy(FeatureSnapshot snapshot) {
+    if (snapshot == null) {
+      return null;
+    }
+    return new FeatureSnapshot(copy(snapshot.getCurrent()), copy(snapshot.getPrevious()));
+  }
+
+  static FeatureConfig copy(FeatureConfig flag) {
+    if (flag == null) {
+      return null;
+    }
+    final FeatureConfig copy = new FeatureConfig();
+    copy.setProject(flag.getProject());
+    copy.setEnvironment(flag.getEnvironment());
+    copy.setFeature(flag.getFeature());
+    copy.setState(flag.getState());
+    copy.setKind(flag.getKind());
+    copy.setVariations(copyList(flag.getVariations(), ModelCopier::copy));
+    copy.setRules(copyList(flag.getRules(), ModelCopier::copy));
+    copy.setDefaultServe(copy(flag.getDefaultServe()));
+    copy.setOffVariation(flag.getOffVariation());
+    copy.setPrerequisites(copyList(flag.getPrerequisites(), ModelCopier::copy));
+    copy.setVariationToTargetMap(copyList(flag.getVariationToTargetMap(), ModelCopier::copy));
+    copy.setVersion(flag.getVersion());
+    return copy;
+  }
+
+  static Segment copy(Segment segment) {
+    if (segment == null) {
+      return null;
+    }
+    final Segment copy = new Segment();
+    copy.setIdentifier(segment.getIdentifier());
+    copy.setName(segment.getName());
+    copy.setEnvironment(segment.getEnvironment());
+    copy.setTags(copyList(segment.getTags(), ModelCopier::copy));
+    copy.setIncluded(copyList(segment.getIncluded(), ModelCopier::copy));
+    copy.setExcluded(copyList(segment.getExcluded(), ModelCopier::copy));
+    copy.setRules(copyList(segment.getRules(), ModelCopier::copy));
+    copy.setServingRules(copyList(segment.getServingRules(), ModelCopier::copy));
+    copy.setCreatedAt(segment.getCreatedAt());
+    copy.setModifiedAt(segment.getModifiedAt());
+    copy.setVersion(segment.getVersion());
+    return copy;
+  }
+
+  private static Tag copy(Tag tag) {
+    final Tag copy = new Tag();
+    copy.setName(tag.getName());
+    copy.setIdentifier(tag.getIdentifier());
+    return copy;
+  }
+
+  // the free-form attributes are not part of the model and are shared with the original
+  private static Target copy(Target target) {
+    final Target copy = new Target();
+    copy.setIdentifier(target.getIdentifier());
+    copy.setAccount(target.getAccount());
+    copy.setOrg(target.getOrg());
+    copy.setEnvironment(target.getEnvironment());
+    copy.setProject(target.getProject());
+    copy.setName(target.getName());
+    copy.setAnonymous(target.getAnonymous());
+    copy.setAttributes(target.getAttributes());
+    copy.setCreatedAt(target.getCreatedAt());
+    copy.setSegments(copyList(target.getSegments(), ModelCopier::copy));
+    return copy;
+  }
+
+  private static GroupServingRule copy(GroupServingRule rule) {
+    final GroupServingRule copy = new GroupServingRule();
+    copy.setRuleId(rule.getRuleId());
+    copy.setPriority(rule.getPriority());
+    copy.setClauses(copyList(rule.getClauses(), ModelCopier::copy));
+    return copy;
+  }
+
+  private static Variation copy(Variation variation) {
+    final Variation copy = new Variation();
+    copy.setIdentifier(variation.getIdentifier());
+    copy.setValue(variation.getValue());
+    copy.setName(variation.getName());
+    copy.setDescription(variation.getDescription());
+    return copy;
+  }
+
+  private static ServingRule copy(ServingRule rule) {
+    final ServingRule copy = new ServingRule();
+    copy.setRuleId(rule.getRuleId());
+    copy.setPriority(rule.getPriority());
+    copy.setClauses(copyList(rule.getClauses(), ModelCopier::copy));
+    copy.setServe(copy(rule.getServe()));
+    return copy;
+  }
+
+  private static Clause copy(Clause clause) {
+    final Clause copy = new Clause();
+    copy.setId(clause.getId());
+    copy.setAttribute(clause.getAttribute());
+    copy.setOp(clause.getOp());
+    copy.setValues(copyList(clause.getValues(), UnaryOperator.identity()));
+    copy.setNegate(clause.getNegate());
+    return copy;
+  }
+
+  private static Serve copy(Serve serve) {
+    if (serve == null) {
+      return null;
+    }
+    final Serve copy = new Serve();
+    copy.setDistribution(copy(serve.getDistribution()));
+    copy.setVariation(serve.getVariation());
+    return copy;
+  }
+
+  private static Distribution copy(Distribution distribution) {
+    if (distribution == null) {
+      return null;
+    }
+    final Distribution copy = new Distribution();
+    copy.setBucketBy(distribution.getBucketBy());
+    copy.setVariations(copyList(distribution.getVariations(), ModelCopier::copy));
+    return copy;
+  }
+
+  private static WeightedVariation copy(WeightedVariation variation) {
+    final WeightedVariation copy = new WeightedVariation();
+    copy.setVariation(variation.getVariation());
+    copy.setWeight(variation.getWeight());
+    return copy;
+  }
+
+  private static Prerequisite copy(Prerequisite prerequisite) {
+    final Prerequisite copy = new Prerequisite();
+    copy.setFeature(prerequisite.getFeature());
+    copy.setVariations(copyList(prerequisite.getVariations(), UnaryOperator.identity()));
+    return copy;
+  }
+
+  private static VariationMap copy(VariationMap map) {
+    final VariationMap copy = new VariationMap();
+    copy.setVariation(map.getVariation());
+    copy.setTargets(copyList(map.getTargets(), ModelCopier::copy));
+    copy.setTargetSegments(copyList(map.getTargetSegments(), UnaryOperator.identity()));
+    return copy;
+  }
+
+  private static TargetMap copy(TargetMap target) {
+    final TargetMap copy = new TargetMap();
+    copy.setIdentifier(target.getIdentifier());
+    copy.setName(target.getName());
+    return copy;
+  }
+
+  // null elements are kept as they are
+  private static <T> List<T> copyList(List<T> list, UnaryOperator<T> element) {
+    if (list == null) {
+      return null;
+    }
+    final List<T> copy = new ArrayList<>(list.size());
+    for (T value : list) {
+      copy.add(value == null ? null : element.apply(value));
+    }
+    return copy;
+  }
+}
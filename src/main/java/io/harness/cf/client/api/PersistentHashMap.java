@@ -0,0 +1,378 @@
+package io.harness.cf.client.api;
+
+import java.util.*;
+import lombok.NonNull;
+
+/**
+ * PersistentHashMap is an immutable hash array mapped trie. {@link #with} and {@link #without}
+ * return a new map that shares every untouched node with the original, so an update copies at most
+ * one small node per level, O(log32 n), instead of the whole map. Lookups walk the same levels.
+ * Null keys and values are not supported. The {@link Map} mutators throw.
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+  /** A key value pair stored in the trie */
+  private static final class Leaf<K, V> implements Map.Entry<K, V> {
+    private final int hash;
+    private final K key;
+    private final V value;
+
+    private Leaf(int hash, K key, V value) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public V getValue() {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      final Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      return key.equals(other.getKey()) && value.equals(other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + value;
+    }
+  }
+
+  /** An inner node, slots hold a {@link Leaf} or a child node for each bit set in the bitmap */
+  private static final class Branch {
+    private final int bitmap;
+    private final Object[] slots;
+
+    private Branch(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+  }
+
+  /** Leaves whose keys have the same hash code */
+  private static final class Collision {
+    private final int hash;
+    private final Leaf<?, ?>[] leaves;
+
+    private Collision(int hash, Leaf<?, ?>[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+  }
+
+  // a Branch, Collision or Leaf, null if the map is empty
+  private final Object root;
+  private final int size;
+
+  private PersistentHashMap(Object root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  static <K, V> PersistentHashMap<K, V> copyOf(@NonNull Map<K, V> map) {
+    PersistentHashMap<K, V> result = empty();
+    for (Map.Entry<K, V> entry : map.entrySet()) {
+      result = result.with(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key != null && find(key) != null;
+  }
+
+  @Override
+  public V get(Object key) {
+    if (key == null) {
+      return null;
+    }
+    final Leaf<K, V> leaf = find(key);
+    return leaf == null ? null : leaf.value;
+  }
+
+  /** Returns a map with the given mapping added or replaced, this map if it is already present */
+  PersistentHashMap<K, V> with(@NonNull K key, @NonNull V value) {
+    final Leaf<K, V> leaf = new Leaf<>(hash(key), key, value);
+    if (root == null) {
+      return new PersistentHashMap<>(leaf, 1);
+    }
+    final boolean[] added = new boolean[1];
+    final Object next = insert(root, leaf, 0, added);
+    return next == root ? this : new PersistentHashMap<>(next, added[0] ? size + 1 : size);
+  }
+
+  /** Returns a map without the given key, this map if the key is not present */
+  PersistentHashMap<K, V> without(@NonNull K key) {
+    if (root == null) {
+      return this;
+    }
+    final Object next = remove(root, key, hash(key), 0);
+    if (next == root) {
+      return this;
+    }
+    return next == null ? empty() : new PersistentHashMap<>(next, size - 1);
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new LeafIterator<>(root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private static int hash(Object key) {
+    final int h = key.hashCode();
+    // spread the high bits into the fragments used near the root
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Leaf<K, V> find(Object key) {
+    final int hash = hash(key);
+    Object node = root;
+    int shift = 0;
+    while (node != null) {
+      if (node instanceof Leaf) {
+        final Leaf<K, V> leaf = (Leaf<K, V>) node;
+        return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+      }
+      if (node instanceof Collision) {
+        final Collision collision = (Collision) node;
+        if (collision.hash != hash) {
+          return null;
+        }
+        for (Leaf<?, ?> leaf : collision.leaves) {
+          if (leaf.key.equals(key)) {
+            return (Leaf<K, V>) leaf;
+          }
+        }
+        return null;
+      }
+      final Branch branch = (Branch) node;
+      final int bit = bit(hash, shift);
+      if ((branch.bitmap & bit) == 0) {
+        return null;
+      }
+      node = branch.slots[Integer.bitCount(branch.bitmap & (bit - 1))];
+      shift += BITS;
+    }
+    return null;
+  }
+
+  private static Object insert(Object node, Leaf<?, ?> leaf, int shift, boolean[] added) {
+    if (node instanceof Leaf) {
+      final Leaf<?, ?> existing = (Leaf<?, ?>) node;
+      if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+        return existing.value == leaf.value ? existing : leaf;
+      }
+      added[0] = true;
+      return merge(existing, existing.hash, leaf, shift);
+    }
+    if (node instanceof Collision) {
+      final Collision collision = (Collision) node;
+      if (collision.hash != leaf.hash) {
+        added[0] = true;
+        return merge(collision, collision.hash, leaf, shift);
+      }
+      final Leaf<?, ?>[] leaves = collision.leaves;
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(leaf.key)) {
+          if (leaves[i].value == leaf.value) {
+            return collision;
+          }
+          final Leaf<?, ?>[] copy = leaves.clone();
+          copy[i] = leaf;
+          return new Collision(collision.hash, copy);
+        }
+      }
+      added[0] = true;
+      final Leaf<?, ?>[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+      copy[leaves.length] = leaf;
+      return new Collision(collision.hash, copy);
+    }
+
+    final Branch branch = (Branch) node;
+    final int bit = bit(leaf.hash, shift);
+    final int index = Integer.bitCount(branch.bitmap & (bit - 1));
+    if ((branch.bitmap & bit) == 0) {
+      added[0] = true;
+      final Object[] slots = new Object[branch.slots.length + 1];
+      System.arraycopy(branch.slots, 0, slots, 0, index);
+      slots[index] = leaf;
+      System.arraycopy(branch.slots, index, slots, index + 1, branch.slots.length - index);
+      return new Branch(branch.bitmap | bit, slots);
+    }
+    final Object child = branch.slots[index];
+    final Object next = insert(child, leaf, shift + BITS, added);
+    if (next == child) {
+      return branch;
+    }
+    final Object[] slots = branch.slots.clone();
+    slots[index] = next;
+    return new Branch(branch.bitmap, slots);
+  }
+
+  // builds the smallest subtree holding an existing node and a leaf with a different key
+  private static Object merge(Object existing, int existingHash, Leaf<?, ?> leaf, int shift) {
+    if (existingHash == leaf.hash) {
+      return new Collision(leaf.hash, new Leaf<?, ?>[] {(Leaf<?, ?>) existing, leaf});
+    }
+    // the hashes differ in at least one bit, so this recurses at most 32 / BITS levels
+    final int existingBit = bit(existingHash, shift);
+    final int leafBit = bit(leaf.hash, shift);
+    if (existingBit == leafBit) {
+      return new Branch(
+          existingBit, new Object[] {merge(existing, existingHash, leaf, shift + BITS)});
+    }
+    final Object[] slots =
+        Integer.compareUnsigned(existingBit, leafBit) < 0
+            ? new Object[] {existing, leaf}
+            : new Object[] {leaf, existing};
+    return new Branch(existingBit | leafBit, slots);
+  }
+
+  // returns the node without the key, the same node if it is not present, null if it is empty
+  private static Object remove(Object node, Object key, int hash, int shift) {
+    if (node instanceof Leaf) {
+      final Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+      return leaf.hash == hash && leaf.key.equals(key) ? null : leaf;
+    }
+    if (node instanceof Collision) {
+      final Collision collision = (Collision) node;
+      if (collision.hash != hash) {
+        return collision;
+      }
+      final Leaf<?, ?>[] leaves = collision.leaves;
+      for (int i = 0; i < leaves.length; i++) {
+        if (leaves[i].key.equals(key)) {
+          if (leaves.length == 2) {
+            return leaves[1 - i];
+          }
+          final Leaf<?, ?>[] copy = new Leaf<?, ?>[leaves.length - 1];
+          System.arraycopy(leaves, 0, copy, 0, i);
+          System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+          return new Collision(hash, copy);
+        }
+      }
+      return collision;
+    }
+
+    final Branch branch = (Branch) node;
+    final int bit = bit(hash, shift);
+    if ((branch.bitmap & bit) == 0) {
+      return branch;
+    }
+    final int index = Integer.bitCount(branch.bitmap & (bit - 1));
+    final Object child = branch.slots[index];
+    final Object next = remove(child, key, hash, shift + BITS);
+    if (next == child) {
+      return branch;
+    }
+    if (next != null) {
+      // a single remaining leaf moves up, it is found at any level its hash leads to
+      if (branch.slots.length == 1 && !(next instanceof Branch) && shift > 0) {
+        return next;
+      }
+      final Object[] slots = branch.slots.clone();
+      slots[index] = next;
+      return new Branch(branch.bitmap, slots);
+    }
+    if (branch.slots.length == 1) {
+      return null;
+    }
+    if (branch.slots.length == 2 && shift > 0 && !(branch.slots[1 - index] instanceof Branch)) {
+      return branch.slots[1 - index];
+    }
+    final Object[] slots = new Object[branch.slots.length - 1];
+    System.arraycopy(branch.slots, 0, slots, 0, index);
+    System.arraycopy(branch.slots, index + 1, slots, index, branch.slots.length - index - 1);
+    return new Branch(branch.bitmap & ~bit, slots);
+  }
+
+  /** Depth first walk over the leaves of a trie */
+  private static final class LeafIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final Deque<Object> pending = new ArrayDeque<>();
+
+    private LeafIterator(Object root) {
+      if (root != null) {
+        pending.push(root);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !pending.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> next() {
+      while (!pending.isEmpty()) {
+        final Object node = pending.pop();
+        if (node instanceof Leaf) {
+          return (Leaf<K, V>) node;
+        }
+        if (node instanceof Collision) {
+          final Leaf<?, ?>[] leaves = ((Collision) node).leaves;
+          for (int i = leaves.length - 1; i >= 0; i--) {
+            pending.push(leaves[i]);
+          }
+        } else {
+          final Object[] slots = ((Branch) node).slots;
+          for (int i = slots.length - 1; i >= 0; i--) {
+            pending.push(slots[i]);
+          }
+        }
+      }
+      throw new NoSuchElementException();
+    }
+  }
+}
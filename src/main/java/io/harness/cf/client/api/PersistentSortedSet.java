@@ -0,0 +1,223 @@
+package io.harness.cf.client.api;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.NonNull;
+
+/**
+ * PersistentSortedSet is an immutable AVL tree of strings. {@link #with} and {@link #without}
+ * copy only the O(log n) nodes on the path to the changed element and share the rest with the
+ * original set. Ranges are iterated lazily, in order, without copying.
+ */
+final class PersistentSortedSet implements Iterable<String> {
+
+  private static final PersistentSortedSet EMPTY = new PersistentSortedSet(null, 0);
+
+  private static final class Node {
+    private final String value;
+    private final Node left;
+    private final Node right;
+    private final int height;
+
+    private Node(String value, Node left, Node right) {
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(height(left), height(right)) + 1;
+    }
+  }
+
+  private final Node root;
+  private final int size;
+
+  private PersistentSortedSet(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  static PersistentSortedSet empty() {
+    return EMPTY;
+  }
+
+  static PersistentSortedSet copyOf(@NonNull Collection<String> values) {
+    PersistentSortedSet result = EMPTY;
+    for (String value : values) {
+      result = result.with(value);
+    }
+    return result;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean contains(@NonNull String value) {
+    Node node = root;
+    while (node != null) {
+      final int order = value.compareTo(node.value);
+      if (order == 0) {
+        return true;
+      }
+      node = order < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /** Returns a set with the given value added, this set if it is already present */
+  PersistentSortedSet with(@NonNull String value) {
+    final Node next = insert(root, value);
+    return next == root ? this : new PersistentSortedSet(next, size + 1);
+  }
+
+  /** Returns a set without the given value, this set if it is not present */
+  PersistentSortedSet without(@NonNull String value) {
+    final Node next = delete(root, value);
+    return next == root ? this : new PersistentSortedSet(next, size - 1);
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new RangeIterator(root, null, null);
+  }
+
+  /** Returns the values starting with the given prefix, in order, all values if it is empty */
+  Iterable<String> withPrefix(String prefix) {
+    if (prefix == null || prefix.isEmpty()) {
+      return this;
+    }
+    final String end = successor(prefix);
+    return () -> new RangeIterator(root, prefix, end);
+  }
+
+  /** Returns the values starting with the given prefix as a sequential, ordered stream */
+  Stream<String> stream(String prefix) {
+    final int characteristics =
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(withPrefix(prefix).iterator(), characteristics),
+        false);
+  }
+
+  // smallest string greater than every string starting with the prefix, null if there is none
+  static String successor(String prefix) {
+    int length = prefix.length();
+    while (length > 0 && prefix.charAt(length - 1) == Character.MAX_VALUE) {
+      length--;
+    }
+    if (length == 0) {
+      return null;
+    }
+    return prefix.substring(0, length - 1) + (char) (prefix.charAt(length - 1) + 1);
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static Node insert(Node node, String value) {
+    if (node == null) {
+      return new Node(value, null, null);
+    }
+    final int order = value.compareTo(node.value);
+    if (order == 0) {
+      return node;
+    }
+    if (order < 0) {
+      final Node left = insert(node.left, value);
+      return left == node.left ? node : balance(node.value, left, node.right);
+    }
+    final Node right = insert(node.right, value);
+    return right == node.right ? node : balance(node.value, node.left, right);
+  }
+
+  private static Node delete(Node node, String value) {
+    if (node == null) {
+      return null;
+    }
+    final int order = value.compareTo(node.value);
+    if (order < 0) {
+      final Node left = delete(node.left, value);
+      return left == node.left ? node : balance(node.value, left, node.right);
+    }
+    if (order > 0) {
+      final Node right = delete(node.right, value);
+      return right == node.right ? node : balance(node.value, node.left, right);
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.value, node.left, delete(node.right, successor.value));
+  }
+
+  // the heights of left and right differ by at most two, the result differs by at most one
+  private static Node balance(String value, Node left, Node right) {
+    final int difference = height(left) - height(right);
+    if (difference > 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node(left.value, left.left, new Node(value, left.right, right));
+      }
+      return new Node(
+          left.right.value,
+          new Node(left.value, left.left, left.right.left),
+          new Node(value, left.right.right, right));
+    }
+    if (difference < -1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node(right.value, new Node(value, left, right.left), right.right);
+      }
+      return new Node(
+          right.left.value,
+          new Node(value, left, right.left.left),
+          new Node(right.value, right.left.right, right.right));
+    }
+    return new Node(value, left, right);
+  }
+
+  /** In order walk over the values from inclusive to exclusive, unbounded where null */
+  private static final class RangeIterator implements Iterator<String> {
+    private final Deque<Node> path = new ArrayDeque<>();
+    private final String to;
+
+    private RangeIterator(Node root, String from, String to) {
+      this.to = to;
+      Node node = root;
+      while (node != null) {
+        if (from == null || node.value.compareTo(from) >= 0) {
+          path.push(node);
+          node = node.left;
+        } else {
+          node = node.right;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !path.isEmpty() && (to == null || path.peek().value.compareTo(to) < 0);
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final Node node = path.pop();
+      for (Node next = node.right; next != null; next = next.left) {
+        path.push(next);
+      }
+      return node.value;
+    }
+  }
+}
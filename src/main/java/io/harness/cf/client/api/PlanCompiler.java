@@ -0,0 +1,321 @@
+package io.harness.cf.client.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.harness.cf.client.common.SdkCodes;
+import io.harness.cf.model.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * PlanCompiler turns the raw OpenAPI models into {@link FlagPlan} and {@link SegmentPlan}
+ * instances. It is called when a flag or segment is stored so that evaluation can run the compiled
+ * form directly.
+ */
+@Slf4j
+final class PlanCompiler {
+
+  private static final Comparator<Integer> PRIORITY_ORDER =
+      Comparator.nullsLast(Comparator.naturalOrder());
+
+  // rough per entry overhead of a HashMap/HashSet entry holding a String key: node, table slot,
+  // String header and backing array header
+  private static final int HASH_ENTRY_OVERHEAD_BYTES = 32 + 8 + 24 + 16;
+
+  private static final int MAX_CACHED_PATTERNS = 1000;
+
+  // match clauses with the same regex share one compiled Pattern across flags, segments and
+  // versions. Plans hold on to their own patterns so eviction here only limits sharing. Invalid
+  // regexes are cached as empty, so each one is only reported once.
+  private static final Cache<String, Optional<Pattern>> PATTERNS =
+      Caffeine.newBuilder().maximumSize(MAX_CACHED_PATTERNS).build();
+
+  private static final AtomicLong REVISIONS = new AtomicLong();
+
+  private static final Gson GSON = new Gson();
+
+  private PlanCompiler() {}
+
+  static FlagPlan compileFlag(@NonNull FeatureConfig flag) {
+    final Map<String, Variation> variations = new HashMap<>();
+    if (flag.getVariations() != null) {
+      for (Variation variation : flag.getVariations()) {
+        // first variation wins if identifiers are duplicated
+        variations.putIfAbsent(variation.getIdentifier(), variation);
+      }
+    }
+
+    final Map<String, FlagPlan.ParsedValue> parsedValues = new HashMap<>();
+    for (Variation variation : variations.values()) {
+      parsedValues.put(variation.getIdentifier(), parseValue(flag.getKind(), variation));
+    }
+
+    final Map<String, Integer> targetIndex = new HashMap<>();
+    final List<FlagPlan.TargetMapping> targetMappings =
+        compileTargetMappings(flag.getVariationToTargetMap(), targetIndex);
+    final List<FlagPlan.RulePlan> rules = compileRules(flag.getRules());
+    final FlagPlan plan =
+        new FlagPlan(
+            REVISIONS.incrementAndGet(),
+            flag,
+            Collections.unmodifiableMap(variations),
+            Collections.unmodifiableMap(parsedValues),
+            targetMappings,
+            Collections.unmodifiableMap(targetIndex),
+            rules,
+            compileServe(flag.getDefaultServe()),
+            immutableList(flag.getPrerequisites()),
+            segmentIdentifiers(targetMappings, rules));
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Flag {} version {} compiled, target index: {} entries ~{} bytes",
+          flag.getFeature(),
+          flag.getVersion(),
+          targetIndex.size(),
+          plan.getTargetIndexBytes());
+    }
+    return plan;
+  }
+
+  static FlagPlan.ParsedValue parseValue(FeatureConfig.KindEnum kind, Variation variation) {
+    final String value = variation.getValue();
+    if (kind == FeatureConfig.KindEnum.INT) {
+      Double number = null;
+      if (value != null) {
+        try {
+          number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+          log.debug("Variation {} is not a number: {}", variation.getIdentifier(), value);
+        }
+      }
+      return new FlagPlan.ParsedValue(variation, false, number, null);
+    }
+    if (kind == FeatureConfig.KindEnum.JSON) {
+      JsonObject json = null;
+      if (value != null) {
+        try {
+          json = GSON.fromJson(value, JsonObject.class);
+        } catch (RuntimeException e) {
+          log.debug("Variation {} is not a JSON object: {}", variation.getIdentifier(), value);
+        }
+      }
+      return new FlagPlan.ParsedValue(variation, false, null, json);
+    }
+    return new FlagPlan.ParsedValue(variation, Boolean.parseBoolean(value), null, null);
+  }
+
+  static SegmentPlan compileSegment(@NonNull Segment segment) {
+    final List<List<ClausePlan>> servingRules = new ArrayList<>();
+    if (segment.getServingRules() != null) {
+      final List<GroupServingRule> sorted = new ArrayList<>(segment.getServingRules());
+      sorted.sort(Comparator.comparing(GroupServingRule::getPriority, PRIORITY_ORDER));
+      for (GroupServingRule rule : sorted) {
+        servingRules.add(compileClauses(rule.getClauses()));
+      }
+    }
+
+    final Set<String> included = targetIdentifiers(segment.getIncluded());
+    final Set<String> excluded = targetIdentifiers(segment.getExcluded());
+    final List<ClausePlan> rules = compileClauses(segment.getRules());
+    final SegmentPlan plan =
+        new SegmentPlan(
+            REVISIONS.incrementAndGet(),
+            segment,
+            included,
+            excluded,
+            Collections.unmodifiableList(servingRules),
+            rules,
+            matchedSegments(servingRules, rules));
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Segment {} version {} compiled, index: {} included and {} excluded entries ~{} bytes",
+          segment.getIdentifier(),
+          segment.getVersion(),
+          included.size(),
+          excluded.size(),
+          plan.getIndexBytes());
+    }
+    return plan;
+  }
+
+  static List<FlagPlan.RulePlan> compileRules(List<ServingRule> servingRules) {
+    if (servingRules == null) {
+      return Collections.emptyList();
+    }
+    final List<ServingRule> sorted = new ArrayList<>(servingRules);
+    sorted.sort(Comparator.comparing(ServingRule::getPriority, PRIORITY_ORDER));
+
+    final List<FlagPlan.RulePlan> rules = new ArrayList<>(sorted.size());
+    for (ServingRule rule : sorted) {
+      rules.add(
+          new FlagPlan.RulePlan(
+              rule.getRuleId(), compileClauses(rule.getClauses()), compileServe(rule.getServe())));
+    }
+    return Collections.unmodifiableList(rules);
+  }
+
+  static ClausePlan compileClause(@NonNull Clause clause) {
+    final List<String> values = immutableList(clause.getValues());
+    Pattern pattern = null;
+    if (Operators.MATCH.equals(clause.getOp()) && !values.isEmpty()) {
+      pattern = compilePattern(values.get(0), clause.getId());
+    }
+    return new ClausePlan(clause.getOp(), clause.getAttribute(), values, pattern);
+  }
+
+  private static Pattern compilePattern(String regex, String clauseId) {
+    if (regex == null) {
+      return null;
+    }
+    return PATTERNS
+        .get(
+            regex,
+            k -> {
+              try {
+                return Optional.of(Pattern.compile(k));
+              } catch (PatternSyntaxException e) {
+                SdkCodes.warnInvalidMatchRegex(clauseId, k, e.getDescription());
+                return Optional.empty();
+              }
+            })
+        .orElse(null);
+  }
+
+  static List<ClausePlan> compileClauses(List<Clause> clauses) {
+    if (clauses == null || clauses.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<ClausePlan> plans = new ArrayList<>(clauses.size());
+    for (Clause clause : clauses) {
+      if (clause != null) {
+        plans.add(compileClause(clause));
+      }
+    }
+    return Collections.unmodifiableList(plans);
+  }
+
+  static ServePlan compileServe(Serve serve) {
+    if (serve == null) {
+      return ServePlan.EMPTY;
+    }
+    final Distribution distribution = serve.getDistribution();
+    if (distribution == null) {
+      return new ServePlan(serve.getVariation(), null, null, null);
+    }
+
+    final List<WeightedVariation> weighted =
+        distribution.getVariations() == null
+            ? Collections.emptyList()
+            : distribution.getVariations();
+    final List<String> variations = new ArrayList<>(weighted.size());
+    final int[] weights = new int[weighted.size()];
+    for (int i = 0; i < weighted.size(); i++) {
+      final WeightedVariation next = weighted.get(i);
+      variations.add(next.getVariation());
+      weights[i] = next.getWeight() == null ? 0 : next.getWeight();
+    }
+    return new ServePlan(
+        serve.getVariation(),
+        distribution.getBucketBy(),
+        Collections.unmodifiableList(variations),
+        weights);
+  }
+
+  /**
+   * Compiles the variation to target map. Explicit targets are added to the given index, keyed by
+   * target identifier, pointing at the first mapping that lists them.
+   */
+  private static List<FlagPlan.TargetMapping> compileTargetMappings(
+      List<VariationMap> variationMaps, Map<String, Integer> targetIndex) {
+    if (variationMaps == null || variationMaps.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<FlagPlan.TargetMapping> mappings = new ArrayList<>(variationMaps.size());
+    for (VariationMap variationMap : variationMaps) {
+      if (variationMap.getTargets() != null) {
+        for (TargetMap target : variationMap.getTargets()) {
+          if (target.getIdentifier() != null) {
+            targetIndex.putIfAbsent(target.getIdentifier(), mappings.size());
+          }
+        }
+      }
+      mappings.add(
+          new FlagPlan.TargetMapping(
+              variationMap.getVariation(), immutableList(variationMap.getTargetSegments())));
+    }
+    return Collections.unmodifiableList(mappings);
+  }
+
+  private static List<String> segmentIdentifiers(
+      List<FlagPlan.TargetMapping> targetMappings, List<FlagPlan.RulePlan> rules) {
+    final Set<String> segments = new LinkedHashSet<>();
+    for (FlagPlan.TargetMapping mapping : targetMappings) {
+      segments.addAll(mapping.getSegments());
+    }
+    for (FlagPlan.RulePlan rule : rules) {
+      for (ClausePlan clause : rule.getClauses()) {
+        if (clause.getOp() == ClausePlan.Op.SEGMENT_MATCH) {
+          segments.addAll(clause.getValues());
+        }
+      }
+    }
+    return segments.isEmpty()
+        ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(segments));
+  }
+
+  private static List<String> matchedSegments(
+      List<List<ClausePlan>> servingRules, List<ClausePlan> rules) {
+    final Set<String> segments = new LinkedHashSet<>();
+    for (List<ClausePlan> clauses : servingRules) {
+      addSegmentMatches(clauses, segments);
+    }
+    addSegmentMatches(rules, segments);
+    return segments.isEmpty()
+        ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(segments));
+  }
+
+  private static void addSegmentMatches(List<ClausePlan> clauses, Set<String> segments) {
+    for (ClausePlan clause : clauses) {
+      if (clause.getOp() == ClausePlan.Op.SEGMENT_MATCH) {
+        segments.addAll(clause.getValues());
+      }
+    }
+  }
+
+  private static Set<String> targetIdentifiers(List<io.harness.cf.model.Target> targets) {
+    if (targets == null || targets.isEmpty()) {
+      return Collections.emptySet();
+    }
+    final Set<String> identifiers = new HashSet<>(targets.size() * 4 / 3 + 1);
+    for (io.harness.cf.model.Target target : targets) {
+      if (target.getIdentifier() != null) {
+        identifiers.add(target.getIdentifier());
+      }
+    }
+    return Collections.unmodifiableSet(identifiers);
+  }
+
+  /** Approximate retained size in bytes of a hash index over the given identifiers */
+  static long estimateIndexBytes(Collection<String> identifiers) {
+    long bytes = 0;
+    for (String identifier : identifiers) {
+      bytes += HASH_ENTRY_OVERHEAD_BYTES + identifier.length();
+    }
+    return bytes;
+  }
+
+  private static <T> List<T> immutableList(List<T> list) {
+    if (list == null || list.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<>(list));
+  }
+}
@@ -0,0 +1,130 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Prerequisite;
+import io.harness.cf.model.Segment;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+
+/** Read access to the compiled evaluation plans of a {@link Query} */
+interface PlanQuery {
+
+  Optional<FlagPlan> getFlagPlan(@NonNull String identifier);
+
+  Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier);
+
+  /**
+   * Returns a view of the plans that does not change while it is used, so that one evaluation
+   * sees one version of every flag and segment. Implementations that are updated in place return
+   * themselves.
+   */
+  default PlanQuery current() {
+    return this;
+  }
+
+  /**
+   * Wraps a plain {@link Query} and compiles plans on lookup. Used when the evaluator is given a
+   * query that does not keep compiled plans itself. Plans are kept per identifier and only
+   * recompiled once the query returns a different version.
+   */
+  static PlanQuery compiling(@NonNull Query query) {
+    final Map<String, FlagPlan> flags = new ConcurrentHashMap<>();
+    final Map<String, SegmentPlan> segments = new ConcurrentHashMap<>();
+    return new PlanQuery() {
+      @Override
+      public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+        final FeatureConfig flag = query.getFlag(identifier).orElse(null);
+        if (flag == null) {
+          flags.remove(identifier);
+          return Optional.empty();
+        }
+        return Optional.of(
+            flags.compute(
+                identifier,
+                (k, plan) ->
+                    plan != null
+                            && isUnchanged(
+                                plan.getConfig(),
+                                plan.getConfig().getVersion(),
+                                flag,
+                                flag.getVersion())
+                        ? plan
+                        : PlanCompiler.compileFlag(flag)));
+      }
+
+      @Override
+      public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+        final Segment segment = query.getSegment(identifier).orElse(null);
+        if (segment == null) {
+          segments.remove(identifier);
+          return Optional.empty();
+        }
+        return Optional.of(
+            segments.compute(
+                identifier,
+                (k, plan) ->
+                    plan != null
+                            && isUnchanged(
+                                plan.getSegment(),
+                                plan.getSegment().getVersion(),
+                                segment,
+                                segment.getVersion())
+                        ? plan
+                        : PlanCompiler.compileSegment(segment)));
+      }
+
+      private boolean isUnchanged(
+          Object compiled, Long compiledVersion, Object current, Long version) {
+        return compiled == current || (version != null && version.equals(compiledVersion));
+      }
+    };
+  }
+
+  /**
+   * Copies the plan of a flag together with the plans of its prerequisites and referenced
+   * segments, so that evaluations against the copy do not observe later updates. Lookups of plans
+   * outside of that closure fall through to the source.
+   */
+  static PlanQuery snapshot(@NonNull PlanQuery source, @NonNull FlagPlan flag) {
+    final Map<String, FlagPlan> flags = new HashMap<>();
+    final Map<String, SegmentPlan> segments = new HashMap<>();
+    final Deque<FlagPlan> pending = new ArrayDeque<>();
+    flags.put(flag.getIdentifier(), flag);
+    pending.push(flag);
+    while (!pending.isEmpty()) {
+      final FlagPlan next = pending.pop();
+      for (String segment : next.getSegmentIdentifiers()) {
+        if (segment != null && !segments.containsKey(segment)) {
+          source.getSegmentPlan(segment).ifPresent(plan -> segments.put(segment, plan));
+        }
+      }
+      for (Prerequisite prerequisite : next.getPrerequisites()) {
+        final String identifier = prerequisite.getFeature();
+        if (identifier != null && !flags.containsKey(identifier)) {
+          source
+              .getFlagPlan(identifier)
+              .ifPresent(
+                  plan -> {
+                    flags.put(identifier, plan);
+                    pending.push(plan);
+                  });
+        }
+      }
+    }
+
+    return new PlanQuery() {
+      @Override
+      public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+        final FlagPlan plan = flags.get(identifier);
+        return plan != null ? Optional.of(plan) : source.getFlagPlan(identifier);
+      }
+
+      @Override
+      public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+        final SegmentPlan plan = segments.get(identifier);
+        return plan != null ? Optional.of(plan) : source.getSegmentPlan(identifier);
+      }
+    };
+  }
+}
@@ -1,5 +1,8 @@
 package io.harness.cf.client.api;
 
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.List;
 import lombok.NonNull;
 
 interface PollerCallback {
@@ -8,4 +11,10 @@ interface PollerCallback {
   void onPollerFailed(@NonNull Exception exc);
 
   void onPollerError(@NonNull Exception exc);
+
+  /**
+   * Called with the complete set of flags and segments after every successful fetch that
+   * changed either of them
+   */
+  void onPollerFetched(@NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments);
 }
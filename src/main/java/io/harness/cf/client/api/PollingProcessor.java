@@ -7,6 +7,7 @@ import io.harness.cf.client.common.SdkCodes;
 import io.harness.cf.client.connector.Connector;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.Segment;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import lombok.NonNull;
@@ -22,7 +23,21 @@ class PollingProcessor {
   private final PollerCallback callback;
   private ScheduledFuture<?> runningTask = null;
 
+  // the lists returned by the last fetch and the ones last applied to the repository
+  private volatile List<FeatureConfig> lastFlags;
+  private volatile List<Segment> lastSegments;
+  private volatile List<FeatureConfig> appliedFlags;
+  private volatile List<Segment> appliedSegments;
+
   private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+  private final ExecutorService fetchExecutor =
+      Executors.newFixedThreadPool(
+          2,
+          r -> {
+            final Thread thread = new Thread(r, "PollFetchThread");
+            thread.setDaemon(true);
+            return thread;
+          });
 
   public PollingProcessor(
       @NonNull final Connector connector,
@@ -33,60 +48,112 @@ class PollingProcessor {
     this.pollIntervalSeconds = pollIntervalSeconds;
     this.repository = repository;
     this.callback = callback;
+    // a new poller has no previous lists to fall back on when the connector reports no change
+    connector.clearListValidators();
   }
 
+  // the connector parses the body without buffering it, but the parsed entries are all collected,
+  // because the batch apply needs the complete result to delete missing entries. When the
+  // connector reports a list as not modified the list fetched before is returned again
   public CompletableFuture<List<FeatureConfig>> retrieveFlags() {
-    CompletableFuture<List<FeatureConfig>> completableFuture = new CompletableFuture<>();
-    try {
-      log.debug("Fetching flags started");
-      final List<FeatureConfig> featureConfig = connector.getFlags();
-      log.debug("Fetching flags finished");
-      featureConfig.forEach(
-          fc -> {
-            if (fc != null) {
-              repository.setFlag(fc.getFeature(), fc);
-            }
-          });
-      completableFuture.complete(featureConfig);
-    } catch (Throwable e) {
-      log.error(
-          "Exception was raised when fetching flags data with the message {}", e.getMessage());
-      completableFuture.completeExceptionally(e);
-    }
-    return completableFuture;
+    return fetch(
+        "flags",
+        () -> {
+          final List<FeatureConfig> flags = new ArrayList<>();
+          if (connector.streamFlags(flags::add)) {
+            lastFlags = flags;
+          } else if (lastFlags == null) {
+            lastFlags = connector.getFlags();
+          }
+          return lastFlags;
+        });
   }
 
   public CompletableFuture<List<Segment>> retrieveSegments() {
-    final CompletableFuture<List<Segment>> completableFuture = new CompletableFuture<>();
+    return fetch(
+        "segments",
+        () -> {
+          final List<Segment> segments = new ArrayList<>();
+          if (connector.streamSegments(segments::add)) {
+            lastSegments = segments;
+          } else if (lastSegments == null) {
+            lastSegments = connector.getSegments();
+          }
+          return lastSegments;
+        });
+  }
+
+  // runs the blocking connector call on the fetch pool, so flags and segments download in parallel
+  private <T> CompletableFuture<T> fetch(String name, Callable<T> call) {
+    final CompletableFuture<T> completableFuture = new CompletableFuture<>();
     try {
-      log.debug("Fetching segments started");
-      final List<Segment> segments = connector.getSegments();
-      log.debug("Fetching segments finished");
-      segments.forEach(
-          s -> {
-            if (s != null) {
-              repository.setSegment(s.getIdentifier(), s);
+      fetchExecutor.execute(
+          () -> {
+            try {
+              log.debug("Fetching {} started", name);
+              final T result = call.call();
+              log.debug("Fetching {} finished", name);
+              completableFuture.complete(result);
+            } catch (Throwable e) {
+              log.error(
+                  "Exception was raised when fetching {} data with the message {}",
+                  name,
+                  e.getMessage(),
+                  e);
+              completableFuture.completeExceptionally(e);
             }
           });
-      completableFuture.complete(segments);
-    } catch (Throwable e) {
-      log.error(
-          "Exception was raised when fetching segments data with the message {}",
-          e.getMessage(),
-          e);
+    } catch (RejectedExecutionException e) {
       completableFuture.completeExceptionally(e);
     }
     return completableFuture;
   }
 
-  public void retrieveAll() {
+  /**
+   * Fetches flags and segments and applies them as one batch. Calls from the poll thread and from
+   * the stream callbacks are serialized, and a result is dropped if the repository was written
+   * while it was fetched, e.g. by a stream event, because the response may predate that write. A
+   * dropped result is fetched once more, if that one is outdated too the next poll applies it.
+   */
+  public synchronized void retrieveAll() {
     try {
-      CompletableFuture.allOf(retrieveFlags(), retrieveSegments()).join();
+      for (int attempt = 0; attempt < 2; attempt++) {
+        final long generation = generationOf(repository);
+        final CompletableFuture<List<FeatureConfig>> flags = retrieveFlags();
+        final CompletableFuture<List<Segment>> segments = retrieveSegments();
+        CompletableFuture.allOf(flags, segments).join();
+        if (flags.join() == appliedFlags && segments.join() == appliedSegments) {
+          log.debug("Flags and segments not modified since the last poll");
+          return;
+        }
+        // the result is applied as one batch, a partial fetch never deletes anything
+        if (apply(flags.join(), segments.join(), generation)) {
+          appliedFlags = flags.join();
+          appliedSegments = segments.join();
+          callback.onPollerFetched(flags.join(), segments.join());
+          return;
+        }
+      }
+      log.debug("Repository changed during both fetches, leaving the result to the next poll");
     } catch (CompletionException | CancellationException ex) {
       log.warn("retrieveAll failed: {} - {}", ex.getClass().getSimpleName(), ex.getMessage(), ex);
     }
   }
 
+  private static long generationOf(Repository repository) {
+    return repository instanceof GenerationalRepository
+        ? ((GenerationalRepository) repository).getGeneration()
+        : 0;
+  }
+
+  private boolean apply(List<FeatureConfig> flags, List<Segment> segments, long generation) {
+    if (repository instanceof GenerationalRepository) {
+      return ((GenerationalRepository) repository).replaceAll(flags, segments, generation);
+    }
+    repository.replaceAll(flags, segments);
+    return true;
+  }
+
   private void runOneIteration() {
     Thread.currentThread().setName("PollThread");
     log.debug("running poll iteration");
@@ -138,6 +205,10 @@ class PollingProcessor {
         scheduler,
         SdkCodes::infoPollingStopped,
         errMsg -> log.warn("failed to stop polling scheduler: {}", errMsg));
+    shutdownExecutorService(
+        fetchExecutor,
+        () -> log.debug("Poll fetch threads stopped"),
+        errMsg -> log.warn("failed to stop poll fetch threads: {}", errMsg));
 
     log.debug("Closing PollingProcessor");
   }
@@ -0,0 +1,109 @@
+package io.harness.cf.client.api;
+
+import java.util.*;
+
+/**
+ * PrerequisiteGraph tracks which flags are prerequisites of which, as flags are stored. It is used
+ * to detect prerequisite cycles at store time and to find the flags that depend on a given flag.
+ *
+ * <p>Cycles found here are only logged, flags are stored regardless. Evaluation does not follow a
+ * topological order of this graph, it walks prerequisites depth first and memoizes each result per
+ * evaluation, so a prerequisite shared by several branches is evaluated once and a cycle fails the
+ * prerequisite check when it is reached.
+ */
+final class PrerequisiteGraph {
+
+  /** flag identifier to the identifiers of its prerequisites */
+  private final Map<String, Set<String>> prerequisites = new HashMap<>();
+
+  /** flag identifier to the identifiers of the flags that list it as a prerequisite */
+  private final Map<String, Set<String>> dependents = new HashMap<>();
+
+  /**
+   * Sets the prerequisites of a flag, replacing any previous edges.
+   *
+   * @return the flags forming a cycle through the given flag, starting and ending with it, or an
+   *     empty list if there is no cycle
+   */
+  synchronized List<String> put(String identifier, Collection<String> prerequisiteIdentifiers) {
+    removeEdges(identifier);
+    if (prerequisiteIdentifiers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final Set<String> edges = new LinkedHashSet<>(prerequisiteIdentifiers);
+    prerequisites.put(identifier, edges);
+    for (String prerequisite : edges) {
+      dependents.computeIfAbsent(prerequisite, k -> new HashSet<>()).add(identifier);
+    }
+    return findCycle(identifier);
+  }
+
+  synchronized void remove(String identifier) {
+    removeEdges(identifier);
+  }
+
+  synchronized Set<String> getPrerequisites(String identifier) {
+    final Set<String> edges = prerequisites.get(identifier);
+    return edges == null ? Collections.emptySet() : new HashSet<>(edges);
+  }
+
+  /** Returns every flag that depends on the given flag, directly or through other prerequisites */
+  synchronized Set<String> getDependents(String identifier) {
+    final Set<String> result = new HashSet<>();
+    final Deque<String> pending = new ArrayDeque<>();
+    pending.push(identifier);
+    while (!pending.isEmpty()) {
+      final Set<String> next = dependents.get(pending.pop());
+      if (next != null) {
+        for (String dependent : next) {
+          if (result.add(dependent)) {
+            pending.push(dependent);
+          }
+        }
+      }
+    }
+    result.remove(identifier);
+    return result;
+  }
+
+  private void removeEdges(String identifier) {
+    final Set<String> previous = prerequisites.remove(identifier);
+    if (previous == null) {
+      return;
+    }
+    for (String prerequisite : previous) {
+      final Set<String> flags = dependents.get(prerequisite);
+      if (flags != null) {
+        flags.remove(identifier);
+        if (flags.isEmpty()) {
+          dependents.remove(prerequisite);
+        }
+      }
+    }
+  }
+
+  // iterative depth first search from the given flag back to itself
+  private List<String> findCycle(String start) {
+    final Map<String, String> parents = new HashMap<>();
+    final Deque<String> pending = new ArrayDeque<>();
+    pending.push(start);
+    while (!pending.isEmpty()) {
+      final String current = pending.pop();
+      for (String prerequisite : prerequisites.getOrDefault(current, Collections.emptySet())) {
+        if (prerequisite.equals(start)) {
+          final LinkedList<String> cycle = new LinkedList<>();
+          cycle.addFirst(start);
+          for (String node = current; node != null; node = parents.get(node)) {
+            cycle.addFirst(node);
+          }
+          return cycle;
+        }
+        if (!parents.containsKey(prerequisite)) {
+          parents.put(prerequisite, current);
+          pending.push(prerequisite);
+        }
+      }
+    }
+    return Collections.emptyList();
+  }
+}
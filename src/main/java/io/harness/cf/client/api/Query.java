@@ -3,8 +3,10 @@ package io.harness.cf.client.api;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.FeatureSnapshot;
 import io.harness.cf.model.Segment;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import lombok.NonNull;
 
 public interface Query {
@@ -18,4 +20,18 @@ public interface Query {
   FeatureSnapshot getFeatureSnapshot(@NonNull String identifier);
 
   List<String> getAllFeatureIdentifiers(String prefix);
+
+  /**
+   * Returns the identifiers of all flags starting with the given prefix, in order. Repositories
+   * backed by a sorted index stream a view of it, the default copies {@link
+   * #getAllFeatureIdentifiers}.
+   */
+  default Stream<String> streamFeatureIdentifiers(String prefix) {
+    return getAllFeatureIdentifiers(prefix).stream();
+  }
+
+  /** Returns the identifiers of all segments, the default knows of none */
+  default List<String> getAllSegmentIdentifiers() {
+    return Collections.emptyList();
+  }
 }
@@ -2,6 +2,9 @@ package io.harness.cf.client.api;
 
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.Segment;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import lombok.NonNull;
 
 public interface Repository extends Query {
@@ -16,5 +19,36 @@ public interface Repository extends Query {
 
   void deleteSegment(@NonNull String identifier);
 
+  /**
+   * Replaces all flags and segments with the complete result of a fetch. Only entries with a newer
+   * version are written and entries missing from the result are deleted, so callbacks fire for
+   * real changes only. The default applies the result one entry at a time through the setters,
+   * segments before flags so that new flags never reference a segment that is not stored yet, and
+   * then deletes what {@link #getAllFeatureIdentifiers} and {@link #getAllSegmentIdentifiers} list
+   * but the result does not contain. Readers may observe it partially applied.
+   */
+  default void replaceAll(@NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments) {
+    final Set<String> segmentIdentifiers = new HashSet<>();
+    for (Segment segment : segments) {
+      segmentIdentifiers.add(segment.getIdentifier());
+      setSegment(segment.getIdentifier(), segment);
+    }
+    final Set<String> flagIdentifiers = new HashSet<>();
+    for (FeatureConfig flag : flags) {
+      flagIdentifiers.add(flag.getFeature());
+      setFlag(flag.getFeature(), flag);
+    }
+    for (String identifier : getAllFeatureIdentifiers("")) {
+      if (!flagIdentifiers.contains(identifier)) {
+        deleteFlag(identifier);
+      }
+    }
+    for (String identifier : getAllSegmentIdentifiers()) {
+      if (!segmentIdentifiers.contains(identifier)) {
+        deleteSegment(identifier);
+      }
+    }
+  }
+
   void close();
 }
@@ -0,0 +1,178 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.client.common.SdkCodes;
+import io.harness.cf.model.*;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RepositoryChanges works out what the complete result of a fetch changes in a repository: the
+ * flags and segments with a newer version, compiled from interned copies, and the entries the
+ * result no longer contains. Repositories only write and publish the changes, so every repository
+ * applies a fetch by the same rules.
+ */
+@Slf4j
+final class RepositoryChanges {
+
+  /** What a repository holds before the fetch is applied */
+  interface Current {
+
+    /** Returns the stored flag, null if there is none */
+    FeatureConfig getFlag(String identifier);
+
+    /** Returns the stored segment, null if there is none */
+    Segment getSegment(String identifier);
+
+    Iterable<String> getFlagIdentifiers();
+
+    Iterable<String> getSegmentIdentifiers();
+  }
+
+  // in the order they are to be stored, segments go first so that new flags never reference a
+  // segment that is not stored yet
+  final List<SegmentPlan> storedSegments;
+  final List<FlagPlan> storedFlags;
+  // the version each stored flag replaces, for flags that were stored before
+  final Map<String, FeatureConfig> previousFlags;
+  final List<String> deletedFlags = new ArrayList<>();
+  final List<String> deletedSegments = new ArrayList<>();
+  private final int fetchedFlags;
+  private final int fetchedSegments;
+
+  private RepositoryChanges(
+      Map<String, SegmentPlan> storedSegments,
+      Map<String, FlagPlan> storedFlags,
+      Map<String, FeatureConfig> previousFlags,
+      int fetchedFlags,
+      int fetchedSegments) {
+    this.storedSegments = new ArrayList<>(storedSegments.values());
+    this.storedFlags = new ArrayList<>(storedFlags.values());
+    this.previousFlags = previousFlags;
+    this.fetchedFlags = fetchedFlags;
+    this.fetchedSegments = fetchedSegments;
+  }
+
+  static RepositoryChanges of(
+      List<FeatureConfig> flags, List<Segment> segments, Current current, StringInterner interner) {
+    // an entry listed twice is compared against its earlier copy if that one is stored
+    final Map<String, SegmentPlan> storedSegments = new LinkedHashMap<>();
+    final Set<String> fetchedSegments = new HashSet<>();
+    for (Segment segment : segments) {
+      if (segment == null || segment.getIdentifier() == null) {
+        continue;
+      }
+      final String identifier = segment.getIdentifier();
+      fetchedSegments.add(identifier);
+      final SegmentPlan stored = storedSegments.get(identifier);
+      final Segment previous =
+          stored != null ? stored.getSegment() : current.getSegment(identifier);
+      if (!isOutdated(previous == null ? null : previous.getVersion(), segment.getVersion())) {
+        storedSegments.put(identifier, compile(segment, interner));
+      }
+    }
+
+    final Map<String, FlagPlan> storedFlags = new LinkedHashMap<>();
+    final Map<String, FeatureConfig> previousFlags = new HashMap<>();
+    final Set<String> fetchedFlags = new HashSet<>();
+    for (FeatureConfig flag : flags) {
+      if (flag == null || flag.getFeature() == null) {
+        continue;
+      }
+      final String identifier = flag.getFeature();
+      fetchedFlags.add(identifier);
+      final FlagPlan stored = storedFlags.get(identifier);
+      final FeatureConfig previous =
+          stored != null ? stored.getConfig() : current.getFlag(identifier);
+      if (isOutdated(previous == null ? null : previous.getVersion(), flag.getVersion())) {
+        continue;
+      }
+      if (stored == null && previous != null) {
+        previousFlags.put(identifier, previous);
+      }
+      storedFlags.put(identifier, compile(flag, interner));
+    }
+
+    final RepositoryChanges changes =
+        new RepositoryChanges(
+            storedSegments,
+            storedFlags,
+            previousFlags,
+            fetchedFlags.size(),
+            fetchedSegments.size());
+    for (String identifier : current.getFlagIdentifiers()) {
+      if (!fetchedFlags.contains(identifier)) {
+        changes.deletedFlags.add(identifier);
+      }
+    }
+    for (String identifier : current.getSegmentIdentifiers()) {
+      if (!fetchedSegments.contains(identifier)) {
+        changes.deletedSegments.add(identifier);
+      }
+    }
+    return changes;
+  }
+
+  boolean isEmpty() {
+    return storedFlags.isEmpty()
+        && storedSegments.isEmpty()
+        && deletedFlags.isEmpty()
+        && deletedSegments.isEmpty();
+  }
+
+  /** Indexes the stored flags and removes the deleted ones from the indexes */
+  void index(SegmentIndex segmentIndex, PrerequisiteGraph prerequisiteGraph) {
+    storedFlags.forEach(plan -> index(plan, segmentIndex, prerequisiteGraph));
+    for (String identifier : deletedFlags) {
+      prerequisiteGraph.remove(identifier);
+      segmentIndex.remove(identifier);
+    }
+  }
+
+  /** Logs the changes and reports them to the callback, called once they are published */
+  void report(RepositoryCallback callback) {
+    log.debug(
+        "Applied {} flags and {} segments, {} stored and {} deleted",
+        fetchedFlags,
+        fetchedSegments,
+        storedFlags.size() + storedSegments.size(),
+        deletedFlags.size() + deletedSegments.size());
+    if (callback != null) {
+      storedSegments.forEach(plan -> callback.onSegmentStored(plan.getSegment().getIdentifier()));
+      storedFlags.forEach(plan -> callback.onFlagStored(plan.getIdentifier()));
+      deletedFlags.forEach(callback::onFlagDeleted);
+      deletedSegments.forEach(callback::onSegmentDeleted);
+    }
+  }
+
+  /** Compiles an interned copy of the flag, the flag itself is not changed */
+  static FlagPlan compile(FeatureConfig flag, StringInterner interner) {
+    return PlanCompiler.compileFlag(interner.copyOf(flag));
+  }
+
+  /** Compiles an interned copy of the segment with its serving rules sorted by priority */
+  static SegmentPlan compile(Segment segment, StringInterner interner) {
+    final Segment copy = interner.copyOf(segment);
+    if (copy.getServingRules() != null && copy.getServingRules().size() > 1) {
+      copy.getServingRules().sort(Comparator.comparing(GroupServingRule::getPriority));
+    }
+    return PlanCompiler.compileSegment(copy);
+  }
+
+  static void index(FlagPlan plan, SegmentIndex segmentIndex, PrerequisiteGraph prerequisiteGraph) {
+    segmentIndex.put(plan.getIdentifier(), plan.getSegmentIdentifiers());
+    final List<String> prerequisites = new ArrayList<>(plan.getPrerequisites().size());
+    for (Prerequisite prerequisite : plan.getPrerequisites()) {
+      if (prerequisite.getFeature() != null) {
+        prerequisites.add(prerequisite.getFeature());
+      }
+    }
+    final List<String> cycle = prerequisiteGraph.put(plan.getIdentifier(), prerequisites);
+    if (!cycle.isEmpty()) {
+      SdkCodes.warnPrerequisiteCycle(plan.getIdentifier(), cycle);
+    }
+  }
+
+  static boolean isOutdated(Long currentVersion, Long newVersion) {
+    return currentVersion != null && newVersion != null && currentVersion >= newVersion;
+  }
+}
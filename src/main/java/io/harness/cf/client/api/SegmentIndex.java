@@ -0,0 +1,70 @@
+package io.harness.cf.client.api;
+
+import java.util.*;
+
+/**
+ * SegmentIndex maps each segment to the flags that reference it directly, through a segment match
+ * clause or the target segments of a variation map. It is updated as flags are stored so the flags
+ * affected by a segment change can be found without scanning every flag.
+ */
+final class SegmentIndex {
+
+  /** segment identifier to the identifiers of the flags referencing it */
+  private final Map<String, Set<String>> flags = new HashMap<>();
+
+  /** flag identifier to the identifiers of the segments it references */
+  private final Map<String, Set<String>> segments = new HashMap<>();
+
+  /** Sets the segments referenced by a flag, replacing any previous entries */
+  synchronized void put(String flag, Collection<String> segmentIdentifiers) {
+    removeEntries(flag);
+    if (segmentIdentifiers.isEmpty()) {
+      return;
+    }
+    final Set<String> entries = new HashSet<>(segmentIdentifiers);
+    segments.put(flag, entries);
+    for (String segment : entries) {
+      flags.computeIfAbsent(segment, k -> new LinkedHashSet<>()).add(flag);
+    }
+  }
+
+  synchronized void remove(String flag) {
+    removeEntries(flag);
+  }
+
+  synchronized Set<String> getFlags(String segment) {
+    final Set<String> entries = flags.get(segment);
+    return entries == null ? Collections.emptySet() : new LinkedHashSet<>(entries);
+  }
+
+  /**
+   * Returns the flags referencing the given segment together with every flag that depends on one
+   * of them through prerequisites
+   */
+  List<String> findFlags(String segment, PrerequisiteGraph prerequisites) {
+    final Set<String> result = getFlags(segment);
+    if (result.isEmpty()) {
+      return Collections.emptyList();
+    }
+    for (String flag : new ArrayList<>(result)) {
+      result.addAll(prerequisites.getDependents(flag));
+    }
+    return new ArrayList<>(result);
+  }
+
+  private void removeEntries(String flag) {
+    final Set<String> previous = segments.remove(flag);
+    if (previous == null) {
+      return;
+    }
+    for (String segment : previous) {
+      final Set<String> entries = flags.get(segment);
+      if (entries != null) {
+        entries.remove(flag);
+        if (entries.isEmpty()) {
+          flags.remove(segment);
+        }
+      }
+    }
+  }
+}
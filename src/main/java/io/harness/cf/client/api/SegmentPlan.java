@@ -0,0 +1,56 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.model.Segment;
+import java.util.List;
+import java.util.Set;
+import lombok.Getter;
+
+/**
+ * SegmentPlan is the compiled form of a {@link Segment}. Included and excluded targets are indexed
+ * in hash sets for constant time membership checks and serving rules are sorted by priority once,
+ * at store time.
+ */
+@Getter
+final class SegmentPlan {
+
+  private final Segment segment;
+
+  /** unique per compiled plan, changes every time the segment is stored */
+  private final long revision;
+
+  private final String identifier;
+  private final Set<String> included;
+  private final Set<String> excluded;
+
+  /** approximate retained size of the include and exclude indexes in bytes */
+  private final long indexBytes;
+
+  /** new style rules, each entry is a group of clauses that must all match */
+  private final List<List<ClausePlan>> servingRules;
+
+  /** legacy rules, any matching clause includes the target */
+  private final List<ClausePlan> rules;
+
+  /** segments referenced by segmentMatch clauses in the serving rules and legacy rules */
+  private final List<String> segmentIdentifiers;
+
+  SegmentPlan(
+      long revision,
+      Segment segment,
+      Set<String> included,
+      Set<String> excluded,
+      List<List<ClausePlan>> servingRules,
+      List<ClausePlan> rules,
+      List<String> segmentIdentifiers) {
+    this.revision = revision;
+    this.segment = segment;
+    this.identifier = segment.getIdentifier();
+    this.included = included;
+    this.excluded = excluded;
+    this.indexBytes =
+        PlanCompiler.estimateIndexBytes(included) + PlanCompiler.estimateIndexBytes(excluded);
+    this.servingRules = servingRules;
+    this.rules = rules;
+    this.segmentIdentifiers = segmentIdentifiers;
+  }
+}
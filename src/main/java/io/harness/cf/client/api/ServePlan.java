@@ -0,0 +1,46 @@
+package io.harness.cf.client.api;
+
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * ServePlan is the compiled form of a {@link io.harness.cf.model.Serve}. It holds either a fixed
+ * variation identifier or a percentage rollout, never both.
+ */
+@Getter
+final class ServePlan {
+
+  static final ServePlan EMPTY = new ServePlan(null, null, null, null);
+
+  private final String variation;
+
+  /** bucketBy attribute, null if this serve is not a distribution */
+  private final String bucketBy;
+
+  private final List<String> variations;
+  private final int[] weights;
+
+  /** running total of weights, entry i is the sum of weights 0 to i */
+  private final int[] cumulativeWeights;
+
+  ServePlan(String variation, String bucketBy, List<String> variations, int[] weights) {
+    this.variation = variation;
+    this.bucketBy = bucketBy;
+    this.variations = variations;
+    this.weights = weights;
+    if (weights == null) {
+      this.cumulativeWeights = null;
+    } else {
+      this.cumulativeWeights = new int[weights.length];
+      int total = 0;
+      for (int i = 0; i < weights.length; i++) {
+        total += weights[i];
+        this.cumulativeWeights[i] = total;
+      }
+    }
+  }
+
+  boolean isDistribution() {
+    return variations != null;
+  }
+}
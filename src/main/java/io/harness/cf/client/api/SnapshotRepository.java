@@ -0,0 +1,417 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.client.common.Storage;
+import io.harness.cf.model.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * SnapshotRepository holds flags and segments in unbounded, persistent maps. Every change builds a
+ * new {@link Snapshot} that shares all untouched entries with the previous one and publishes it
+ * with a single atomic reference swap, so readers never lock and never observe a partially applied
+ * update, and a single write costs O(log n). Writers are serialized. If a {@link Storage} is given,
+ * it is written through and its contents seed the first snapshot.
+ */
+@Slf4j
+class SnapshotRepository implements GenerationalRepository, PlanQuery {
+
+  private static final long ANY_GENERATION = -1;
+
+  private static final String FLAG_PREFIX = "flags/";
+  private static final String PREVIOUS_FLAG_PREFIX = "previous/";
+  private static final String SEGMENT_PREFIX = "segments/";
+
+  /**
+   * An immutable version of all flags and segments, held through their compiled plans, together
+   * with the previous flag versions and the sorted flag identifiers
+   */
+  static final class Snapshot implements PlanQuery {
+    static final Snapshot EMPTY =
+        new Snapshot(
+            PersistentHashMap.empty(),
+            PersistentHashMap.empty(),
+            PersistentHashMap.empty(),
+            PersistentSortedSet.empty());
+
+    private final PersistentHashMap<String, FlagPlan> flagPlans;
+    private final PersistentHashMap<String, FeatureConfig> previousFlags;
+    private final PersistentHashMap<String, SegmentPlan> segmentPlans;
+    private final PersistentSortedSet identifiers;
+
+    private Snapshot(
+        PersistentHashMap<String, FlagPlan> flagPlans,
+        PersistentHashMap<String, FeatureConfig> previousFlags,
+        PersistentHashMap<String, SegmentPlan> segmentPlans,
+        PersistentSortedSet identifiers) {
+      this.flagPlans = flagPlans;
+      this.previousFlags = previousFlags;
+      this.segmentPlans = segmentPlans;
+      this.identifiers = identifiers;
+    }
+
+    @Override
+    public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+      return Optional.ofNullable(flagPlans.get(identifier));
+    }
+
+    @Override
+    public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+      return Optional.ofNullable(segmentPlans.get(identifier));
+    }
+  }
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+  private final PrerequisiteGraph prerequisiteGraph = new PrerequisiteGraph();
+  private final SegmentIndex segmentIndex = new SegmentIndex();
+  private final StringInterner interner = new StringInterner();
+  private final Object writeLock = new Object();
+  // only changed while holding the write lock
+  private volatile long generation;
+  private final Storage store;
+  private final RepositoryCallback callback;
+  private final boolean cachePreviousFeatureConfigVersion;
+
+  SnapshotRepository(
+      Storage store, RepositoryCallback callback, boolean cachePreviousFeatureConfigVersion) {
+    this.store = store;
+    this.callback = callback;
+    this.cachePreviousFeatureConfigVersion = cachePreviousFeatureConfigVersion;
+    if (store != null) {
+      load(store);
+    }
+  }
+
+  private void load(Storage store) {
+    PersistentHashMap<String, FlagPlan> flagPlans = PersistentHashMap.empty();
+    PersistentHashMap<String, FeatureConfig> previousFlags = PersistentHashMap.empty();
+    PersistentHashMap<String, SegmentPlan> segmentPlans = PersistentHashMap.empty();
+    PersistentSortedSet identifiers = PersistentSortedSet.empty();
+    // values read from the store are new objects owned by the repository and interned in place
+    for (String key : store.keys()) {
+      final Object value = store.get(key);
+      if (key.startsWith(FLAG_PREFIX) && value instanceof FeatureConfig) {
+        final String identifier = key.substring(FLAG_PREFIX.length());
+        final FeatureConfig flag = (FeatureConfig) value;
+        interner.intern(flag);
+        final FlagPlan plan = PlanCompiler.compileFlag(flag);
+        flagPlans = flagPlans.with(identifier, plan);
+        identifiers = identifiers.with(identifier);
+        RepositoryChanges.index(plan, segmentIndex, prerequisiteGraph);
+      } else if (key.startsWith(PREVIOUS_FLAG_PREFIX) && value instanceof FeatureConfig) {
+        previousFlags =
+            previousFlags.with(key.substring(PREVIOUS_FLAG_PREFIX.length()), (FeatureConfig) value);
+      } else if (key.startsWith(SEGMENT_PREFIX) && value instanceof Segment) {
+        final Segment segment = (Segment) value;
+        interner.intern(segment);
+        segmentPlans =
+            segmentPlans.with(
+                key.substring(SEGMENT_PREFIX.length()), PlanCompiler.compileSegment(segment));
+      }
+    }
+
+    snapshot.set(new Snapshot(flagPlans, previousFlags, segmentPlans, identifiers));
+    log.debug("Loaded {} flags and {} segments from store", flagPlans.size(), segmentPlans.size());
+  }
+
+  @Override
+  public PlanQuery current() {
+    return snapshot.get();
+  }
+
+  @Override
+  public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+    return snapshot.get().getFlagPlan(identifier);
+  }
+
+  @Override
+  public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+    return snapshot.get().getSegmentPlan(identifier);
+  }
+
+  @Override
+  public Optional<FeatureConfig> getFlag(@NonNull String identifier) {
+    return getFlagPlan(identifier).map(FlagPlan::getConfig);
+  }
+
+  @Override
+  public Optional<Segment> getSegment(@NonNull String identifier) {
+    return getSegmentPlan(identifier).map(SegmentPlan::getSegment);
+  }
+
+  @Override
+  public List<String> findFlagsBySegment(@NonNull String identifier) {
+    return segmentIndex.findFlags(identifier, prerequisiteGraph);
+  }
+
+  @Override
+  public FeatureSnapshot getFeatureSnapshot(@NonNull String identifier) {
+    final Snapshot current = snapshot.get();
+    final FlagPlan plan = current.flagPlans.get(identifier);
+    return plan == null ? null : plan.getSnapshot(() -> current.previousFlags.get(identifier));
+  }
+
+  @Override
+  public List<String> getAllFeatureIdentifiers(String prefix) {
+    return streamFeatureIdentifiers(prefix).collect(Collectors.toList());
+  }
+
+  @Override
+  public Stream<String> streamFeatureIdentifiers(String prefix) {
+    // walks the identifiers of the snapshot current when this is called, later writes are not seen
+    return snapshot.get().identifiers.stream(prefix);
+  }
+
+  @Override
+  public List<String> getAllSegmentIdentifiers() {
+    return new ArrayList<>(snapshot.get().segmentPlans.keySet());
+  }
+
+  @Override
+  public void setFlag(@NonNull String identifier, @NonNull FeatureConfig featureConfig) {
+    synchronized (writeLock) {
+      final Snapshot current = snapshot.get();
+      final FlagPlan previous = current.flagPlans.get(identifier);
+      if (previous != null
+          && RepositoryChanges.isOutdated(
+              previous.getConfig().getVersion(), featureConfig.getVersion())) {
+        log.debug("Flag {} already exists", identifier);
+        return;
+      }
+
+      // the repository interns and keeps its own copy, the caller's flag is never changed
+      final FlagPlan plan = RepositoryChanges.compile(featureConfig, interner);
+      PersistentHashMap<String, FeatureConfig> previousFlags = current.previousFlags;
+      if (cachePreviousFeatureConfigVersion && previous != null) {
+        previousFlags = previousFlags.with(identifier, previous.getConfig());
+        if (store != null) {
+          store.set(PREVIOUS_FLAG_PREFIX + identifier, previous.getConfig());
+        }
+      }
+      if (store != null) {
+        store.set(FLAG_PREFIX + identifier, plan.getConfig());
+      }
+      snapshot.set(
+          new Snapshot(
+              current.flagPlans.with(identifier, plan),
+              previousFlags,
+              current.segmentPlans,
+              current.identifiers.with(identifier)));
+      generation++;
+      RepositoryChanges.index(plan, segmentIndex, prerequisiteGraph);
+    }
+    log.debug("Flag {} successfully stored", identifier);
+
+    if (callback != null) {
+      callback.onFlagStored(identifier);
+    }
+  }
+
+  @Override
+  public void setSegment(@NonNull String identifier, @NonNull Segment segment) {
+    synchronized (writeLock) {
+      final Snapshot current = snapshot.get();
+      final SegmentPlan previous = current.segmentPlans.get(identifier);
+      if (previous != null
+          && RepositoryChanges.isOutdated(
+              previous.getSegment().getVersion(), segment.getVersion())) {
+        log.debug("Segment {} already exists", identifier);
+        return;
+      }
+
+      final SegmentPlan plan = RepositoryChanges.compile(segment, interner);
+      if (store != null) {
+        store.set(SEGMENT_PREFIX + identifier, plan.getSegment());
+      }
+      snapshot.set(
+          new Snapshot(
+              current.flagPlans,
+              current.previousFlags,
+              current.segmentPlans.with(identifier, plan),
+              current.identifiers));
+      generation++;
+    }
+    log.debug("Segment {} successfully stored", identifier);
+
+    if (callback != null) {
+      callback.onSegmentStored(identifier);
+    }
+  }
+
+  @Override
+  public void deleteFlag(@NonNull String identifier) {
+    synchronized (writeLock) {
+      final Snapshot current = snapshot.get();
+      if (store != null) {
+        if (cachePreviousFeatureConfigVersion) {
+          store.delete(PREVIOUS_FLAG_PREFIX + identifier);
+        }
+        store.delete(FLAG_PREFIX + identifier);
+      }
+      snapshot.set(
+          new Snapshot(
+              current.flagPlans.without(identifier),
+              current.previousFlags.without(identifier),
+              current.segmentPlans,
+              current.identifiers.without(identifier)));
+      generation++;
+      prerequisiteGraph.remove(identifier);
+      segmentIndex.remove(identifier);
+    }
+    log.debug("Flag {} successfully deleted", identifier);
+
+    if (callback != null) {
+      callback.onFlagDeleted(identifier);
+    }
+  }
+
+  @Override
+  public void deleteSegment(@NonNull String identifier) {
+    synchronized (writeLock) {
+      final Snapshot current = snapshot.get();
+      if (store != null) {
+        store.delete(SEGMENT_PREFIX + identifier);
+      }
+      snapshot.set(
+          new Snapshot(
+              current.flagPlans,
+              current.previousFlags,
+              current.segmentPlans.without(identifier),
+              current.identifiers));
+      generation++;
+    }
+    log.debug("Segment {} successfully deleted", identifier);
+
+    if (callback != null) {
+      callback.onSegmentDeleted(identifier);
+    }
+  }
+
+  @Override
+  public void replaceAll(@NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments) {
+    apply(flags, segments, ANY_GENERATION);
+  }
+
+  @Override
+  public boolean replaceAll(
+      @NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments, long generation) {
+    return apply(flags, segments, generation);
+  }
+
+  @Override
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Builds the next snapshot from the fetched entries in one pass. Only changed entries are
+   * compiled and written into the persistent maps, everything else is shared with the current
+   * snapshot. The result is published with a single swap, so readers see either the previous or
+   * the complete new state.
+   */
+  private boolean apply(
+      List<FeatureConfig> flags, List<Segment> segments, long expectedGeneration) {
+    final RepositoryChanges changes;
+    synchronized (writeLock) {
+      if (expectedGeneration != ANY_GENERATION && expectedGeneration != generation) {
+        log.debug("Repository was written since generation {}, fetch dropped", expectedGeneration);
+        return false;
+      }
+      final Snapshot current = snapshot.get();
+      changes =
+          RepositoryChanges.of(
+              flags,
+              segments,
+              new RepositoryChanges.Current() {
+                @Override
+                public FeatureConfig getFlag(String identifier) {
+                  final FlagPlan plan = current.flagPlans.get(identifier);
+                  return plan == null ? null : plan.getConfig();
+                }
+
+                @Override
+                public Segment getSegment(String identifier) {
+                  final SegmentPlan plan = current.segmentPlans.get(identifier);
+                  return plan == null ? null : plan.getSegment();
+                }
+
+                @Override
+                public Iterable<String> getFlagIdentifiers() {
+                  return current.identifiers;
+                }
+
+                @Override
+                public Iterable<String> getSegmentIdentifiers() {
+                  return current.segmentPlans.keySet();
+                }
+              },
+              interner);
+      if (changes.isEmpty()) {
+        log.debug("Fetched flags and segments are unchanged");
+        return true;
+      }
+
+      PersistentHashMap<String, FlagPlan> nextFlagPlans = current.flagPlans;
+      PersistentHashMap<String, FeatureConfig> nextPreviousFlags = current.previousFlags;
+      PersistentHashMap<String, SegmentPlan> nextSegmentPlans = current.segmentPlans;
+      PersistentSortedSet nextIdentifiers = current.identifiers;
+      for (SegmentPlan plan : changes.storedSegments) {
+        final String identifier = plan.getSegment().getIdentifier();
+        if (store != null) {
+          store.set(SEGMENT_PREFIX + identifier, plan.getSegment());
+        }
+        nextSegmentPlans = nextSegmentPlans.with(identifier, plan);
+      }
+      for (FlagPlan plan : changes.storedFlags) {
+        final String identifier = plan.getIdentifier();
+        final FeatureConfig previous = changes.previousFlags.get(identifier);
+        if (cachePreviousFeatureConfigVersion && previous != null) {
+          nextPreviousFlags = nextPreviousFlags.with(identifier, previous);
+          if (store != null) {
+            store.set(PREVIOUS_FLAG_PREFIX + identifier, previous);
+          }
+        }
+        if (store != null) {
+          store.set(FLAG_PREFIX + identifier, plan.getConfig());
+        }
+        nextFlagPlans = nextFlagPlans.with(identifier, plan);
+        nextIdentifiers = nextIdentifiers.with(identifier);
+      }
+      for (String identifier : changes.deletedFlags) {
+        if (store != null) {
+          if (cachePreviousFeatureConfigVersion) {
+            store.delete(PREVIOUS_FLAG_PREFIX + identifier);
+          }
+          store.delete(FLAG_PREFIX + identifier);
+        }
+        nextFlagPlans = nextFlagPlans.without(identifier);
+        nextPreviousFlags = nextPreviousFlags.without(identifier);
+        nextIdentifiers = nextIdentifiers.without(identifier);
+      }
+      for (String identifier : changes.deletedSegments) {
+        if (store != null) {
+          store.delete(SEGMENT_PREFIX + identifier);
+        }
+        nextSegmentPlans = nextSegmentPlans.without(identifier);
+      }
+
+      snapshot.set(
+          new Snapshot(nextFlagPlans, nextPreviousFlags, nextSegmentPlans, nextIdentifiers));
+      generation++;
+      changes.index(segmentIndex, prerequisiteGraph);
+    }
+    changes.report(callback);
+    return true;
+  }
+
+  @Override
+  public void close() {
+    if (store != null) {
+      store.close();
+      log.debug("store closed");
+    }
+  }
+}
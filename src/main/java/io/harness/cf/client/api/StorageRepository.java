@@ -1,18 +1,74 @@
 package io.harness.cf.client.api;
 
-import com.google.gson.Gson;
 import io.harness.cf.client.common.Cache;
 import io.harness.cf.client.common.Storage;
-import io.harness.cf.client.common.Utils;
 import io.harness.cf.model.*;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-class StorageRepository implements Repository {
+class StorageRepository implements GenerationalRepository, PlanQuery {
+
+  private static final long ANY_GENERATION = -1;
+
+  /**
+   * One version of the compiled plans and the stored identifiers. Writers build the next state and
+   * publish it with a single assignment, so a reader sees a change either completely or not at
+   * all. Entries loaded from a persistent store are listed, but compiled on their first lookup.
+   */
+  private final class State implements PlanQuery {
+    private final PersistentHashMap<String, FlagPlan> flagPlans;
+    private final PersistentHashMap<String, SegmentPlan> segmentPlans;
+    private final PersistentSortedSet flags;
+    private final PersistentSortedSet segments;
+
+    private State(
+        PersistentHashMap<String, FlagPlan> flagPlans,
+        PersistentHashMap<String, SegmentPlan> segmentPlans,
+        PersistentSortedSet flags,
+        PersistentSortedSet segments) {
+      this.flagPlans = flagPlans;
+      this.segmentPlans = segmentPlans;
+      this.flags = flags;
+      this.segments = segments;
+    }
+
+    @Override
+    public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+      final FlagPlan plan = flagPlans.get(identifier);
+      if (plan != null || !flags.contains(identifier)) {
+        return Optional.ofNullable(plan);
+      }
+      return compileStoredFlag(identifier);
+    }
+
+    @Override
+    public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+      final SegmentPlan plan = segmentPlans.get(identifier);
+      if (plan != null || !segments.contains(identifier)) {
+        return Optional.ofNullable(plan);
+      }
+      return compileStoredSegment(identifier);
+    }
+  }
 
   private final Cache cache;
+  private final PrerequisiteGraph prerequisiteGraph = new PrerequisiteGraph();
+  private final SegmentIndex segmentIndex = new SegmentIndex();
+  private final StringInterner interner = new StringInterner();
+  private final Object writeLock = new Object();
+  private volatile State state =
+      new State(
+          PersistentHashMap.empty(),
+          PersistentHashMap.empty(),
+          PersistentSortedSet.empty(),
+          PersistentSortedSet.empty());
+  // only changed while holding the write lock
+  private volatile long generation;
+  private volatile boolean storeIndexed;
   private Storage store;
   private final RepositoryCallback callback;
 
@@ -25,6 +81,7 @@ class StorageRepository implements Repository {
     this.cache = cache;
     this.callback = callback;
     this.cachePreviousFeatureConfigVersion = cachePreviousFeatureConfigVersion;
+    indexIdentifiers(cache.keys());
   }
 
   public StorageRepository(
@@ -34,6 +91,29 @@ class StorageRepository implements Repository {
       boolean cachePreviousFeatureConfigVersion) {
     this(cache, callback, cachePreviousFeatureConfigVersion);
     this.store = store;
+    if (store != null) {
+      indexIdentifiers(store.keys());
+    }
+  }
+
+  private void indexIdentifiers(List<String> keys) {
+    if (keys == null) {
+      return;
+    }
+    final String flagPrefix = "flags/";
+    final String segmentPrefix = "segments/";
+    synchronized (writeLock) {
+      PersistentSortedSet flags = state.flags;
+      PersistentSortedSet segments = state.segments;
+      for (String key : keys) {
+        if (key.startsWith(flagPrefix)) {
+          flags = flags.with(key.substring(flagPrefix.length()));
+        } else if (key.startsWith(segmentPrefix)) {
+          segments = segments.with(key.substring(segmentPrefix.length()));
+        }
+      }
+      state = new State(state.flagPlans, state.segmentPlans, flags, segments);
+    }
   }
 
   public Optional<FeatureConfig> getFlag(@NonNull String identifier, boolean cacheable) {
@@ -58,20 +138,18 @@ class StorageRepository implements Repository {
   }
 
   public List<String> getAllFeatureIdentifiers(String prefix) {
-    List<String> identifiers = new LinkedList<>();
-    List<String> keys = cache.keys();
-    String flagPrefix = "flags/";
-    for (String key : keys) {
-      if (key.startsWith(flagPrefix)) {
-        // Strip the flag prefix
-        String strippedKey = key.substring(flagPrefix.length());
-        // If prefix is empty, add all stripped keys, otherwise check for prefix match
-        if (prefix.isEmpty() || strippedKey.startsWith(prefix)) {
-          identifiers.add(strippedKey);
-        }
-      }
-    }
-    return identifiers;
+    return streamFeatureIdentifiers(prefix).collect(Collectors.toList());
+  }
+
+  @Override
+  public Stream<String> streamFeatureIdentifiers(String prefix) {
+    // walks the identifiers of the state current when this is called, later writes are not seen
+    return state.flags.stream(prefix);
+  }
+
+  @Override
+  public List<String> getAllSegmentIdentifiers() {
+    return state.segments.stream("").collect(Collectors.toList());
   }
 
   public Optional<FeatureConfig[]> getCurrentAndPreviousFeatureConfig(@NonNull String identifier) {
@@ -100,34 +178,81 @@ class StorageRepository implements Repository {
   }
 
   public FeatureSnapshot getFeatureSnapshot(@NonNull String identifier) {
-    Gson gson = new Gson();
-    final String flagKey = formatFlagKey(identifier);
+    return getFlagPlan(identifier)
+        .map(plan -> plan.getSnapshot(() -> getPreviousFlag(identifier)))
+        .orElse(null);
+  }
+
+  private FeatureConfig getPreviousFlag(@NonNull String identifier) {
     final String pFlagKey = formatPrevFlagKey(identifier);
+    final FeatureConfig pFlag = (FeatureConfig) cache.get(pFlagKey);
+    if (pFlag != null || store == null) {
+      return pFlag;
+    }
+    return (FeatureConfig) store.get(pFlagKey);
+  }
 
-    FeatureConfig pFlag = (FeatureConfig) cache.get(pFlagKey);
-    FeatureConfig cFlag = (FeatureConfig) cache.get(flagKey);
+  @Override
+  public PlanQuery current() {
+    return state;
+  }
 
-    if (cFlag != null) {
-      FeatureSnapshot deepCopySnapshot =
-          gson.fromJson(gson.toJson(new FeatureSnapshot(cFlag, pFlag)), FeatureSnapshot.class);
-      return deepCopySnapshot;
-    }
-    // if we don't have it in cache we check the file
-    if (this.store != null) {
-      pFlag = (FeatureConfig) store.get(pFlagKey);
-      cFlag = (FeatureConfig) store.get(flagKey);
-      if (pFlag != null) {
-        cache.set(pFlagKey, pFlag);
+  @Override
+  public Optional<FlagPlan> getFlagPlan(@NonNull String identifier) {
+    return state.getFlagPlan(identifier);
+  }
+
+  @Override
+  public Optional<SegmentPlan> getSegmentPlan(@NonNull String identifier) {
+    return state.getSegmentPlan(identifier);
+  }
+
+  // the flag was not stored through this repository, e.g. it was loaded from a persistent store.
+  // It is compiled under the write lock, so a concurrent delete either runs first and the flag is
+  // no longer listed, or runs after the compiled plan was published and removes it again
+  private Optional<FlagPlan> compileStoredFlag(String identifier) {
+    synchronized (writeLock) {
+      final State current = state;
+      final FlagPlan plan = current.flagPlans.get(identifier);
+      if (plan != null || !current.flags.contains(identifier)) {
+        return Optional.ofNullable(plan);
       }
-      if (cFlag != null) {
-        cache.set(flagKey, cFlag);
+      final FeatureConfig flag = getFlag(identifier).orElse(null);
+      if (flag == null) {
+        return Optional.empty();
       }
+      final FlagPlan compiled = PlanCompiler.compileFlag(flag);
+      state =
+          new State(
+              current.flagPlans.with(identifier, compiled),
+              current.segmentPlans,
+              current.flags,
+              current.segments);
+      RepositoryChanges.index(compiled, segmentIndex, prerequisiteGraph);
+      return Optional.of(compiled);
+    }
+  }
 
-      FeatureSnapshot deepCopySnapshot =
-          gson.fromJson(gson.toJson(new FeatureSnapshot(cFlag, pFlag)), FeatureSnapshot.class);
-      return deepCopySnapshot;
+  private Optional<SegmentPlan> compileStoredSegment(String identifier) {
+    synchronized (writeLock) {
+      final State current = state;
+      final SegmentPlan plan = current.segmentPlans.get(identifier);
+      if (plan != null || !current.segments.contains(identifier)) {
+        return Optional.ofNullable(plan);
+      }
+      final Segment segment = getSegment(identifier).orElse(null);
+      if (segment == null) {
+        return Optional.empty();
+      }
+      final SegmentPlan compiled = PlanCompiler.compileSegment(segment);
+      state =
+          new State(
+              current.flagPlans,
+              current.segmentPlans.with(identifier, compiled),
+              current.flags,
+              current.segments);
+      return Optional.of(compiled);
     }
-    return null;
   }
 
   public Optional<Segment> getSegment(@NonNull String identifier, boolean cacheable) {
@@ -153,46 +278,61 @@ class StorageRepository implements Repository {
 
   @Override
   public List<String> findFlagsBySegment(@NonNull String segment) {
+    if (store != null && !storeIndexed) {
+      indexStore();
+    }
+    return segmentIndex.findFlags(segment, prerequisiteGraph);
+  }
 
-    List<String> result = new ArrayList<>();
-    List<String> keys = this.cache.keys();
-    if (store != null) {
-      log.debug("Store is available, load all keys");
-      keys = store.keys();
-    }
-    for (String key : keys) {
-      final Optional<FeatureConfig> optionalFeatureConfig = getFlag(key);
-      if (!optionalFeatureConfig.isPresent()) {
-        log.debug("Flag not found {}, continue...", key);
-        continue;
-      }
-      final FeatureConfig flag = optionalFeatureConfig.get();
-      if (Utils.isEmpty(flag.getRules())) {
-        log.debug("Flag {} doesn't contain any rule, continue...", key);
-        continue;
-      }
-      for (ServingRule rule : flag.getRules()) {
-        for (Clause clause : rule.getClauses()) {
-          if (clause.getOp().equals(Operators.SEGMENT_MATCH)
-              && clause.getValues().contains(segment)) {
-            log.debug("Flag {} evaluated in segments", flag.getFeature());
-            result.add(flag.getFeature());
-          }
-        }
+  // flags loaded from a persistent store are only indexed once their plan is compiled
+  private synchronized void indexStore() {
+    if (storeIndexed) {
+      return;
+    }
+    final String flagPrefix = "flags/";
+    for (String key : store.keys()) {
+      if (key.startsWith(flagPrefix)) {
+        getFlagPlan(key.substring(flagPrefix.length()));
       }
     }
-    return result;
+    storeIndexed = true;
+    log.debug("Segment index built from store");
   }
 
   @Override
   public void setFlag(@NonNull String identifier, @NonNull FeatureConfig featureConfig) {
-    if (isFlagOutdated(identifier, featureConfig)) {
-      log.debug("Flag {} already exists", identifier);
-      return;
+    synchronized (writeLock) {
+      if (isFlagOutdated(identifier, featureConfig)) {
+        log.debug("Flag {} already exists", identifier);
+        return;
+      }
+
+      // the repository interns and keeps its own copy, the caller's flag is never changed
+      final String flagKey = formatFlagKey(identifier);
+      final FlagPlan plan = RepositoryChanges.compile(featureConfig, interner);
+      storeFlag(
+          identifier, plan.getConfig(), store != null ? store.get(flagKey) : cache.get(flagKey));
+      final State current = state;
+      state =
+          new State(
+              current.flagPlans.with(identifier, plan),
+              current.segmentPlans,
+              current.flags.with(identifier),
+              current.segments);
+      generation++;
+      RepositoryChanges.index(plan, segmentIndex, prerequisiteGraph);
     }
+    log.debug("Flag {} successfully stored", identifier);
 
+    if (callback != null) {
+      callback.onFlagStored(identifier);
+    }
+  }
+
+  // writes the flag to the cache or store, the caller publishes its plan
+  private void storeFlag(
+      String identifier, FeatureConfig featureConfig, Object previousFeatureConfig) {
     final String flagKey = formatFlagKey(identifier);
-    final Object previousFeatureConfig = store != null ? store.get(flagKey) : cache.get(flagKey);
 
     if (cachePreviousFeatureConfigVersion && previousFeatureConfig != null) {
       final String previousFlagKey = formatPrevFlagKey(identifier);
@@ -212,24 +352,34 @@ class StorageRepository implements Repository {
     } else {
       cache.set(flagKey, featureConfig);
     }
-
-    log.debug("Flag {} successfully stored", identifier);
-
-    if (callback != null) {
-      callback.onFlagStored(identifier);
-    }
   }
 
   @Override
   public void setSegment(@NonNull String identifier, @NonNull Segment segment) {
-    if (isSegmentOutdated(identifier, segment)) {
-      log.debug("Segment {} already exists", identifier);
-      return;
+    synchronized (writeLock) {
+      if (isSegmentOutdated(identifier, segment)) {
+        log.debug("Segment {} already exists", identifier);
+        return;
+      }
+
+      final SegmentPlan plan = RepositoryChanges.compile(segment, interner);
+      storeSegment(identifier, plan.getSegment());
+      final State current = state;
+      state =
+          new State(
+              current.flagPlans,
+              current.segmentPlans.with(identifier, plan),
+              current.flags,
+              current.segments.with(identifier));
+      generation++;
     }
 
-    // Sort the serving rules before storing the segment
-    sortSegmentServingRules(segment);
+    if (callback != null) {
+      callback.onSegmentStored(identifier);
+    }
+  }
 
+  private void storeSegment(String identifier, Segment segment) {
     final String segmentKey = formatSegmentKey(identifier);
     if (store != null) {
       store.set(segmentKey, segment);
@@ -239,13 +389,30 @@ class StorageRepository implements Repository {
       cache.set(segmentKey, segment);
       log.debug("Segment {} successfully cached", identifier);
     }
-    if (callback != null) {
-      callback.onSegmentStored(identifier);
-    }
   }
 
   @Override
   public void deleteFlag(@NonNull String identifier) {
+    synchronized (writeLock) {
+      removeFlag(identifier);
+      final State current = state;
+      state =
+          new State(
+              current.flagPlans.without(identifier),
+              current.segmentPlans,
+              current.flags.without(identifier),
+              current.segments);
+      generation++;
+      prerequisiteGraph.remove(identifier);
+      segmentIndex.remove(identifier);
+    }
+    log.debug("Flag {} successfully deleted from cache", identifier);
+    if (callback != null) {
+      callback.onFlagDeleted(identifier);
+    }
+  }
+
+  private void removeFlag(String identifier) {
     final String flagKey = this.formatFlagKey(identifier);
     final String pflgKey = this.formatPrevFlagKey(identifier);
     if (store != null) {
@@ -259,29 +426,143 @@ class StorageRepository implements Repository {
       this.cache.delete(pflgKey);
     }
     this.cache.delete(flagKey);
-    log.debug("Flag {} successfully deleted from cache", identifier);
-    if (callback != null) {
-      callback.onFlagDeleted(identifier);
-    }
   }
 
   @Override
   public void deleteSegment(@NonNull String identifier) {
+    synchronized (writeLock) {
+      removeSegment(identifier);
+      final State current = state;
+      state =
+          new State(
+              current.flagPlans,
+              current.segmentPlans.without(identifier),
+              current.flags,
+              current.segments.without(identifier));
+      generation++;
+    }
+    log.debug("Segment {} successfully deleted from cache", identifier);
+    if (callback != null) {
+      callback.onSegmentDeleted(identifier);
+    }
+  }
+
+  private void removeSegment(String identifier) {
     final String segmentKey = this.formatSegmentKey(identifier);
     if (store != null) {
       store.delete(segmentKey);
       log.debug("Segment {} successfully deleted from store", identifier);
     }
     this.cache.delete(segmentKey);
-    log.debug("Segment {} successfully deleted from cache", identifier);
-    if (callback != null) {
-      callback.onSegmentDeleted(identifier);
+  }
+
+  @Override
+  public long getGeneration() {
+    return generation;
+  }
+
+  @Override
+  public void replaceAll(@NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments) {
+    apply(flags, segments, ANY_GENERATION);
+  }
+
+  @Override
+  public boolean replaceAll(
+      @NonNull List<FeatureConfig> flags, @NonNull List<Segment> segments, long generation) {
+    return apply(flags, segments, generation);
+  }
+
+  /**
+   * Compiles the changed entries of a fetch into the next state while holding the write lock,
+   * writes them to the cache or store and publishes the state once. Readers of the plans see
+   * either the previous or the complete new state, never a partially applied fetch.
+   */
+  private boolean apply(
+      List<FeatureConfig> flags, List<Segment> segments, long expectedGeneration) {
+    final RepositoryChanges changes;
+    synchronized (writeLock) {
+      if (expectedGeneration != ANY_GENERATION && expectedGeneration != generation) {
+        log.debug("Repository was written since generation {}, fetch dropped", expectedGeneration);
+        return false;
+      }
+      final State current = state;
+      // the compiled plan holds the current version, the repository is only read without one
+      changes =
+          RepositoryChanges.of(
+              flags,
+              segments,
+              new RepositoryChanges.Current() {
+                @Override
+                public FeatureConfig getFlag(String identifier) {
+                  final FlagPlan plan = current.flagPlans.get(identifier);
+                  return plan != null
+                      ? plan.getConfig()
+                      : StorageRepository.this.getFlag(identifier, false).orElse(null);
+                }
+
+                @Override
+                public Segment getSegment(String identifier) {
+                  final SegmentPlan plan = current.segmentPlans.get(identifier);
+                  return plan != null
+                      ? plan.getSegment()
+                      : StorageRepository.this.getSegment(identifier, false).orElse(null);
+                }
+
+                @Override
+                public Iterable<String> getFlagIdentifiers() {
+                  return current.flags;
+                }
+
+                @Override
+                public Iterable<String> getSegmentIdentifiers() {
+                  return current.segments;
+                }
+              },
+              interner);
+      if (changes.isEmpty()) {
+        log.debug("Fetched flags and segments are unchanged");
+        return true;
+      }
+
+      PersistentHashMap<String, FlagPlan> nextFlagPlans = current.flagPlans;
+      PersistentHashMap<String, SegmentPlan> nextSegmentPlans = current.segmentPlans;
+      PersistentSortedSet nextFlags = current.flags;
+      PersistentSortedSet nextSegments = current.segments;
+      for (SegmentPlan plan : changes.storedSegments) {
+        final String identifier = plan.getSegment().getIdentifier();
+        storeSegment(identifier, plan.getSegment());
+        nextSegmentPlans = nextSegmentPlans.with(identifier, plan);
+        nextSegments = nextSegments.with(identifier);
+      }
+      for (FlagPlan plan : changes.storedFlags) {
+        final String identifier = plan.getIdentifier();
+        storeFlag(identifier, plan.getConfig(), changes.previousFlags.get(identifier));
+        nextFlagPlans = nextFlagPlans.with(identifier, plan);
+        nextFlags = nextFlags.with(identifier);
+      }
+      for (String identifier : changes.deletedFlags) {
+        removeFlag(identifier);
+        nextFlagPlans = nextFlagPlans.without(identifier);
+        nextFlags = nextFlags.without(identifier);
+      }
+      for (String identifier : changes.deletedSegments) {
+        removeSegment(identifier);
+        nextSegmentPlans = nextSegmentPlans.without(identifier);
+        nextSegments = nextSegments.without(identifier);
+      }
+
+      state = new State(nextFlagPlans, nextSegmentPlans, nextFlags, nextSegments);
+      generation++;
+      changes.index(segmentIndex, prerequisiteGraph);
     }
+    changes.report(callback);
+    return true;
   }
 
+  // compared against the compiled plan, the cache may have evicted the flag while it is still used
   protected boolean isFlagOutdated(
       @NonNull String identifier, @NonNull FeatureConfig newFeatureConfig) {
-    final Optional<FeatureConfig> oldFlag = getFlag(identifier, false);
+    final Optional<FeatureConfig> oldFlag = getFlagPlan(identifier).map(FlagPlan::getConfig);
     if (oldFlag.isPresent()) {
       final FeatureConfig flag = oldFlag.get();
       if (flag.getVersion() != null && newFeatureConfig.getVersion() != null)
@@ -292,7 +573,7 @@ class StorageRepository implements Repository {
   }
 
   protected boolean isSegmentOutdated(@NonNull String identifier, @NonNull Segment newSegment) {
-    final Optional<Segment> oldSegment = getSegment(identifier, false);
+    final Optional<Segment> oldSegment = getSegmentPlan(identifier).map(SegmentPlan::getSegment);
     if (oldSegment.isPresent()) {
       final Segment segment = oldSegment.get();
       if (segment.getVersion() != null && newSegment.getVersion() != null)
@@ -302,12 +583,6 @@ class StorageRepository implements Repository {
     return false;
   }
 
-  private void sortSegmentServingRules(Segment segment) {
-    if (segment.getServingRules() != null && segment.getServingRules().size() > 1) {
-      segment.getServingRules().sort(Comparator.comparing(GroupServingRule::getPriority));
-    }
-  }
-
   @NonNull
   protected String formatFlagKey(@NonNull String identifier) {
     return String.format("flags/%s", identifier);
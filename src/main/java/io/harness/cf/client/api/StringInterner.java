@@ -0,0 +1,179 @@
+package io.harness.cf.client.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.harness.cf.model.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * StringInterner canonicalizes the strings that repeat across flags and segments, such as variation
+ * identifiers, attribute and operator names, clause values and environment and project
+ * identifiers, so that every stored copy points to the same instance. Strings that are mostly
+ * unique, variation values and individual target identifiers and names, are left alone. The
+ * interner is bounded, once it is full the least useful strings are evicted, so strings of deleted
+ * flags do not stay pinned and new ones keep being shared.
+ */
+final class StringInterner {
+
+  static final int DEFAULT_CAPACITY = 100_000;
+
+  private final Cache<String, String> strings;
+
+  StringInterner() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  StringInterner(int capacity) {
+    // evictions run on the calling thread, the interner never starts work of its own
+    strings = Caffeine.newBuilder().maximumSize(capacity).executor(Runnable::run).build();
+  }
+
+  String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    return strings.get(value, Function.identity());
+  }
+
+  long size() {
+    strings.cleanUp();
+    return strings.estimatedSize();
+  }
+
+  /** Returns a copy of the flag with its repeated strings interned, the flag is not changed */
+  FeatureConfig copyOf(FeatureConfig flag) {
+    final FeatureConfig copy = ModelCopier.copy(flag);
+    intern(copy);
+    return copy;
+  }
+
+  /** Returns a copy of the segment with its repeated strings interned */
+  Segment copyOf(Segment segment) {
+    final Segment copy = ModelCopier.copy(segment);
+    intern(copy);
+    return copy;
+  }
+
+  /** Replaces the repeated strings of a flag in place, only for flags owned by the caller */
+  void intern(FeatureConfig flag) {
+    flag.setProject(intern(flag.getProject()));
+    flag.setEnvironment(intern(flag.getEnvironment()));
+    flag.setOffVariation(intern(flag.getOffVariation()));
+    if (flag.getVariations() != null) {
+      for (Variation variation : flag.getVariations()) {
+        if (variation != null) {
+          variation.setIdentifier(intern(variation.getIdentifier()));
+          variation.setName(intern(variation.getName()));
+        }
+      }
+    }
+    if (flag.getRules() != null) {
+      for (ServingRule rule : flag.getRules()) {
+        if (rule != null) {
+          internClauses(rule.getClauses());
+          internServe(rule.getServe());
+        }
+      }
+    }
+    internServe(flag.getDefaultServe());
+    if (flag.getPrerequisites() != null) {
+      for (Prerequisite prerequisite : flag.getPrerequisites()) {
+        if (prerequisite != null) {
+          prerequisite.setFeature(intern(prerequisite.getFeature()));
+          prerequisite.setVariations(internAll(prerequisite.getVariations()));
+        }
+      }
+    }
+    if (flag.getVariationToTargetMap() != null) {
+      for (VariationMap map : flag.getVariationToTargetMap()) {
+        if (map == null) {
+          continue;
+        }
+        map.setVariation(intern(map.getVariation()));
+        map.setTargetSegments(internAll(map.getTargetSegments()));
+      }
+    }
+  }
+
+  /** Replaces the repeated strings of a segment in place, only for segments owned by the caller */
+  void intern(Segment segment) {
+    segment.setEnvironment(intern(segment.getEnvironment()));
+    if (segment.getTags() != null) {
+      for (Tag tag : segment.getTags()) {
+        if (tag != null) {
+          tag.setName(intern(tag.getName()));
+          tag.setIdentifier(intern(tag.getIdentifier()));
+        }
+      }
+    }
+    internTargets(segment.getIncluded());
+    internTargets(segment.getExcluded());
+    internClauses(segment.getRules());
+    if (segment.getServingRules() != null) {
+      for (GroupServingRule rule : segment.getServingRules()) {
+        if (rule != null) {
+          internClauses(rule.getClauses());
+        }
+      }
+    }
+  }
+
+  private void internServe(Serve serve) {
+    if (serve == null) {
+      return;
+    }
+    serve.setVariation(intern(serve.getVariation()));
+    final Distribution distribution = serve.getDistribution();
+    if (distribution != null) {
+      distribution.setBucketBy(intern(distribution.getBucketBy()));
+      if (distribution.getVariations() != null) {
+        for (WeightedVariation variation : distribution.getVariations()) {
+          if (variation != null) {
+            variation.setVariation(intern(variation.getVariation()));
+          }
+        }
+      }
+    }
+  }
+
+  private void internClauses(List<Clause> clauses) {
+    if (clauses == null) {
+      return;
+    }
+    for (Clause clause : clauses) {
+      if (clause != null) {
+        clause.setAttribute(intern(clause.getAttribute()));
+        clause.setOp(intern(clause.getOp()));
+        clause.setValues(internAll(clause.getValues()));
+      }
+    }
+  }
+
+  private void internTargets(List<Target> targets) {
+    if (targets == null) {
+      return;
+    }
+    for (Target target : targets) {
+      if (target != null) {
+        target.setAccount(intern(target.getAccount()));
+        target.setOrg(intern(target.getOrg()));
+        target.setEnvironment(intern(target.getEnvironment()));
+        target.setProject(intern(target.getProject()));
+      }
+    }
+  }
+
+  // lists may be immutable, so a new list is returned instead of replacing the elements
+  private List<String> internAll(List<String> values) {
+    if (values == null || values.isEmpty()) {
+      return values;
+    }
+    final List<String> interned = new ArrayList<>(values.size());
+    for (String value : values) {
+      interned.add(intern(value));
+    }
+    return interned;
+  }
+}
@@ -0,0 +1,16 @@
+package io.harness.cf.client.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Backlog of one stripe of the threads applying stream events */
+@AllArgsConstructor
+@Data
+public class StripeStats {
+  private final int stripe;
+  /** tasks submitted to the stripe that have not completed yet, including a running one */
+  private final int queueDepth;
+  /** how long the most recently started task waited in the queue */
+  private final long lagMillis;
+  private final long completedCount;
+}
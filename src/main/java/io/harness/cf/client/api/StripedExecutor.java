@@ -0,0 +1,88 @@
+package io.harness.cf.client.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+
+/**
+ * StripedExecutor runs tasks on a fixed number of single threaded stripes. Tasks with the same key
+ * always run on the same stripe, so they run one at a time in submission order, while tasks with
+ * different keys run in parallel on different stripes.
+ */
+final class StripedExecutor {
+
+  private final Stripe[] stripes;
+
+  StripedExecutor(int stripeCount, @NonNull String threadName) {
+    if (stripeCount < 1) {
+      throw new IllegalArgumentException("stripeCount must be at least 1");
+    }
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(threadName + "-" + i);
+    }
+  }
+
+  void execute(@NonNull Object key, @NonNull Runnable task) {
+    final Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+    final long submitted = System.nanoTime();
+    stripe.queued.incrementAndGet();
+    try {
+      stripe.executor.execute(
+          () -> {
+            stripe.lagNanos.set(System.nanoTime() - submitted);
+            try {
+              task.run();
+            } finally {
+              stripe.queued.decrementAndGet();
+              stripe.completed.incrementAndGet();
+            }
+          });
+    } catch (RuntimeException e) {
+      stripe.queued.decrementAndGet();
+      throw e;
+    }
+  }
+
+  List<StripeStats> stats() {
+    final List<StripeStats> stats = new ArrayList<>(stripes.length);
+    for (int i = 0; i < stripes.length; i++) {
+      final Stripe stripe = stripes[i];
+      stats.add(
+          new StripeStats(
+              i,
+              stripe.queued.get(),
+              TimeUnit.NANOSECONDS.toMillis(stripe.lagNanos.get()),
+              stripe.completed.get()));
+    }
+    return stats;
+  }
+
+  void shutdownNow() {
+    for (Stripe stripe : stripes) {
+      stripe.executor.shutdownNow();
+    }
+  }
+
+  private static final class Stripe {
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong lagNanos = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final ExecutorService executor;
+
+    private Stripe(String threadName) {
+      executor =
+          Executors.newSingleThreadExecutor(
+              r -> {
+                final Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package io.harness.cf.client.api;
+
+import io.harness.cf.client.dto.Target;
+import io.harness.cf.model.Variation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Result of a batch evaluation for one target, variation is null if the flag was not evaluated */
+@AllArgsConstructor
+@Data
+public class TargetEvaluation {
+  private final Target target;
+  private final Variation variation;
+}
@@ -0,0 +1,23 @@
+package io.harness.cf.client.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Size of the identifier indexes built from the variation target maps of flags and the include
+ * and exclude lists of segments
+ */
+@AllArgsConstructor
+@Data
+public class TargetIndexStats {
+  private final int flagCount;
+  /** targets listed in variation target maps, across all flags */
+  private final long flagTargetCount;
+
+  private final int segmentCount;
+  /** targets listed in include and exclude lists, across all segments */
+  private final long segmentTargetCount;
+
+  /** approximate retained size of all indexes in bytes */
+  private final long estimatedBytes;
+}
@@ -7,8 +7,13 @@ import io.harness.cf.client.connector.Updater;
 import io.harness.cf.client.dto.Message;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.Segment;
-import java.util.concurrent.ExecutorService;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -17,7 +22,19 @@ class UpdateProcessor implements AutoCloseable {
   private final Connector connector;
   private final Repository repository;
   private final Updater updater;
-  private final ExecutorService executor = Executors.newFixedThreadPool(10);
+  private final long debounceMillis;
+  // events for one flag or segment are applied in arrival order on the same stripe
+  private final StripedExecutor executor = new StripedExecutor(10, "StreamUpdateThread");
+  // only started once an update is debounced, guarded by this
+  private ScheduledExecutorService debounceScheduler;
+  private boolean closed;
+
+  /**
+   * Latest unprocessed message per domain and identifier. A key is present from the first message
+   * until its fetch completes, messages arriving meanwhile replace the entry and cause a single
+   * re-fetch once the running one finishes.
+   */
+  private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
 
   private Service stream;
 
@@ -27,9 +44,18 @@ class UpdateProcessor implements AutoCloseable {
       @NonNull final Connector connector,
       @NonNull final Repository repository,
       @NonNull final Updater callback) {
+    this(connector, repository, callback, 0);
+  }
+
+  public UpdateProcessor(
+      @NonNull final Connector connector,
+      @NonNull final Repository repository,
+      @NonNull final Updater callback,
+      final long debounceMillis) {
     this.connector = connector;
     this.repository = repository;
     this.updater = callback;
+    this.debounceMillis = Math.max(debounceMillis, 0);
     log.debug("Update processor initialized");
   }
 
@@ -75,15 +101,86 @@ class UpdateProcessor implements AutoCloseable {
   }
 
   public void update(@NonNull final Message message) {
+    if (!message.getDomain().equals("flag") && !message.getDomain().equals("target-segment")) {
+      return;
+    }
 
+    final String key = message.getDomain() + '/' + message.getIdentifier();
+    final Pending next = new Pending(message);
+    if (pending.put(key, next) == null) {
+      log.debug("schedule update for {} with message {}", key, message);
+      schedule(key, next);
+    } else {
+      log.debug("merged message {} into the pending update for {}", message, key);
+    }
+  }
+
+  private void schedule(final String key, final Pending current) {
+    try {
+      if (debounceMillis == 0) {
+        executor.execute(key, () -> drain(key));
+      } else {
+        // the executor may be closed by the time the delay has passed
+        debounceScheduler()
+            .schedule(
+                () -> {
+                  try {
+                    executor.execute(key, () -> drain(key));
+                  } catch (RejectedExecutionException e) {
+                    dropped(key, current);
+                  }
+                },
+                debounceMillis,
+                TimeUnit.MILLISECONDS);
+      }
+    } catch (RejectedExecutionException e) {
+      dropped(key, current);
+    }
+  }
+
+  private void dropped(final String key, final Pending current) {
+    log.debug("update for {} dropped, the processor is closed", key);
+    pending.remove(key, current);
+  }
+
+  private synchronized ScheduledExecutorService debounceScheduler() {
+    if (closed) {
+      throw new RejectedExecutionException("UpdateProcessor is closed");
+    }
+    if (debounceScheduler == null) {
+      debounceScheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                final Thread thread = new Thread(r, "StreamDebounceThread");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return debounceScheduler;
+  }
+
+  List<StripeStats> getStats() {
+    return executor.stats();
+  }
+
+  // processes the latest message for the key, and again if another one arrived while it ran
+  private void drain(final String key) {
+    final Pending current = pending.get(key);
+    if (current == null) {
+      return;
+    }
+
+    final Message message = current.message;
     if (message.getDomain().equals("flag")) {
       log.debug("execute processFlag with message {}", message);
-      executor.submit(processFlag(message));
+      processFlag(message).run();
+    } else {
+      log.debug("execute processSegment with message {}", message);
+      processSegment(message).run();
     }
 
-    if (message.getDomain().equals("target-segment")) {
-      log.debug("execute processSegment with message {}", message);
-      executor.submit(processSegment(message));
+    if (!pending.remove(key, current)) {
+      schedule(key, pending.get(key));
     }
   }
 
@@ -145,6 +242,12 @@ class UpdateProcessor implements AutoCloseable {
       }
     }
 
+    synchronized (this) {
+      closed = true;
+      if (debounceScheduler != null) {
+        debounceScheduler.shutdownNow();
+      }
+    }
     executor.shutdownNow();
     log.debug("UpdateProcessor closed");
   }
@@ -154,4 +257,10 @@ class UpdateProcessor implements AutoCloseable {
     stop();
     start();
   }
+
+  // compared by identity, so that a newer but equal message still triggers a re-fetch
+  @AllArgsConstructor
+  private static final class Pending {
+    private final Message message;
+  }
 }
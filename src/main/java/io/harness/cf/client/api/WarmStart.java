@@ -0,0 +1,204 @@
+package io.harness.cf.client.api;
+
+import static io.harness.cf.client.common.Utils.shutdownExecutorService;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WarmStart persists a last known good copy of all flags and segments to a local file and loads it
+ * into the repository when the SDK starts, so evaluations are served from it before the first
+ * fetch from the server completes. That fetch replaces the repository contents, removing entries
+ * that only exist in the file. The file is only rewritten from data received from the server.
+ */
+@Slf4j
+final class WarmStart {
+
+  private static final Gson GSON = new Gson();
+
+  /** The persisted form of the file */
+  static final class Snapshot {
+    long createdAt;
+    List<FeatureConfig> flags;
+    List<Segment> segments;
+  }
+
+  private final Path file;
+  private final Repository repository;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicBoolean changed = new AtomicBoolean();
+
+  /** creation time of the loaded snapshot, 0 once the server data replaced it */
+  private volatile long loadedSnapshotCreatedAt;
+
+  private volatile boolean reconciled;
+
+  WarmStart(@NonNull Path file, @NonNull Repository repository, int writeIntervalSeconds) {
+    this.file = file;
+    this.repository = repository;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "WarmStartWriter");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::writeIfChanged, writeIntervalSeconds, writeIntervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Loads the file into the repository, if it exists and can be read */
+  synchronized void load() {
+    final Snapshot snapshot;
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      snapshot = GSON.fromJson(reader, Snapshot.class);
+    } catch (NoSuchFileException e) {
+      log.info("No warm start file found at {}", file);
+      return;
+    } catch (IOException | JsonParseException e) {
+      log.warn("Warm start file {} could not be read: {}", file, e.getMessage());
+      return;
+    }
+    if (snapshot == null || reconciled) {
+      return;
+    }
+
+    final List<FeatureConfig> flags = new ArrayList<>();
+    final Set<String> flagIdentifiers = new HashSet<>();
+    if (snapshot.flags != null) {
+      for (FeatureConfig flag : snapshot.flags) {
+        if (flag != null && flag.getFeature() != null && flagIdentifiers.add(flag.getFeature())) {
+          flags.add(flag);
+        }
+      }
+    }
+    final List<Segment> segments = new ArrayList<>();
+    final Set<String> segmentIdentifiers = new HashSet<>();
+    if (snapshot.segments != null) {
+      for (Segment segment : snapshot.segments) {
+        if (segment != null
+            && segment.getIdentifier() != null
+            && segmentIdentifiers.add(segment.getIdentifier())) {
+          segments.add(segment);
+        }
+      }
+    }
+    final int loadedFlags = flags.size();
+    final int loadedSegments = segments.size();
+
+    // entries are only added here, the first fetch removes those the server no longer has, so
+    // whatever the repository already holds is passed along and kept
+    for (String identifier : repository.getAllFeatureIdentifiers("")) {
+      if (!flagIdentifiers.contains(identifier)) {
+        repository.getFlag(identifier).ifPresent(flags::add);
+      }
+    }
+    for (String identifier : repository.getAllSegmentIdentifiers()) {
+      if (!segmentIdentifiers.contains(identifier)) {
+        repository.getSegment(identifier).ifPresent(segments::add);
+      }
+    }
+    repository.replaceAll(flags, segments);
+    loadedSnapshotCreatedAt = snapshot.createdAt;
+    log.info(
+        "Warm start loaded {} flags and {} segments from {}, age {}",
+        loadedFlags,
+        loadedSegments,
+        file,
+        getSnapshotAge().orElse(Duration.ZERO));
+  }
+
+  /** Called once the complete result of a fetch from the server replaced the loaded entries */
+  synchronized void reconcile() {
+    changed.set(true);
+    if (reconciled) {
+      return;
+    }
+    reconciled = true;
+    loadedSnapshotCreatedAt = 0;
+    log.debug("Warm start replaced by server data");
+  }
+
+  /** Marks the repository as changed so that the file is rewritten on the next interval */
+  void onChanged() {
+    if (reconciled) {
+      changed.set(true);
+    }
+  }
+
+  /** Age of the loaded snapshot while evaluations are served from it, empty otherwise */
+  Optional<Duration> getSnapshotAge() {
+    final long createdAt = loadedSnapshotCreatedAt;
+    if (createdAt <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - createdAt)));
+  }
+
+  void close() {
+    shutdownExecutorService(
+        scheduler,
+        () -> log.debug("Warm start writer stopped"),
+        errMsg -> log.warn("failed to stop warm start writer: {}", errMsg));
+    writeIfChanged();
+  }
+
+  private void writeIfChanged() {
+    if (!reconciled || !changed.getAndSet(false)) {
+      return;
+    }
+    try {
+      write();
+    } catch (Exception e) {
+      changed.set(true);
+      log.warn("Warm start file {} could not be written: {}", file, e.getMessage());
+    }
+  }
+
+  private void write() throws IOException {
+    final Snapshot snapshot = new Snapshot();
+    snapshot.createdAt = System.currentTimeMillis();
+    snapshot.flags = new ArrayList<>();
+    for (String identifier : repository.getAllFeatureIdentifiers("")) {
+      repository.getFlag(identifier).ifPresent(snapshot.flags::add);
+    }
+    snapshot.segments = new ArrayList<>();
+    for (String identifier : repository.getAllSegmentIdentifiers()) {
+      repository.getSegment(identifier).ifPresent(snapshot.segments::add);
+    }
+
+    // write next to the target and move it in place, so a crash never leaves a partial file
+    final Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      GSON.toJson(snapshot, writer);
+    }
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    log.debug(
+        "Warm start file {} written with {} flags and {} segments",
+        file,
+        snapshot.flags.size(),
+        snapshot.segments.size());
+  }
+}
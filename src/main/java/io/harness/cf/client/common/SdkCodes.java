@@ -6,6 +6,7 @@ import static java.util.Optional.*;
 import io.harness.cf.client.api.BaseConfig;
 import io.harness.cf.client.dto.Target;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -88,6 +89,16 @@ public class SdkCodes {
     log.warn(sdkErrMsg(6002, of(msg)));
   }
 
+  public static void warnInvalidMatchRegex(String clauseId, String regex, String reason) {
+    String msg = String.format("clause=%s, regex=%s, reason=%s", clauseId, regex, reason);
+    log.warn(sdkErrMsg(6003, of(msg)));
+  }
+
+  public static void warnPrerequisiteCycle(String flag, List<String> cycle) {
+    String msg = String.format("flag=%s, cycle=%s", flag, String.join(" -> ", cycle));
+    log.warn(sdkErrMsg(6004, of(msg)));
+  }
+
   private static final Map<Integer, String> MAP =
       Arrays.stream(
               new String[][] {
@@ -120,6 +131,8 @@ public class SdkCodes {
                   "6002",
                   "BucketBy attribute not found in target attributes, falling back to 'identifier':"
                 },
+                {"6003", "Invalid regex in match clause, the clause will never match:"},
+                {"6004", "Prerequisite cycle detected, prerequisites on the cycle will fail:"},
                 // SDK_METRICS_7xxx
                 {"7000", "Metrics thread started, intervalMs:"},
                 {"7001", "Metrics thread exited"},
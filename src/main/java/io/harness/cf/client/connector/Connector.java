@@ -4,6 +4,7 @@ import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.Metrics;
 import io.harness.cf.model.Segment;
 import java.util.List;
+import java.util.function.Consumer;
 import lombok.NonNull;
 
 public interface Connector {
@@ -22,6 +23,32 @@ public interface Connector {
 
   List<Segment> getSegments() throws ConnectorException;
 
+  /**
+   * Hands every flag to the consumer as soon as it is parsed from the response, so the raw response
+   * body does not have to be buffered before parsing. Whether the parsed flags are kept is up to
+   * the consumer. The default implementation fetches the complete list first.
+   *
+   * @return false if the flags are unchanged since the previous call, nothing is handed to the
+   *     consumer then
+   */
+  default boolean streamFlags(@NonNull Consumer<FeatureConfig> consumer)
+      throws ConnectorException {
+    getFlags().forEach(consumer);
+    return true;
+  }
+
+  /** Same as {@link #streamFlags(Consumer)} for segments */
+  default boolean streamSegments(@NonNull Consumer<Segment> consumer) throws ConnectorException {
+    getSegments().forEach(consumer);
+    return true;
+  }
+
+  /**
+   * Forgets what identified the previous list responses, so the next {@link #streamFlags} and
+   * {@link #streamSegments} calls hand every entry to the consumer again
+   */
+  default void clearListValidators() {}
+
   Segment getSegment(@NonNull String identifier) throws ConnectorException;
 
   void postMetrics(Metrics metrics) throws ConnectorException;
@@ -1,6 +1,8 @@
 package io.harness.cf.client.connector;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import io.harness.cf.ApiClient;
 import io.harness.cf.ApiException;
 import io.harness.cf.api.ClientApi;
@@ -12,18 +14,30 @@ import io.harness.cf.client.logger.LogUtil;
 import io.harness.cf.model.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.slf4j.MDC;
 
 @Slf4j
@@ -49,6 +63,9 @@ public class HarnessConnector implements Connector, AutoCloseable {
 
   private final Gson gson = new Gson();
 
+  /** validators of the last flag and segment list responses by request URL */
+  private final Map<String, ListValidator> validators = new ConcurrentHashMap<>();
+
   static {
     LogUtil.setSystemProps();
   }
@@ -356,6 +373,170 @@ public class HarnessConnector implements Connector, AutoCloseable {
     }
   }
 
+  @Override
+  public boolean streamFlags(@NonNull final Consumer<FeatureConfig> consumer)
+      throws ConnectorException {
+    final String requestId = UUID.randomUUID().toString();
+    MDC.put(REQUEST_ID_KEY, requestId);
+    log.debug("Streaming flags on env {} and cluster {}", this.environmentUuid, this.cluster);
+    try {
+      final boolean modified =
+          streamArray(
+              api.getFeatureConfigCall(environmentUuid, cluster, null),
+              FeatureConfig.class,
+              consumer);
+      log.debug(
+          "Flags {} on env {} and cluster {}",
+          modified ? "fetched" : "not modified",
+          this.environmentUuid,
+          this.cluster);
+      return modified;
+    } catch (ApiException e) {
+      log.error(
+          "Exception was raised while fetching the flags on env {} and cluster {}",
+          this.environmentUuid,
+          this.cluster,
+          e);
+      throw new ConnectorException(e.getMessage(), e.getCode(), e.getMessage(), e);
+    } finally {
+      MDC.remove(REQUEST_ID_KEY);
+    }
+  }
+
+  @Override
+  public boolean streamSegments(@NonNull final Consumer<Segment> consumer)
+      throws ConnectorException {
+    final String requestId = UUID.randomUUID().toString();
+    MDC.put(REQUEST_ID_KEY, requestId);
+    log.debug(
+        "Streaming target groups on environment {} and cluster {}",
+        this.environmentUuid,
+        this.cluster);
+    try {
+      final boolean modified =
+          streamArray(
+              api.getAllSegmentsCall(environmentUuid, cluster, "v2", null),
+              Segment.class,
+              consumer);
+      log.debug(
+          "Target groups {} on env {} and cluster {}",
+          modified ? "fetched" : "not modified",
+          this.environmentUuid,
+          this.cluster);
+      return modified;
+    } catch (ApiException e) {
+      log.error(
+          "Exception was raised while fetching the target groups on env {} and cluster {} : httpCode={} message={}",
+          this.environmentUuid,
+          this.cluster,
+          e.getCode(),
+          e.getMessage(),
+          e);
+      throw new ConnectorException(e.getMessage(), e.getCode(), e.getMessage(), e);
+    } finally {
+      MDC.remove(REQUEST_ID_KEY);
+    }
+  }
+
+  /**
+   * Executes a call returning a JSON array and parses the body one element at a time. If the
+   * previous response for the same URL carried an ETag the request is made conditional, and a 304
+   * skips parsing. Responses without an ETag are hashed while they are copied to a temporary file,
+   * and only parsed from that file when the hash differs from the previous response. The body is
+   * never held in memory, and an unchanged body is never deserialized.
+   *
+   * @return false if the list is unchanged and nothing was handed to the consumer
+   */
+  private <T> boolean streamArray(Call call, Class<T> type, Consumer<T> consumer)
+      throws ApiException {
+    final String url = call.request().url().toString();
+    final ListValidator previous = validators.get(url);
+    if (previous != null && previous.etag != null) {
+      call =
+          api.getApiClient()
+              .getHttpClient()
+              .newCall(call.request().newBuilder().header("If-None-Match", previous.etag).build());
+    }
+
+    try (Response response = call.execute()) {
+      final ResponseBody body = response.body();
+      if (response.code() == 304 && previous != null) {
+        return false;
+      }
+      if (!response.isSuccessful() || body == null) {
+        throw new ApiException(
+            response.message(),
+            response.code(),
+            response.headers().toMultimap(),
+            body == null ? null : body.string());
+      }
+
+      final String etag = response.header("ETag");
+      if (etag != null) {
+        parseArray(body.charStream(), type, consumer, url);
+        validators.put(url, new ListValidator(etag, null));
+        return true;
+      }
+
+      final MediaType contentType = body.contentType();
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final Path spooled = Files.createTempFile("ff-list", ".json");
+      try {
+        try (InputStream hashed = new DigestInputStream(body.byteStream(), digest)) {
+          Files.copy(hashed, spooled, StandardCopyOption.REPLACE_EXISTING);
+        }
+        final byte[] hash = digest.digest();
+        if (previous != null
+            && previous.hash != null
+            && MessageDigest.isEqual(previous.hash, hash)) {
+          return false;
+        }
+        try (Reader reader =
+            new InputStreamReader(
+                Files.newInputStream(spooled),
+                contentType == null
+                    ? StandardCharsets.UTF_8
+                    : contentType.charset(StandardCharsets.UTF_8))) {
+          parseArray(reader, type, consumer, url);
+        }
+        validators.put(url, new ListValidator(null, hash));
+        return true;
+      } finally {
+        Files.deleteIfExists(spooled);
+      }
+    } catch (IOException | JsonParseException | NoSuchAlgorithmException e) {
+      throw new ApiException(e);
+    }
+  }
+
+  private <T> void parseArray(Reader body, Class<T> type, Consumer<T> consumer, String url)
+      throws IOException {
+    final Gson json = api.getApiClient().getJSON().getGson();
+    int count = 0;
+    // the body is owned and closed by the caller
+    final JsonReader reader = new JsonReader(body);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      consumer.accept(json.fromJson(reader, type));
+      count++;
+    }
+    reader.endArray();
+    log.debug("Parsed {} entries from {}", count, url);
+  }
+
+  @Override
+  public void clearListValidators() {
+    validators.clear();
+    log.debug("List validators cleared");
+  }
+
+  /** What identifies the last list response received from a URL */
+  @AllArgsConstructor
+  private static final class ListValidator {
+    private final String etag;
+    private final byte[] hash;
+  }
+
   @Override
   public Segment getSegment(@NonNull final String identifier) throws ConnectorException {
     final String requestId = UUID.randomUUID().toString();
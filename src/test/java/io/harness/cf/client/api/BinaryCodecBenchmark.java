@@ -0,0 +1,151 @@
+package io.harness.cf.client.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ How to run it.
+ ./gradlew clean build
+ ./gradlew jmh
+
+ Compares encoding and decoding a flag set built from the local test cases (percentage rollouts,
+ segment rules, and/or rules and prerequisites) with BinaryCodec and with Gson. The encoded size of
+ the whole set in both formats is printed once during setup.
+*/
+
+@State(Scope.Thread)
+public class BinaryCodecBenchmark {
+
+  private static final int FlagSetSize = 5000;
+
+  private final Gson gson = new Gson();
+  private List<FeatureConfig> flags;
+  private List<Segment> segments;
+  private List<byte[]> binaryFlags;
+  private List<byte[]> binarySegments;
+  private List<String> jsonFlags;
+  private List<String> jsonSegments;
+
+  @Setup
+  public void setup() throws Exception {
+    final List<FeatureConfig> templates = new ArrayList<>();
+    templates.add(new TestUtils().GetFeatureConfigFromFile());
+    templates.addAll(loadFlags("local-test-cases/percentage-rollout-with-zero-weights.json"));
+    templates.addAll(loadFlags("local-test-cases/v2-andor-flags.json"));
+    templates.addAll(loadFlags("local-test-cases/pre-req-id-and-value-differ.json"));
+    final List<Segment> segmentTemplates =
+        gson.fromJson(
+            TestUtils.getJsonResource("local-test-cases/v2-andor-segments.json"),
+            new TypeToken<List<Segment>>() {}.getType());
+
+    flags = new ArrayList<>(FlagSetSize);
+    segments = new ArrayList<>(FlagSetSize / 10);
+    for (int i = 0; i < FlagSetSize; i++) {
+      final FeatureConfig flag =
+          gson.fromJson(gson.toJson(templates.get(i % templates.size())), FeatureConfig.class);
+      flag.setFeature(flag.getFeature() + i);
+      flag.setVersion((long) i);
+      flags.add(flag);
+    }
+    for (int i = 0; i < FlagSetSize / 10; i++) {
+      final Segment segment =
+          gson.fromJson(
+              gson.toJson(segmentTemplates.get(i % segmentTemplates.size())), Segment.class);
+      segment.setIdentifier(segment.getIdentifier() + i);
+      segments.add(segment);
+    }
+
+    binaryFlags = new ArrayList<>();
+    jsonFlags = new ArrayList<>();
+    binarySegments = new ArrayList<>();
+    jsonSegments = new ArrayList<>();
+    long binarySize = 0;
+    long jsonSize = 0;
+    for (FeatureConfig flag : flags) {
+      binaryFlags.add(BinaryCodec.encode(flag));
+      jsonFlags.add(gson.toJson(flag));
+    }
+    for (Segment segment : segments) {
+      binarySegments.add(BinaryCodec.encode(segment));
+      jsonSegments.add(gson.toJson(segment));
+    }
+    for (int i = 0; i < binaryFlags.size(); i++) {
+      binarySize += binaryFlags.get(i).length;
+      jsonSize += jsonFlags.get(i).getBytes(UTF_8).length;
+    }
+    for (int i = 0; i < binarySegments.size(); i++) {
+      binarySize += binarySegments.get(i).length;
+      jsonSize += jsonSegments.get(i).getBytes(UTF_8).length;
+    }
+    System.out.printf(
+        "%d flags and %d segments: binary %d bytes, json %d bytes%n",
+        flags.size(), segments.size(), binarySize, jsonSize);
+  }
+
+  private List<FeatureConfig> loadFlags(String resource) throws Exception {
+    return gson.fromJson(
+        TestUtils.getJsonResource(resource), new TypeToken<List<FeatureConfig>>() {}.getType());
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkEncodeBinary(Blackhole blackhole) {
+    for (FeatureConfig flag : flags) {
+      blackhole.consume(BinaryCodec.encode(flag));
+    }
+    for (Segment segment : segments) {
+      blackhole.consume(BinaryCodec.encode(segment));
+    }
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkEncodeGson(Blackhole blackhole) {
+    for (FeatureConfig flag : flags) {
+      blackhole.consume(gson.toJson(flag).getBytes(UTF_8));
+    }
+    for (Segment segment : segments) {
+      blackhole.consume(gson.toJson(segment).getBytes(UTF_8));
+    }
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkDecodeBinary(Blackhole blackhole) {
+    for (byte[] flag : binaryFlags) {
+      blackhole.consume(BinaryCodec.decode(ByteBuffer.wrap(flag), FeatureConfig.class));
+    }
+    for (byte[] segment : binarySegments) {
+      blackhole.consume(BinaryCodec.decode(ByteBuffer.wrap(segment), Segment.class));
+    }
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkDecodeGson(Blackhole blackhole) {
+    for (String flag : jsonFlags) {
+      blackhole.consume(gson.fromJson(flag, FeatureConfig.class));
+    }
+    for (String segment : jsonSegments) {
+      blackhole.consume(gson.fromJson(segment, Segment.class));
+    }
+  }
+}
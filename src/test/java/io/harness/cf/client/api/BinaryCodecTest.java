@@ -0,0 +1,92 @@
+package io.harness.cf.client.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.Segment;
+import io.harness.cf.model.Target;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BinaryCodecTest {
+
+  private final Gson gson = new Gson();
+
+  @Test
+  void shouldRoundTripFlagsAndSegments() throws Exception {
+    final List<FeatureConfig> flags =
+        gson.fromJson(
+            TestUtils.getJsonResource("local-test-cases/v2-andor-flags.json"),
+            new TypeToken<List<FeatureConfig>>() {}.getType());
+    final List<Segment> segments =
+        gson.fromJson(
+            TestUtils.getJsonResource("local-test-cases/v2-andor-segments.json"),
+            new TypeToken<List<Segment>>() {}.getType());
+
+    for (FeatureConfig flag : flags) {
+      final byte[] encoded = BinaryCodec.encode(flag);
+      assertEquals(flag, BinaryCodec.decode(ByteBuffer.wrap(encoded), FeatureConfig.class));
+      assertTrue(encoded.length < gson.toJson(flag).getBytes(UTF_8).length);
+    }
+    for (Segment segment : segments) {
+      final byte[] encoded = BinaryCodec.encode(segment);
+      assertEquals(segment, BinaryCodec.decode(ByteBuffer.wrap(encoded), Segment.class));
+    }
+  }
+
+  @Test
+  void shouldRoundTripSnapshotsAndTargetsFromDirectBuffers() {
+    final Target target = new Target();
+    target.setIdentifier("target");
+    target.setAnonymous(false);
+    target.setCreatedAt(-1L);
+    target.setAttributes(Collections.singletonMap("email", "user@harness.io"));
+    final Segment segment =
+        Segment.builder()
+            .identifier("segment")
+            .included(Collections.singletonList(target))
+            .version(Long.MAX_VALUE)
+            .build();
+    final FeatureSnapshot snapshot = new FeatureSnapshot();
+    snapshot.setCurrent(FeatureConfig.builder().feature("flag").version(2L).build());
+
+    final byte[] encodedSegment = BinaryCodec.encode(segment);
+    final ByteBuffer direct = ByteBuffer.allocateDirect(encodedSegment.length + 1);
+    direct.put((byte) 0).put(encodedSegment).flip();
+    direct.get();
+
+    final Segment decoded = BinaryCodec.decode(direct, Segment.class);
+    assertEquals(1, direct.position());
+    assertEquals(Long.MAX_VALUE, decoded.getVersion());
+    final Target decodedTarget = decoded.getIncluded().get(0);
+    assertEquals("target", decodedTarget.getIdentifier());
+    assertEquals(-1L, decodedTarget.getCreatedAt());
+    assertEquals("{\"email\":\"user@harness.io\"}", gson.toJson(decodedTarget.getAttributes()));
+
+    final FeatureSnapshot decodedSnapshot =
+        BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(snapshot)), FeatureSnapshot.class);
+    assertEquals(2L, decodedSnapshot.getCurrent().getVersion());
+    assertNull(decodedSnapshot.getPrevious());
+  }
+
+  @Test
+  void shouldRejectUnknownVersionsAndTruncatedValues() {
+    final byte[] encoded = BinaryCodec.encode(FeatureConfig.builder().feature("flag").build());
+
+    final byte[] truncated = new byte[encoded.length - 1];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    assertThrows(
+        IllegalArgumentException.class, () -> BinaryCodec.decode(ByteBuffer.wrap(truncated)));
+
+    encoded[2] = (byte) (BinaryCodec.FORMAT_VERSION + 1);
+    assertThrows(
+        IllegalArgumentException.class, () -> BinaryCodec.decode(ByteBuffer.wrap(encoded)));
+    assertThrows(IllegalArgumentException.class, () -> BinaryCodec.encode((Object) "value"));
+  }
+}
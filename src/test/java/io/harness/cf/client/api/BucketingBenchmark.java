@@ -0,0 +1,50 @@
+package io.harness.cf.client.api;
+
+import com.sangupta.murmur.Murmur3;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ How to run it.
+ ./gradlew clean build
+ ./gradlew jmh
+
+ Run with the GC profiler (-prof gc) to compare allocations. BenchmarkLegacyBucket allocates the
+ joined string and its byte array on every call, BenchmarkBucket reuses a per thread buffer.
+
+ Results with -prof gc on OpenJDK 17.0.9, 1 fork, 3x2s warmup, 5x2s measurement:
+
+ Benchmark              value                                          ns/op  gc.alloc.rate.norm
+ BenchmarkBucket        user@harness.io                          69.9 +- 8.7        0.00002 B/op
+ BenchmarkBucket        4f1b0c2e-8f5d-4a44-9a43-6f1a1c9d2b7e   124.8 +- 44.0        0.00003 B/op
+ BenchmarkLegacyBucket  user@harness.io                        114.7 +- 59.2            168 B/op
+ BenchmarkLegacyBucket  4f1b0c2e-8f5d-4a44-9a43-6f1a1c9d2b7e   136.7 +- 42.7            200 B/op
+*/
+
+@State(Scope.Thread)
+public class BucketingBenchmark {
+
+  @Param({"user@harness.io", "4f1b0c2e-8f5d-4a44-9a43-6f1a1c9d2b7e"})
+  public String value;
+
+  private final String bucketBy = "identifier";
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public int BenchmarkBucket() {
+    return Bucketing.bucket(bucketBy, value);
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public int BenchmarkLegacyBucket() {
+    // previous implementation of Evaluator.getNormalizedNumber
+    byte[] bytes = String.join(":", bucketBy, value).getBytes();
+    long hasher = Murmur3.hash_x86_32(bytes, bytes.length, 0);
+    return (int) (hasher % Evaluator.ONE_HUNDRED) + 1;
+  }
+}
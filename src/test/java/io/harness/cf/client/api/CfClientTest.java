@@ -7,14 +7,25 @@ import static io.harness.cf.client.api.dispatchers.Endpoints.STREAM_ENDPOINT;
 import static io.harness.cf.client.connector.HarnessConnectorUtils.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.harness.cf.client.api.dispatchers.*;
 import io.harness.cf.client.api.testutils.DummyConnector;
 import io.harness.cf.client.common.Cache;
+import io.harness.cf.client.connector.Connector;
 import io.harness.cf.client.dto.Target;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.FeatureState;
+import io.harness.cf.model.Serve;
+import io.harness.cf.model.Variation;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -278,13 +289,8 @@ class CfClientTest {
             .streamEnabled(false)
             .build();
 
-    MockResponse mockedAuthResponse =
-        makeMockJsonResponse(200, "{\"authToken\": \"" + makeDummyJwtToken() + "\"}");
-    MockResponse mockedFlagsResponse = makeMockJsonResponse(200, makeBasicFeatureJson());
-    MockResponse mockedSegmentResponse = makeMockJsonResponse(200, makeSegmentsJson());
-    mockWebServer.enqueue(mockedAuthResponse);
-    mockWebServer.enqueue(mockedFlagsResponse);
-    mockWebServer.enqueue(mockedSegmentResponse);
+    // flags and segments are fetched in parallel, so responses are matched by path, not by order
+    mockWebServer.setDispatcher(new TestWebServerDispatcher());
     mockWebServer.start();
 
     try (CfClient client =
@@ -440,6 +446,99 @@ class CfClientTest {
     }
   }
 
+  @Test
+  void shouldStreamAndExportFeatureSnapshots() throws Exception {
+    final Connector connector =
+        new DummyConnector() {
+          @Override
+          public List<FeatureConfig> getFlags() {
+            return Arrays.asList(
+                FeatureConfig.builder().feature("team-a.one").version(1L).build(),
+                FeatureConfig.builder().feature("team-a.two").version(1L).build(),
+                FeatureConfig.builder().feature("other").version(1L).build());
+          }
+        };
+    BaseConfig config = BaseConfig.builder().analyticsEnabled(false).streamEnabled(false).build();
+
+    try (final CfClient client = new CfClient(connector, config)) {
+      client.waitForInitialization();
+
+      assertEquals(2, client.streamAllFeatureSnapshots("team-a.", false).count());
+      assertEquals(3, client.streamAllFeatureSnapshots("", true).count());
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(3, client.exportAllFeatureSnapshots("", out, true));
+      final String[] lines = out.toString("UTF-8").split("\n");
+      assertEquals(3, lines.length);
+      for (String line : lines) {
+        assertNotNull(new Gson().fromJson(line, FeatureSnapshot.class).getCurrent());
+      }
+    }
+  }
+
+  @Test
+  void shouldServeFromWarmStartFileUntilFirstFetch() throws Exception {
+    final File file = File.createTempFile(CfClientTest.class.getSimpleName(), ".json");
+    assertTrue(file.delete());
+    file.deleteOnExit();
+    final BaseConfig config =
+        BaseConfig.builder()
+            .analyticsEnabled(false)
+            .streamEnabled(false)
+            .warmStartFile(file.getAbsolutePath())
+            .build();
+
+    final FeatureConfig flag =
+        FeatureConfig.builder()
+            .feature("warm")
+            .version(1L)
+            .kind(FeatureConfig.KindEnum.BOOLEAN)
+            .state(FeatureState.ON)
+            .variations(
+                Arrays.asList(
+                    Variation.builder().identifier("true").value("true").build(),
+                    Variation.builder().identifier("false").value("false").build()))
+            .offVariation("false")
+            .defaultServe(Serve.builder().variation("true").build())
+            .build();
+    final Connector online =
+        new DummyConnector() {
+          @Override
+          public List<FeatureConfig> getFlags() {
+            return Collections.singletonList(flag);
+          }
+        };
+    try (final CfClient client = new CfClient(online, config)) {
+      client.waitForInitialization();
+      assertFalse(client.getWarmStartSnapshotAge().isPresent());
+    }
+    assertTrue(file.exists());
+
+    // the server no longer has the flag and is slow to answer
+    final CountDownLatch fetch = new CountDownLatch(1);
+    final Connector slow =
+        new DummyConnector() {
+          @Override
+          public List<FeatureConfig> getFlags() {
+            try {
+              fetch.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return Collections.emptyList();
+          }
+        };
+    try (final CfClient client = new CfClient(slow, config)) {
+      assertTrue(client.getWarmStartSnapshotAge().isPresent());
+      assertTrue(client.boolVariation("warm", target, false));
+
+      fetch.countDown();
+      client.waitForInitialization();
+      assertFalse(client.getWarmStartSnapshotAge().isPresent());
+      assertFalse(client.boolVariation("warm", target, false));
+    }
+  }
+
   @Test
   void shouldRetryThenReAuthenticateWithoutThrowingIllegalStateException() throws Exception {
     BaseConfig config =
@@ -4,17 +4,29 @@ import static io.harness.cf.client.api.Operators.*;
 import static io.harness.cf.client.api.TestUtils.getJsonResource;
 import static io.harness.cf.model.FeatureConfig.KindEnum.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
+import com.sangupta.murmur.Murmur3;
 import io.harness.cf.JSON;
+import io.harness.cf.client.common.SdkCodes;
 import io.harness.cf.client.dto.Target;
 import io.harness.cf.model.*;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +36,7 @@ import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mockito;
+import org.slf4j.LoggerFactory;
 
 @Slf4j
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -128,6 +141,34 @@ public class EvaluatorTest {
     assertEquals(57, bucket);
   }
 
+  @Test
+  public void shouldBucketIdenticallyToStringEncoding() {
+    final String[] values = {
+      "",
+      "test",
+      "user@harness.io",
+      "\u00fcn\u00efc\u00f8d\u00e9",
+      "\u65e5\u672c\u8a9e",
+      "emoji-\uD83D\uDE00",
+      "lone-\uD800-x",
+      "\uDC00"
+    };
+    for (String value : values) {
+      final byte[] bytes = ("identifier:" + value).getBytes(StandardCharsets.UTF_8);
+      final long hash = Murmur3.hash_x86_32(bytes, bytes.length, 0);
+      assertEquals((int) (hash % Evaluator.ONE_HUNDRED) + 1, Bucketing.bucket("identifier", value));
+    }
+
+    final StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      large.append('\u00e9');
+    }
+    final byte[] bytes = ("email:" + large).getBytes(StandardCharsets.UTF_8);
+    final long hash = Murmur3.hash_x86_32(bytes, bytes.length, 0);
+    assertEquals(
+        (int) (hash % Evaluator.ONE_HUNDRED) + 1, Bucketing.bucket("email", large.toString()));
+  }
+
   @Test
   public void testPercentageRollout() throws URISyntaxException, IOException {
 
@@ -345,6 +386,517 @@ public class EvaluatorTest {
     }
   }
 
+  @Test
+  public void shouldEvaluateCompiledRulesInPriorityOrder() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+
+    final List<ServingRule> rules =
+        Arrays.asList(
+            makeRule("low", 2, IN, "a", "b"), makeRule("high", 1, STARTS_WITH, "a", "c"));
+    repo.setFlag("priorities", makeStringFlag("priorities", 1L, FeatureState.ON, rules));
+
+    final Target target = Target.builder().identifier("a").build();
+    assertEquals("c", eval.evaluate("priorities", target, STRING, null).get().getValue());
+
+    final Target other = Target.builder().identifier("z").build();
+    assertEquals("a", eval.evaluate("priorities", other, STRING, null).get().getValue());
+  }
+
+  @Test
+  public void shouldServeNewPlanAfterFlagIsUpdated() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    final Target target = Target.builder().identifier("a").build();
+    final List<ServingRule> rules = Collections.singletonList(makeRule("r", 1, IN, "a", "b"));
+
+    repo.setFlag("updated", makeStringFlag("updated", 1L, FeatureState.ON, rules));
+    assertEquals("b", eval.evaluate("updated", target, STRING, null).get().getValue());
+
+    repo.setFlag("updated", makeStringFlag("updated", 2L, FeatureState.OFF, rules));
+    assertEquals("off", eval.evaluate("updated", target, STRING, null).get().getValue());
+
+    repo.deleteFlag("updated");
+    assertFalse(eval.evaluate("updated", target, STRING, null).isPresent());
+  }
+
+  @Test
+  public void shouldReuseCompiledPlansOfPlainQueryUntilVersionChanges() {
+    final Query query = mock(Query.class);
+    final PlanQuery plans = PlanQuery.compiling(query);
+    final List<ServingRule> rules = Collections.singletonList(makeRule("r", 1, IN, "a", "b"));
+
+    when(query.getFlag("plain"))
+        .thenReturn(Optional.of(makeStringFlag("plain", 1L, FeatureState.ON, rules)));
+    final FlagPlan first = plans.getFlagPlan("plain").get();
+    assertSame(first, plans.getFlagPlan("plain").get());
+
+    when(query.getFlag("plain"))
+        .thenReturn(Optional.of(makeStringFlag("plain", 2L, FeatureState.OFF, rules)));
+    final FlagPlan second = plans.getFlagPlan("plain").get();
+    assertNotSame(first, second);
+    assertEquals(2L, second.getConfig().getVersion());
+
+    when(query.getFlag("plain")).thenReturn(Optional.empty());
+    assertFalse(plans.getFlagPlan("plain").isPresent());
+  }
+
+  @Test
+  public void shouldKeepDeprecatedOverloadsForSubclasses() {
+    final Evaluator eval =
+        new Evaluator(
+            new StorageRepository(new CaffeineCache(100), null, false),
+            Mockito.mock(BaseConfig.class));
+    final Target target = Target.builder().identifier("a").build();
+    final List<ServingRule> rules = Collections.singletonList(makeRule("r", 1, IN, "a", "b"));
+
+    assertEquals(
+        "b",
+        eval.evaluateFlag(makeStringFlag("f", 1L, FeatureState.ON, rules), target)
+            .get()
+            .getValue());
+    assertEquals(
+        "off",
+        eval.evaluateFlag(makeStringFlag("f", 1L, FeatureState.OFF, rules), target)
+            .get()
+            .getValue());
+    assertTrue(eval.evaluateRule(rules.get(0), target));
+    assertFalse(eval.evaluateClausesV2(Collections.emptyList(), target));
+
+    final Distribution distribution =
+        Distribution.builder()
+            .bucketBy("identifier")
+            .variations(
+                Collections.singletonList(
+                    WeightedVariation.builder().variation("c").weight(100).build()))
+            .build();
+    assertEquals(Optional.of("c"), eval.evaluateDistribution(distribution, target));
+  }
+
+  @Test
+  public void shouldMatchSegmentIncludeListByExactIdentifier() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+
+    final Segment segment =
+        Segment.builder()
+            .identifier("beta")
+            .name("beta")
+            .version(1L)
+            .included(
+                Collections.singletonList(
+                    io.harness.cf.model.Target.builder()
+                        .identifier("user-100")
+                        .name("user-100")
+                        .build()))
+            .build();
+    repo.setSegment("beta", segment);
+    repo.setFlag(
+        "segmented",
+        makeStringFlag(
+            "segmented",
+            1L,
+            FeatureState.ON,
+            Collections.singletonList(makeRule("r", 1, SEGMENT_MATCH, "beta", "b"))));
+
+    final Target included = Target.builder().identifier("user-100").build();
+    assertEquals("b", eval.evaluate("segmented", included, STRING, null).get().getValue());
+
+    // a substring of an included identifier must not be treated as included
+    final Target partial = Target.builder().identifier("user-1").build();
+    assertEquals("a", eval.evaluate("segmented", partial, STRING, null).get().getValue());
+  }
+
+  @Test
+  public void shouldReportTargetIndexStats() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    assertEquals(new TargetIndexStats(0, 0, 0, 0, 0), eval.getTargetIndexStats());
+
+    final List<io.harness.cf.model.Target> targets = new ArrayList<>();
+    for (String identifier : Arrays.asList("user-1", "user-2", "user-3")) {
+      targets.add(
+          io.harness.cf.model.Target.builder().identifier(identifier).name(identifier).build());
+    }
+    repo.setSegment(
+        "beta",
+        Segment.builder()
+            .identifier("beta")
+            .version(1L)
+            .included(targets.subList(0, 2))
+            .excluded(targets.subList(2, 3))
+            .build());
+    final FeatureConfig flag = makeStringFlag("targeted", 1L, FeatureState.ON, null);
+    flag.setVariationToTargetMap(
+        Collections.singletonList(
+            VariationMap.builder()
+                .variation("b")
+                .targets(
+                    Collections.singletonList(
+                        TargetMap.builder().identifier("user-1").name("user-1").build()))
+                .build()));
+    repo.setFlag("targeted", flag);
+
+    final TargetIndexStats stats = eval.getTargetIndexStats();
+    assertEquals(1, stats.getFlagCount());
+    assertEquals(1, stats.getFlagTargetCount());
+    assertEquals(1, stats.getSegmentCount());
+    assertEquals(3, stats.getSegmentTargetCount());
+    assertTrue(stats.getEstimatedBytes() > 0);
+  }
+
+  @Test
+  public void shouldCompileMatchClausesOnceAndIgnoreInvalidRegex() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    final List<ServingRule> rules = new ArrayList<>();
+    rules.add(makeRule("broken", 1, MATCH, "user-[", "c"));
+    rules.add(makeRule("regex", 2, MATCH, "user-\\d+", "b"));
+    repo.setFlag("regex", makeStringFlag("regex", 1L, FeatureState.ON, rules));
+
+    final FlagPlan plan = repo.getFlagPlan("regex").get();
+    assertNull(plan.getRules().get(0).getClauses().get(0).getPattern());
+    assertNotNull(plan.getRules().get(1).getClauses().get(0).getPattern());
+
+    final Target matching = Target.builder().identifier("user-42").build();
+    assertEquals("b", eval.evaluate("regex", matching, STRING, null).get().getValue());
+
+    final Target other = Target.builder().identifier("user-x").build();
+    assertEquals("a", eval.evaluate("regex", other, STRING, null).get().getValue());
+  }
+
+  @Test
+  public void shouldWarnAboutInvalidRegexOnce() {
+    final Logger logger = (Logger) LoggerFactory.getLogger(SdkCodes.class);
+    final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+    try {
+      final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+      for (long version = 1; version <= 3; version++) {
+        repo.setFlag(
+            "invalid",
+            makeStringFlag(
+                "invalid",
+                version,
+                FeatureState.ON,
+                Collections.singletonList(makeRule("once", 1, MATCH, "warn-once-[", "c"))));
+      }
+      assertEquals(
+          1,
+          appender.list.stream()
+              .filter(event -> event.getFormattedMessage().contains("warn-once-["))
+              .count());
+    } finally {
+      logger.detachAppender(appender);
+    }
+  }
+
+  @Test
+  public void shouldEvaluateLargeInClauseCaseSensitively() {
+    final Target target = Target.builder().identifier("user-4999").build();
+    final List<String> values = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      values.add("user-" + i);
+    }
+    final Clause clause =
+        Clause.builder().id("in").op(IN).attribute("identifier").values(values).build();
+    assertTrue(evaluator.evaluateClause(clause, target));
+
+    final Target upper = Target.builder().identifier("USER-4999").build();
+    assertFalse(evaluator.evaluateClause(clause, upper));
+  }
+
+  @Test
+  public void shouldCacheEvaluationsUntilSegmentChanges() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final BaseConfig config = BaseConfig.builder().evaluationCacheSize(10).build();
+    final Evaluator eval = new Evaluator(repo, config);
+    final FlagEvaluateCallback callback = mock(FlagEvaluateCallback.class);
+
+    repo.setSegment("beta", Segment.builder().identifier("beta").name("beta").version(1L).build());
+    repo.setFlag(
+        "cached",
+        makeStringFlag(
+            "cached",
+            1L,
+            FeatureState.ON,
+            Collections.singletonList(makeRule("r", 1, SEGMENT_MATCH, "beta", "b"))));
+
+    final Target target = Target.builder().identifier("user-1").attribute("plan", "pro").build();
+    assertEquals("a", eval.evaluate("cached", target, STRING, callback).get().getValue());
+    assertEquals("a", eval.evaluate("cached", target, STRING, callback).get().getValue());
+    assertEquals(1, eval.getEvaluationCacheStats().getHitCount());
+    assertEquals(1, eval.getEvaluationCacheStats().getMissCount());
+    verify(callback, times(2)).processEvaluation(any(), eq(target), any());
+
+    // a different attribute value is a different cache entry
+    final Target other = Target.builder().identifier("user-1").attribute("plan", "free").build();
+    assertEquals("a", eval.evaluate("cached", other, STRING, callback).get().getValue());
+    assertEquals(2, eval.getEvaluationCacheStats().getMissCount());
+
+    // storing the segment invalidates results of flags referencing it
+    repo.setSegment(
+        "beta",
+        Segment.builder()
+            .identifier("beta")
+            .name("beta")
+            .version(2L)
+            .included(
+                Collections.singletonList(
+                    io.harness.cf.model.Target.builder()
+                        .identifier("user-1")
+                        .name("user-1")
+                        .build()))
+            .build());
+    assertEquals("b", eval.evaluate("cached", target, STRING, callback).get().getValue());
+    assertEquals(3, eval.getEvaluationCacheStats().getMissCount());
+  }
+
+  @Test
+  public void shouldCacheEvaluationsUntilNestedSegmentChanges() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final BaseConfig config = BaseConfig.builder().evaluationCacheSize(10).build();
+    final Evaluator eval = new Evaluator(repo, config);
+
+    repo.setSegment(
+        "inner", Segment.builder().identifier("inner").name("inner").version(1L).build());
+    repo.setSegment(
+        "outer",
+        Segment.builder()
+            .identifier("outer")
+            .name("outer")
+            .version(1L)
+            .rules(
+                Collections.singletonList(
+                    Clause.builder()
+                        .id("nested")
+                        .op(SEGMENT_MATCH)
+                        .attribute("")
+                        .values(Collections.singletonList("inner"))
+                        .build()))
+            .build());
+    repo.setFlag(
+        "nested",
+        makeStringFlag(
+            "nested",
+            1L,
+            FeatureState.ON,
+            Collections.singletonList(makeRule("r", 1, SEGMENT_MATCH, "outer", "b"))));
+
+    final Target target = Target.builder().identifier("user-1").build();
+    assertEquals("a", eval.evaluate("nested", target, STRING, null).get().getValue());
+    assertEquals("a", eval.evaluate("nested", target, STRING, null).get().getValue());
+    assertEquals(1, eval.getEvaluationCacheStats().getHitCount());
+
+    // storing the segment matched by the flag's segment invalidates the cached result too
+    repo.setSegment(
+        "inner",
+        Segment.builder()
+            .identifier("inner")
+            .name("inner")
+            .version(2L)
+            .included(
+                Collections.singletonList(
+                    io.harness.cf.model.Target.builder()
+                        .identifier("user-1")
+                        .name("user-1")
+                        .build()))
+            .build());
+    assertEquals("b", eval.evaluate("nested", target, STRING, null).get().getValue());
+    assertEquals(2, eval.getEvaluationCacheStats().getMissCount());
+  }
+
+  @Test
+  public void shouldEvaluateAllFlagsForTargetInOneBatch() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    final FlagEvaluateCallback callback = mock(FlagEvaluateCallback.class);
+
+    repo.setSegment(
+        "beta",
+        Segment.builder()
+            .identifier("beta")
+            .name("beta")
+            .version(1L)
+            .included(
+                Collections.singletonList(
+                    io.harness.cf.model.Target.builder()
+                        .identifier("user-1")
+                        .name("user-1")
+                        .build()))
+            .build());
+    final List<ServingRule> rules =
+        Collections.singletonList(makeRule("r", 1, SEGMENT_MATCH, "beta", "b"));
+    repo.setFlag("web-one", makeStringFlag("web-one", 1L, FeatureState.ON, rules));
+    repo.setFlag("web-two", makeStringFlag("web-two", 1L, FeatureState.OFF, rules));
+    repo.setFlag("api-one", makeStringFlag("api-one", 1L, FeatureState.ON, rules));
+
+    final Target target = Target.builder().identifier("user-1").build();
+    final Map<String, Variation> all = eval.evaluateAll("", target, callback);
+    assertEquals(3, all.size());
+    assertEquals("b", all.get("web-one").getValue());
+    assertEquals("off", all.get("web-two").getValue());
+    assertEquals("b", all.get("api-one").getValue());
+    assertThrows(UnsupportedOperationException.class, () -> all.remove("web-one"));
+
+    final Map<String, Variation> web = eval.evaluateAll("web-", target, callback);
+    assertEquals(new HashSet<>(Arrays.asList("web-one", "web-two")), web.keySet());
+
+    verify(callback, times(2)).processEvaluations(eq(target), any());
+    verify(callback, never()).processEvaluation(any(), any(), any());
+  }
+
+  @Test
+  public void shouldEvaluateBatchInInputOrderAgainstSnapshot() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    final FlagEvaluateCallback callback = mock(FlagEvaluateCallback.class);
+    final List<ServingRule> rules =
+        Collections.singletonList(makeRule("r", 1, STARTS_WITH, "even-", "b"));
+    repo.setFlag("batch", makeStringFlag("batch", 1L, FeatureState.ON, rules));
+
+    final int count = 1000;
+    final List<Target> targets = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      targets.add(Target.builder().identifier((i % 2 == 0 ? "even-" : "odd-") + i).build());
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Iterator<TargetEvaluation> results =
+          eval.evaluateBatch("batch", targets.iterator(), executor, true, callback).iterator();
+
+      // flag changes after the batch started are not observed by the batch
+      repo.setFlag("batch", makeStringFlag("batch", 2L, FeatureState.OFF, rules));
+
+      for (int i = 0; i < count; i++) {
+        final TargetEvaluation result = results.next();
+        assertSame(targets.get(i), result.getTarget());
+        assertEquals(i % 2 == 0 ? "b" : "a", result.getVariation().getValue());
+      }
+      assertFalse(results.hasNext());
+    } finally {
+      executor.shutdown();
+    }
+
+    final Map<String, Long> expected = new HashMap<>();
+    expected.put("a", (long) count / 2);
+    expected.put("b", (long) count / 2);
+    final Map<String, Long> reported = new HashMap<>();
+    verify(callback, times(1))
+        .processEvaluationCounts(
+            any(),
+            argThat(
+                counts -> {
+                  counts.forEach((variation, n) -> reported.put(variation.getIdentifier(), n));
+                  return true;
+                }));
+    verify(callback, never()).processEvaluation(any(), any(), any());
+    assertEquals(expected, reported);
+  }
+
+  @Test
+  public void shouldEvaluateDiamondPrerequisitesAndFailCycles() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = Mockito.spy(new Evaluator(repo, Mockito.mock(BaseConfig.class)));
+    final Target target = Target.builder().identifier("user-1").build();
+
+    // top -> left, right -> shared
+    repo.setFlag("shared", makeFlagWithPrerequisites("shared"));
+    repo.setFlag("left", makeFlagWithPrerequisites("left", "shared"));
+    repo.setFlag("right", makeFlagWithPrerequisites("right", "shared"));
+    repo.setFlag("top", makeFlagWithPrerequisites("top", "left", "right"));
+    assertEquals("a", eval.evaluate("top", target, STRING, null).get().getValue());
+    // the prerequisite shared by both branches is evaluated once per evaluation
+    verify(eval, times(1))
+        .evaluateFlag(argThat((FlagPlan plan) -> "shared".equals(plan.getIdentifier())), any());
+
+    // cycle-a -> cycle-b -> cycle-a
+    repo.setFlag("cycle-a", makeFlagWithPrerequisites("cycle-a", "cycle-b"));
+    repo.setFlag("cycle-b", makeFlagWithPrerequisites("cycle-b", "cycle-a"));
+    assertEquals("off", eval.evaluate("cycle-a", target, STRING, null).get().getValue());
+    assertEquals("off", eval.evaluate("cycle-b", target, STRING, null).get().getValue());
+  }
+
+  @Test
+  public void shouldServeParsedJsonVariationsAsCopies() {
+    final StorageRepository repo = new StorageRepository(new CaffeineCache(100), null, false);
+    final Evaluator eval = new Evaluator(repo, Mockito.mock(BaseConfig.class));
+    final Target target = Target.builder().identifier("user-1").build();
+    final FeatureConfig flag =
+        FeatureConfig.builder()
+            .feature("config")
+            .kind(JSON)
+            .state(FeatureState.ON)
+            .version(1L)
+            .variations(
+                Collections.singletonList(
+                    Variation.builder().identifier("v1").value("{\"limit\": 10}").build()))
+            .offVariation("v1")
+            .defaultServe(Serve.builder().variation("v1").build())
+            .build();
+    repo.setFlag("config", flag);
+
+    final JsonObject defaultValue = new JsonObject();
+    final JsonObject first = eval.jsonVariation("config", target, defaultValue, null);
+    assertEquals(10, first.get("limit").getAsInt());
+    first.addProperty("limit", 20);
+
+    final JsonObject second = eval.jsonVariation("config", target, defaultValue, null);
+    assertEquals(10, second.get("limit").getAsInt());
+    assertNotSame(first, second);
+  }
+
+  private FeatureConfig makeFlagWithPrerequisites(String identifier, String... prerequisites) {
+    final FeatureConfig flag =
+        makeStringFlag(identifier, 1L, FeatureState.ON, Collections.emptyList());
+    final List<Prerequisite> list = new ArrayList<>();
+    for (String prerequisite : prerequisites) {
+      list.add(
+          Prerequisite.builder()
+              .feature(prerequisite)
+              .variations(Collections.singletonList("a"))
+              .build());
+    }
+    flag.setPrerequisites(list);
+    return flag;
+  }
+
+  private ServingRule makeRule(String id, int priority, String op, String value, String serve) {
+    final Clause clause =
+        Clause.builder()
+            .id(id)
+            .op(op)
+            .attribute("identifier")
+            .values(Collections.singletonList(value))
+            .build();
+    return ServingRule.builder()
+        .ruleId(id)
+        .priority(priority)
+        .clauses(Collections.singletonList(clause))
+        .serve(Serve.builder().variation(serve).build())
+        .build();
+  }
+
+  private FeatureConfig makeStringFlag(
+      String identifier, long version, FeatureState state, List<ServingRule> rules) {
+    final List<Variation> variations = new ArrayList<>();
+    for (String value : Arrays.asList("a", "b", "c", "off")) {
+      variations.add(Variation.builder().identifier(value).value(value).build());
+    }
+    return FeatureConfig.builder()
+        .feature(identifier)
+        .kind(STRING)
+        .state(state)
+        .version(version)
+        .variations(variations)
+        .rules(rules)
+        .offVariation("off")
+        .defaultServe(Serve.builder().variation("a").build())
+        .build();
+  }
+
   private void loadSegments(StorageRepository repository, String resourceName)
       throws IOException, URISyntaxException {
     String segmentsJson = getJsonResource(resourceName);
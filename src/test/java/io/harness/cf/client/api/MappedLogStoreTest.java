@@ -0,0 +1,151 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MappedLogStoreTest {
+
+  @Test
+  void shouldStoreReadAndDeleteValues() throws IOException {
+    final File file = newFile();
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), false, 0)) {
+      store.set("testkey1", "testval1");
+      store.set("flags/flag", FeatureConfig.builder().feature("flag").version(3L).build());
+      store.set("segments/segment", Segment.builder().identifier("segment").version(4L).build());
+
+      assertEquals("testval1", store.get("testkey1"));
+      assertEquals(3L, ((FeatureConfig) store.get("flags/flag")).getVersion());
+      assertEquals(4L, ((Segment) store.get("segments/segment")).getVersion());
+
+      store.delete("testkey1");
+      final List<String> keys = store.keys();
+      assertEquals(2, keys.size());
+      assertFalse(keys.contains("testkey1"));
+      assertNull(store.get("testkey1"));
+    }
+  }
+
+  @Test
+  void shouldReplayLatestValuesOnReopen() throws IOException {
+    final File file = newFile();
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), true, 0)) {
+      store.set("key", "first");
+      store.set("key", "second");
+      store.set("deleted", "value");
+      store.delete("deleted");
+    }
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), true, 0)) {
+      assertEquals("second", store.get("key"));
+      assertNull(store.get("deleted"));
+      assertEquals(1, store.keys().size());
+    }
+  }
+
+  @Test
+  void shouldDiscardTornRecordOnReopen() throws IOException {
+    final File file = newFile();
+    final long end;
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), true, 0)) {
+      store.set("intact", "value");
+      store.set("torn", "value");
+    }
+    // corrupt the last byte of the second record
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      end = 8 + 2 * (8 + 3) + "intact".length() + "torn".length() + 2 * "value".length();
+      raf.seek(end - 1);
+      raf.write('X');
+    }
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), true, 0)) {
+      assertEquals("value", store.get("intact"));
+      assertNull(store.get("torn"));
+
+      store.set("after", "recovery");
+      assertEquals("recovery", store.get("after"));
+    }
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), true, 0)) {
+      assertEquals(2, store.keys().size());
+      assertEquals("recovery", store.get("after"));
+    }
+  }
+
+  @Test
+  void shouldKeepLiveValuesWhenCompacting() throws IOException {
+    final File file = newFile();
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), false, 0)) {
+      for (int i = 0; i < 1000; i++) {
+        store.set("key" + (i % 10), "value" + i);
+      }
+      store.set("deleted", "value");
+      store.delete("deleted");
+
+      store.compact();
+
+      assertEquals(10, store.keys().size());
+      assertEquals("value999", store.get("key9"));
+      store.set("key0", "after compaction");
+    }
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), false, 0)) {
+      assertEquals(10, store.keys().size());
+      assertEquals("after compaction", store.get("key0"));
+      assertEquals("value991", store.get("key1"));
+      assertNull(store.get("deleted"));
+    }
+  }
+
+  @Test
+  void shouldKeepWorkingOnCurrentFileWhenCompactionCannotReplaceIt() throws IOException {
+    final File file = newFile();
+
+    try (MappedLogStore store =
+        new MappedLogStore(file.getAbsolutePath(), false, 0) {
+          @Override
+          void moveCompacted(Path compacted, Path target) throws IOException {
+            throw new IOException("move failed");
+          }
+        }) {
+      for (int i = 0; i < 100; i++) {
+        store.set("key" + (i % 10), "value" + i);
+      }
+
+      store.compact();
+
+      assertFalse(new File(file.getAbsolutePath() + ".compact").exists());
+      assertEquals(10, store.keys().size());
+      assertEquals("value99", store.get("key9"));
+      store.set("key0", "after failed compaction");
+      assertEquals("after failed compaction", store.get("key0"));
+      // grows the file past its mapping, which needs the channel to still be open
+      final String large = new String(new char[2 << 20]).replace('\0', 'x');
+      store.set("large", large);
+      assertEquals(large, store.get("large"));
+    }
+
+    try (MappedLogStore store = new MappedLogStore(file.getAbsolutePath(), false, 0)) {
+      assertEquals(11, store.keys().size());
+      assertEquals("after failed compaction", store.get("key0"));
+      assertEquals("value91", store.get("key1"));
+    }
+  }
+
+  private static File newFile() throws IOException {
+    final File file = File.createTempFile(MappedLogStoreTest.class.getSimpleName(), ".log");
+    file.deleteOnExit();
+    return file;
+  }
+}
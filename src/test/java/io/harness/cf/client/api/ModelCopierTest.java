@@ -0,0 +1,100 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.harness.cf.model.Clause;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.GroupServingRule;
+import io.harness.cf.model.Segment;
+import io.harness.cf.model.Tag;
+import io.harness.cf.model.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ModelCopierTest {
+
+  private final Gson gson = new Gson();
+
+  @Test
+  void shouldCopyEveryFlagEqualToGsonRoundTrip() throws Exception {
+    final List<FeatureConfig> flags = new ArrayList<>();
+    for (String file :
+        new String[] {
+          "v2-andor-flags.json",
+          "percentage-rollout-with-zero-weights.json",
+          "pre-req-id-and-value-differ.json",
+          "basic_bool_string_number_json_variations.json"
+        }) {
+      flags.addAll(
+          gson.fromJson(
+              TestUtils.getJsonResource("local-test-cases/" + file),
+              new TypeToken<List<FeatureConfig>>() {}.getType()));
+    }
+
+    for (FeatureConfig flag : flags) {
+      final FeatureConfig copy = ModelCopier.copy(flag);
+      assertNotSame(flag, copy);
+      assertEquals(gson.fromJson(gson.toJson(flag), FeatureConfig.class), copy);
+      assertEquals(gson.toJson(flag), gson.toJson(copy));
+    }
+  }
+
+  @Test
+  void shouldCopySegmentEqualToGsonRoundTrip() {
+    final Segment segment =
+        Segment.builder()
+            .identifier("segment")
+            .environment("env")
+            .tags(Collections.singletonList(Tag.builder().name("tag").identifier("tag").build()))
+            .included(Collections.singletonList(Target.builder().identifier("included").build()))
+            .excluded(Collections.emptyList())
+            .rules(
+                Collections.singletonList(
+                    Clause.builder()
+                        .attribute("identifier")
+                        .op(Operators.EQUAL)
+                        .values(Collections.singletonList("value"))
+                        .build()))
+            .servingRules(
+                Collections.singletonList(
+                    GroupServingRule.builder()
+                        .ruleId("rule")
+                        .priority(1)
+                        .clauses(Collections.emptyList())
+                        .build()))
+            .version(3L)
+            .build();
+
+    final Segment copy = ModelCopier.copy(segment);
+    assertNotSame(segment, copy);
+    assertNotSame(segment.getIncluded().get(0), copy.getIncluded().get(0));
+    assertNotSame(segment.getServingRules(), copy.getServingRules());
+    assertEquals(gson.toJson(segment), gson.toJson(copy));
+  }
+
+  @Test
+  void shouldNotShareMutableObjectsWithTheOriginal() throws Exception {
+    final List<FeatureConfig> flags =
+        gson.fromJson(
+            TestUtils.getJsonResource("local-test-cases/percentage-rollout-with-zero-weights.json"),
+            new TypeToken<List<FeatureConfig>>() {}.getType());
+    final FeatureConfig flag = flags.get(0);
+    final String json = gson.toJson(flag);
+
+    final FeatureSnapshot snapshot = ModelCopier.copy(new FeatureSnapshot(flag, null));
+    final FeatureConfig copy = snapshot.getCurrent();
+    copy.getVariations().get(0).setValue("changed");
+    copy.getRules().get(0).getClauses().get(0).getValues().clear();
+    copy.getRules().get(0).getServe().getDistribution().getVariations().get(0).setWeight(-1);
+    copy.getDefaultServe().setVariation("changed");
+    copy.getVariations().clear();
+
+    assertEquals(json, gson.toJson(flag));
+    assertNull(snapshot.getPrevious());
+  }
+}
@@ -0,0 +1,111 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+class PersistentHashMapTest {
+
+  /** Key with a chosen hash code, so that collisions and shared prefixes can be forced */
+  private static final class Key {
+    private final String name;
+    private final int hash;
+
+    private Key(String name, int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  @Test
+  void shouldMatchHashMapUnderRandomUpdates() {
+    final Random random = new Random(42);
+    final Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> actual = PersistentHashMap.empty();
+
+    for (int i = 0; i < 20_000; i++) {
+      // half of the keys share 150 hashes, so that collisions and deep branches are common
+      final int id = random.nextInt(2_000);
+      final Key key = new Key("k" + id, id % 2 == 0 ? id % 300 : id * 0x9E3779B9);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.without(key);
+      } else {
+        expected.put(key, i);
+        actual = actual.with(key, i);
+      }
+      assertEquals(expected.size(), actual.size());
+    }
+    assertEquals(expected, actual);
+    assertEquals(expected, new HashMap<>(actual));
+    for (Key key : expected.keySet()) {
+      assertEquals(expected.get(key), actual.get(key));
+    }
+  }
+
+  @Test
+  void shouldLeaveEarlierVersionsUnchanged() {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 1_000; i++) {
+      map = map.with("flag" + i, i);
+    }
+    final PersistentHashMap<String, Integer> before = map;
+
+    final PersistentHashMap<String, Integer> after =
+        map.with("flag1", -1).without("flag2").with("new", 1);
+
+    assertEquals(1_000, before.size());
+    assertEquals(1, before.get("flag1"));
+    assertEquals(2, before.get("flag2"));
+    assertFalse(before.containsKey("new"));
+    assertEquals(1_000, after.size());
+    assertEquals(-1, after.get("flag1"));
+    assertFalse(after.containsKey("flag2"));
+    assertEquals(1, after.get("new"));
+  }
+
+  @Test
+  void shouldReturnSameMapWhenNothingChanges() {
+    final Integer value = 1;
+    final PersistentHashMap<String, Integer> map =
+        PersistentHashMap.<String, Integer>empty().with("a", value);
+    assertSame(map, map.with("a", value));
+    assertSame(map, map.without("b"));
+    assertTrue(map.without("a").isEmpty());
+    assertThrows(UnsupportedOperationException.class, () -> map.put("b", 2));
+  }
+
+  @Test
+  void shouldKeepCollidingKeysApart() {
+    final Key a = new Key("a", 7);
+    final Key b = new Key("b", 7);
+    final Key c = new Key("c", 7);
+    PersistentHashMap<Key, String> map = PersistentHashMap.empty();
+    map = map.with(a, "a").with(b, "b").with(c, "c");
+
+    assertEquals(3, map.size());
+    assertEquals("b", map.get(b));
+    map = map.without(b);
+    assertEquals(2, map.size());
+    assertNull(map.get(b));
+    assertEquals("a", map.get(a));
+    assertEquals("c", map.get(c));
+    assertEquals(new HashSet<>(Arrays.asList(a, c)), map.keySet());
+  }
+}
@@ -0,0 +1,55 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+class PersistentSortedSetTest {
+
+  @Test
+  void shouldMatchTreeSetUnderRandomUpdates() {
+    final Random random = new Random(7);
+    final TreeSet<String> expected = new TreeSet<>();
+    PersistentSortedSet actual = PersistentSortedSet.empty();
+
+    for (int i = 0; i < 20_000; i++) {
+      final String value = "team-" + random.nextInt(5) + ".flag" + random.nextInt(500);
+      if (random.nextInt(3) == 0) {
+        expected.remove(value);
+        actual = actual.without(value);
+      } else {
+        expected.add(value);
+        actual = actual.with(value);
+      }
+      assertEquals(expected.size(), actual.size());
+    }
+    assertEquals(new ArrayList<>(expected), toList(actual));
+    assertEquals(
+        new ArrayList<>(expected.subSet("team-3.", true, "team-3/", false)),
+        toList(actual.withPrefix("team-3.")));
+    assertEquals(
+        new ArrayList<>(expected.subSet("team-3.flag1", true, "team-3.flag2", false)),
+        toList(actual.withPrefix("team-3.flag1")));
+    assertTrue(toList(actual.withPrefix("other")).isEmpty());
+  }
+
+  @Test
+  void shouldLeaveEarlierVersionsUnchanged() {
+    final PersistentSortedSet before = PersistentSortedSet.copyOf(Arrays.asList("c", "a", "b"));
+    final PersistentSortedSet after = before.without("b").with("d");
+
+    assertEquals(Arrays.asList("a", "b", "c"), toList(before));
+    assertEquals(Arrays.asList("a", "c", "d"), toList(after));
+    assertSame(after, after.with("a"));
+    assertSame(after, after.without("b"));
+    assertTrue(after.contains("d"));
+    assertFalse(after.contains("b"));
+  }
+
+  private static List<String> toList(Iterable<String> values) {
+    final List<String> list = new ArrayList<>();
+    values.forEach(list::add);
+    return list;
+  }
+}
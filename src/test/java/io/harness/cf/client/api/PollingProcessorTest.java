@@ -0,0 +1,179 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.harness.cf.client.connector.Connector;
+import io.harness.cf.client.connector.ConnectorException;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+public class PollingProcessorTest {
+
+  @Test
+  public void shouldFetchFlagsAndSegmentsConcurrently() throws ConnectorException {
+    final Connector mockConnector = mockConnector();
+    final Repository mockRepo = mock(Repository.class);
+    final PollerCallback mockCallback = mock(PollerCallback.class);
+
+    // each fetch only returns once the other one has started
+    final CountDownLatch flagsStarted = new CountDownLatch(1);
+    final CountDownLatch segmentsStarted = new CountDownLatch(1);
+    final List<FeatureConfig> flags =
+        Collections.singletonList(FeatureConfig.builder().feature("flag").build());
+    final List<Segment> segments =
+        Collections.singletonList(Segment.builder().identifier("segment").build());
+    when(mockConnector.getFlags())
+        .thenAnswer(
+            invocation -> {
+              flagsStarted.countDown();
+              return segmentsStarted.await(5, TimeUnit.SECONDS) ? flags : null;
+            });
+    when(mockConnector.getSegments())
+        .thenAnswer(
+            invocation -> {
+              segmentsStarted.countDown();
+              return flagsStarted.await(5, TimeUnit.SECONDS) ? segments : null;
+            });
+
+    final PollingProcessor processor =
+        new PollingProcessor(mockConnector, mockRepo, 60, mockCallback);
+    processor.retrieveAll();
+    processor.close();
+
+    verify(mockRepo, times(1)).replaceAll(flags, segments);
+    verify(mockCallback, times(1)).onPollerFetched(flags, segments);
+  }
+
+  @Test
+  public void shouldNotApplyPartialResults() throws ConnectorException {
+    final Connector mockConnector = mockConnector();
+    final Repository mockRepo = mock(Repository.class);
+    final PollerCallback mockCallback = mock(PollerCallback.class);
+    when(mockConnector.getFlags()).thenReturn(Collections.emptyList());
+    when(mockConnector.getSegments()).thenThrow(new ConnectorException("failed", 500, "error"));
+
+    final PollingProcessor processor =
+        new PollingProcessor(mockConnector, mockRepo, 60, mockCallback);
+    processor.retrieveAll();
+    processor.close();
+
+    verify(mockRepo, never()).replaceAll(anyList(), anyList());
+    verify(mockCallback, never()).onPollerFetched(anyList(), anyList());
+  }
+
+  @Test
+  public void shouldNotReapplyUnmodifiedResults() throws ConnectorException {
+    final Connector mockConnector = mock(Connector.class);
+    final Repository mockRepo = mock(Repository.class);
+    final PollerCallback mockCallback = mock(PollerCallback.class);
+    final FeatureConfig flag = FeatureConfig.builder().feature("flag").build();
+    final Segment segment = Segment.builder().identifier("segment").build();
+    when(mockConnector.streamFlags(any()))
+        .thenAnswer(
+            invocation -> {
+              invocation.<Consumer<FeatureConfig>>getArgument(0).accept(flag);
+              return true;
+            })
+        .thenReturn(false);
+    when(mockConnector.streamSegments(any()))
+        .thenAnswer(
+            invocation -> {
+              invocation.<Consumer<Segment>>getArgument(0).accept(segment);
+              return true;
+            })
+        .thenReturn(false);
+
+    final PollingProcessor processor =
+        new PollingProcessor(mockConnector, mockRepo, 60, mockCallback);
+    processor.retrieveAll();
+    processor.retrieveAll();
+    processor.close();
+
+    final List<FeatureConfig> flags = Collections.singletonList(flag);
+    final List<Segment> segments = Collections.singletonList(segment);
+    verify(mockRepo, times(1)).replaceAll(flags, segments);
+    verify(mockCallback, times(1)).onPollerFetched(flags, segments);
+    verify(mockConnector, never()).getFlags();
+    verify(mockConnector, never()).getSegments();
+    verify(mockConnector, times(1)).clearListValidators();
+  }
+
+  @Test
+  public void shouldDropResultFetchedWhileRepositoryWasWritten() throws ConnectorException {
+    final Connector mockConnector = mockConnector();
+    final Repository repository = new StorageRepository(new CaffeineCache(100), null, false);
+    final PollerCallback mockCallback = mock(PollerCallback.class);
+    final FeatureConfig existing = FeatureConfig.builder().feature("existing").version(1L).build();
+    final FeatureConfig created = FeatureConfig.builder().feature("created").version(1L).build();
+    // a stream event stores a flag while the first, already outdated, response is in flight
+    when(mockConnector.getFlags())
+        .thenAnswer(
+            invocation -> {
+              repository.setFlag("created", created);
+              return Collections.singletonList(existing);
+            })
+        .thenReturn(Arrays.asList(existing, created));
+    when(mockConnector.getSegments()).thenReturn(Collections.emptyList());
+
+    final PollingProcessor processor =
+        new PollingProcessor(mockConnector, repository, 60, mockCallback);
+    processor.retrieveAll();
+    processor.close();
+
+    assertEquals(Arrays.asList("created", "existing"), repository.getAllFeatureIdentifiers(""));
+    verify(mockConnector, times(2)).getFlags();
+    verify(mockCallback, times(1)).onPollerFetched(anyList(), anyList());
+  }
+
+  @Test
+  public void shouldLeaveRepositoryUntouchedWhenEveryFetchIsOutdated() throws ConnectorException {
+    final Connector mockConnector = mockConnector();
+    final Repository repository = new StorageRepository(new CaffeineCache(100), null, false);
+    final PollerCallback mockCallback = mock(PollerCallback.class);
+    final AtomicLong version = new AtomicLong();
+    when(mockConnector.getFlags())
+        .thenAnswer(
+            invocation -> {
+              repository.setFlag(
+                  "created",
+                  FeatureConfig.builder()
+                      .feature("created")
+                      .version(version.incrementAndGet())
+                      .build());
+              return Collections.emptyList();
+            });
+    when(mockConnector.getSegments()).thenReturn(Collections.emptyList());
+
+    final PollingProcessor processor =
+        new PollingProcessor(mockConnector, repository, 60, mockCallback);
+    processor.retrieveAll();
+    processor.close();
+
+    assertEquals(Collections.singletonList("created"), repository.getAllFeatureIdentifiers(""));
+    verify(mockCallback, never()).onPollerFetched(anyList(), anyList());
+  }
+
+  // the poller streams entries, the default methods delegate to the stubbed list fetches
+  private static Connector mockConnector() throws ConnectorException {
+    final Connector mockConnector = mock(Connector.class);
+    doCallRealMethod().when(mockConnector).streamFlags(any());
+    doCallRealMethod().when(mockConnector).streamSegments(any());
+    return mockConnector;
+  }
+}
@@ -0,0 +1,34 @@
+package io.harness.cf.client.api;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class RepositoryTest {
+
+  @Test
+  void shouldStoreSegmentsBeforeFlagsAndDeleteLast() {
+    final Repository repository = mock(Repository.class);
+    doCallRealMethod().when(repository).replaceAll(any(), any());
+    when(repository.getAllFeatureIdentifiers("")).thenReturn(Collections.singletonList("stale"));
+    when(repository.getAllSegmentIdentifiers()).thenReturn(Collections.singletonList("old"));
+    final FeatureConfig flag = FeatureConfig.builder().feature("flag").build();
+    final Segment segment = Segment.builder().identifier("segment").build();
+
+    repository.replaceAll(Collections.singletonList(flag), Collections.singletonList(segment));
+
+    final InOrder order = inOrder(repository);
+    order.verify(repository).setSegment("segment", segment);
+    order.verify(repository).setFlag("flag", flag);
+    order.verify(repository).deleteFlag("stale");
+    order.verify(repository).deleteSegment("old");
+  }
+}
@@ -0,0 +1,190 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.FeatureState;
+import io.harness.cf.model.Segment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+
+class SnapshotRepositoryTest {
+
+  @Test
+  void shouldStoreAndDeleteFlagsAndSegments() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, false);
+
+    repository.setFlag("flag", makeFlag("flag", 1L));
+    repository.setSegment("segment", makeSegment("segment", 1L));
+
+    assertTrue(repository.getFlag("flag").isPresent());
+    assertTrue(repository.getFlagPlan("flag").isPresent());
+    assertTrue(repository.getSegment("segment").isPresent());
+    assertTrue(repository.getSegmentPlan("segment").isPresent());
+
+    repository.deleteFlag("flag");
+    repository.deleteSegment("segment");
+
+    assertFalse(repository.getFlag("flag").isPresent());
+    assertFalse(repository.getFlagPlan("flag").isPresent());
+    assertFalse(repository.getSegment("segment").isPresent());
+    assertFalse(repository.getSegmentPlan("segment").isPresent());
+  }
+
+  @Test
+  void shouldIgnoreOutdatedVersions() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, false);
+
+    repository.setFlag("flag", makeFlag("flag", 2L));
+    repository.setFlag("flag", makeFlag("flag", 1L));
+    repository.setSegment("segment", makeSegment("segment", 2L));
+    repository.setSegment("segment", makeSegment("segment", 2L));
+
+    assertEquals(2L, repository.getFlag("flag").get().getVersion());
+    assertEquals(2L, repository.getSegment("segment").get().getVersion());
+  }
+
+  @Test
+  void shouldKeepPreviousVersion() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, true);
+
+    repository.setFlag("flag", makeFlag("flag", 1L));
+    repository.setFlag("flag", makeFlag("flag", 2L));
+
+    final FeatureSnapshot snapshot = repository.getFeatureSnapshot("flag");
+    assertEquals(1L, snapshot.getPrevious().getVersion());
+    assertEquals(2L, snapshot.getCurrent().getVersion());
+    assertNull(repository.getFeatureSnapshot("missing"));
+  }
+
+  @Test
+  void shouldNotChangeCurrentSnapshotOnUpdate() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, false);
+    repository.setFlag("flag", makeFlag("flag", 1L));
+
+    final PlanQuery before = repository.current();
+    repository.setFlag("flag", makeFlag("flag", 2L));
+    repository.setFlag("other", makeFlag("other", 1L));
+
+    assertEquals(1L, before.getFlagPlan("flag").get().getConfig().getVersion());
+    assertFalse(before.getFlagPlan("other").isPresent());
+    assertEquals(2L, repository.current().getFlagPlan("flag").get().getConfig().getVersion());
+    assertTrue(repository.current().getFlagPlan("other").isPresent());
+  }
+
+  @Test
+  void shouldRetainAllFlagsWithoutEviction() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, false);
+    for (int i = 0; i < 2_000; i++) {
+      repository.setFlag("flag" + i, makeFlag("flag" + i, 1L));
+    }
+
+    assertEquals(2_000, repository.getAllFeatureIdentifiers("").size());
+    assertEquals(1, repository.getAllFeatureIdentifiers("flag1999").size());
+  }
+
+  @Test
+  void shouldStreamFeatureIdentifiersOfOneSnapshot() {
+    final SnapshotRepository repository = new SnapshotRepository(null, null, false);
+    repository.setFlag("a.one", makeFlag("a.one", 1L));
+    repository.setFlag("a.two", makeFlag("a.two", 1L));
+    repository.setFlag("b", makeFlag("b", 1L));
+
+    final Stream<String> identifiers = repository.streamFeatureIdentifiers("a.");
+    repository.setFlag("a.three", makeFlag("a.three", 1L));
+    repository.deleteFlag("a.two");
+
+    assertEquals(Arrays.asList("a.one", "a.two"), identifiers.collect(Collectors.toList()));
+  }
+
+  @Test
+  void shouldApplyOnlyChangedEntriesAndDeleteMissingOnReplaceAll() {
+    final List<String> events = new ArrayList<>();
+    final SnapshotRepository repository =
+        new SnapshotRepository(null, new RecordingCallback(events), true);
+    repository.setFlag("same", makeFlag("same", 1L));
+    repository.setFlag("updated", makeFlag("updated", 1L));
+    repository.setFlag("removed", makeFlag("removed", 1L));
+    repository.setSegment("segment", makeSegment("segment", 1L));
+    repository.setSegment("gone", makeSegment("gone", 1L));
+    final PlanQuery before = repository.current();
+    final FlagPlan samePlan = repository.getFlagPlan("same").get();
+    events.clear();
+
+    repository.replaceAll(
+        Arrays.asList(makeFlag("same", 1L), makeFlag("updated", 2L), makeFlag("added", 1L)),
+        Collections.singletonList(makeSegment("segment", 1L)));
+
+    assertEquals(
+        Arrays.asList("flag:updated", "flag:added", "deleted:removed", "deletedSegment:gone"),
+        events);
+    assertSame(samePlan, repository.getFlagPlan("same").get());
+    assertEquals(1L, repository.getFeatureSnapshot("updated").getPrevious().getVersion());
+    assertFalse(repository.getFlag("removed").isPresent());
+    assertFalse(repository.getSegment("gone").isPresent());
+    assertEquals(
+        Arrays.asList("added", "same", "updated"), repository.getAllFeatureIdentifiers(""));
+    assertTrue(before.getFlagPlan("removed").isPresent());
+
+    final PlanQuery applied = repository.current();
+    events.clear();
+    repository.replaceAll(
+        Arrays.asList(makeFlag("same", 1L), makeFlag("updated", 2L), makeFlag("added", 1L)),
+        Collections.singletonList(makeSegment("segment", 1L)));
+    assertTrue(events.isEmpty());
+    assertSame(applied, repository.current());
+  }
+
+  private static final class RecordingCallback implements RepositoryCallback {
+    private final List<String> events;
+
+    RecordingCallback(List<String> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void onFlagStored(@NonNull String identifier) {
+      events.add("flag:" + identifier);
+    }
+
+    @Override
+    public void onFlagDeleted(@NonNull String identifier) {
+      events.add("deleted:" + identifier);
+    }
+
+    @Override
+    public void onSegmentStored(@NonNull String identifier) {
+      events.add("segment:" + identifier);
+    }
+
+    @Override
+    public void onSegmentDeleted(@NonNull String identifier) {
+      events.add("deletedSegment:" + identifier);
+    }
+  }
+
+  private static FeatureConfig makeFlag(String identifier, long version) {
+    final FeatureConfig flag = new FeatureConfig();
+    flag.setFeature(identifier);
+    flag.setVersion(version);
+    flag.setKind(FeatureConfig.KindEnum.BOOLEAN);
+    flag.setState(FeatureState.ON);
+    flag.setOffVariation("false");
+    flag.setVariations(Collections.emptyList());
+    return flag;
+  }
+
+  private static Segment makeSegment(String identifier, long version) {
+    final Segment segment = new Segment();
+    segment.setIdentifier(identifier);
+    segment.setVersion(version);
+    return segment;
+  }
+}
@@ -3,14 +3,25 @@ package io.harness.cf.client.api;
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.google.gson.Gson;
+import io.harness.cf.client.common.Cache;
+import io.harness.cf.model.Clause;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.FeatureSnapshot;
+import io.harness.cf.model.Prerequisite;
+import io.harness.cf.model.Segment;
+import io.harness.cf.model.ServingRule;
+import io.harness.cf.model.Variation;
+import io.harness.cf.model.VariationMap;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -205,6 +216,193 @@ class StorageRepositoryTest {
     assertEquals(keys.get(0), featureConfigUpdated.getFeature());
   }
 
+  @Test
+  void shouldReturnDetachedSnapshotPerCall() {
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, true);
+    final FeatureConfig flag =
+        FeatureConfig.builder()
+            .feature("flag")
+            .version(1L)
+            .variations(
+                new LinkedList<>(
+                    Collections.singletonList(new Variation().identifier("on").value("true"))))
+            .build();
+    repository.setFlag("flag", flag);
+
+    final FeatureSnapshot first = repository.getFeatureSnapshot("flag");
+    assertNotSame(flag, first.getCurrent());
+    assertEquals(flag, first.getCurrent());
+
+    // a caller modifying its snapshot must not affect the repository or other callers
+    first.getCurrent().getVariations().get(0).setValue("false");
+    first.getCurrent().getVariations().clear();
+    final FeatureSnapshot again = repository.getFeatureSnapshot("flag");
+    assertNotSame(first, again);
+    assertEquals("true", again.getCurrent().getVariations().get(0).getValue());
+
+    repository.setFlag("flag", FeatureConfig.builder().feature("flag").version(2L).build());
+    final FeatureSnapshot second = repository.getFeatureSnapshot("flag");
+    assertEquals(1L, second.getPrevious().getVersion());
+    assertEquals(2L, second.getCurrent().getVersion());
+  }
+
+  @Test
+  void shouldListFeatureIdentifiersByPrefix() {
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, false);
+    for (String identifier :
+        Arrays.asList("team-b.flag", "team-a.two", "team-a", "team-a.one", "team-a\uffff", "x")) {
+      repository.setFlag(identifier, FeatureConfig.builder().feature(identifier).build());
+    }
+
+    assertEquals(
+        Arrays.asList("team-a", "team-a.one", "team-a.two", "team-a\uffff"),
+        repository.getAllFeatureIdentifiers("team-a"));
+    assertEquals(
+        Arrays.asList("team-a.one", "team-a.two"), repository.getAllFeatureIdentifiers("team-a."));
+    assertEquals(6, repository.getAllFeatureIdentifiers("").size());
+    assertTrue(repository.getAllFeatureIdentifiers("team-c").isEmpty());
+
+    repository.deleteFlag("team-a.one");
+    assertEquals(
+        Collections.singletonList("team-a.two"), repository.getAllFeatureIdentifiers("team-a."));
+  }
+
+  @Test
+  void shouldStreamFeatureIdentifiersByPrefixWithoutCopying() {
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, false);
+    for (String identifier : Arrays.asList("team-b.flag", "team-a.two", "team-a.one")) {
+      repository.setFlag(identifier, FeatureConfig.builder().feature(identifier).build());
+    }
+
+    final Iterator<String> identifiers = repository.streamFeatureIdentifiers("team-a.").iterator();
+    assertEquals("team-a.one", identifiers.next());
+    // the stream walks the identifiers current when it was created, later writes are not seen
+    repository.setFlag("team-a.zero", FeatureConfig.builder().feature("team-a.zero").build());
+    assertEquals("team-a.two", identifiers.next());
+    assertFalse(identifiers.hasNext());
+    assertEquals(
+        Arrays.asList("team-a.one", "team-a.two", "team-a.zero"),
+        repository.getAllFeatureIdentifiers("team-a."));
+  }
+
+  @Test
+  void shouldRejectOlderVersionsAfterTheCacheEvictedTheCurrentOne() {
+    // a cache that has evicted everything it was given
+    final Cache forgetful =
+        new Cache() {
+          @Override
+          public void set(@NonNull String key, @NonNull Object value) {}
+
+          @Override
+          public Object get(@NonNull String key) {
+            return null;
+          }
+
+          @Override
+          public void delete(@NonNull String key) {}
+
+          @Override
+          public List<String> keys() {
+            return Collections.emptyList();
+          }
+        };
+    final StorageRepository repository = new StorageRepository(forgetful, null, false);
+    repository.setFlag("flag", FeatureConfig.builder().feature("flag").version(2L).build());
+    repository.setSegment("segment", Segment.builder().identifier("segment").version(2L).build());
+
+    repository.setFlag("flag", FeatureConfig.builder().feature("flag").version(1L).build());
+    repository.setSegment("segment", Segment.builder().identifier("segment").version(1L).build());
+
+    assertEquals(2L, repository.getFlagPlan("flag").get().getConfig().getVersion());
+    assertEquals(2L, repository.getSegmentPlan("segment").get().getSegment().getVersion());
+  }
+
+  @Test
+  void shouldDropReplaceAllWhenRepositoryWasWrittenSinceGeneration() {
+    final StorageRepository repository =
+        new StorageRepository(new CaffeineCache(10000), null, false);
+    repository.setFlag("existing", FeatureConfig.builder().feature("existing").version(1L).build());
+    final long generation = repository.getGeneration();
+
+    // a stream event stores a flag the fetch started before did not know about
+    repository.setFlag("created", FeatureConfig.builder().feature("created").version(1L).build());
+    final List<FeatureConfig> fetched =
+        Collections.singletonList(FeatureConfig.builder().feature("existing").version(2L).build());
+    assertFalse(repository.replaceAll(fetched, Collections.emptyList(), generation));
+    assertEquals(Arrays.asList("created", "existing"), repository.getAllFeatureIdentifiers(""));
+    assertEquals(1L, repository.getFlag("existing").get().getVersion());
+
+    assertTrue(repository.replaceAll(fetched, Collections.emptyList(), repository.getGeneration()));
+    assertEquals(Collections.singletonList("existing"), repository.getAllFeatureIdentifiers(""));
+    assertEquals(2L, repository.getFlag("existing").get().getVersion());
+  }
+
+  @Test
+  void shouldFindFlagsBySegmentThroughRulesTargetSegmentsAndPrerequisites() {
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, false);
+
+    final Clause clause =
+        Clause.builder()
+            .op(Operators.SEGMENT_MATCH)
+            .values(Collections.singletonList("beta"))
+            .build();
+    repository.setFlag(
+        "byRule",
+        FeatureConfig.builder()
+            .feature("byRule")
+            .rules(
+                Collections.singletonList(
+                    ServingRule.builder().clauses(Collections.singletonList(clause)).build()))
+            .build());
+    repository.setFlag(
+        "byTargetSegment",
+        FeatureConfig.builder()
+            .feature("byTargetSegment")
+            .variationToTargetMap(
+                Collections.singletonList(
+                    VariationMap.builder()
+                        .variation("true")
+                        .targetSegments(Collections.singletonList("beta"))
+                        .build()))
+            .build());
+    repository.setFlag(
+        "byPrerequisite",
+        FeatureConfig.builder()
+            .feature("byPrerequisite")
+            .prerequisites(
+                Collections.singletonList(Prerequisite.builder().feature("byRule").build()))
+            .build());
+    repository.setFlag("unrelated", FeatureConfig.builder().feature("unrelated").build());
+
+    assertEquals(
+        new HashSet<>(Arrays.asList("byRule", "byTargetSegment", "byPrerequisite")),
+        new HashSet<>(repository.findFlagsBySegment("beta")));
+
+    repository.deleteFlag("byRule");
+    assertEquals(
+        Collections.singletonList("byTargetSegment"), repository.findFlagsBySegment("beta"));
+  }
+
+  @Test
+  void shouldDeleteFlagsAndSegmentsMissingFromReplaceAll() {
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, false);
+    repository.setFlag("kept", FeatureConfig.builder().feature("kept").version(1L).build());
+    repository.setFlag("removed", FeatureConfig.builder().feature("removed").version(1L).build());
+    repository.setSegment("gone", Segment.builder().identifier("gone").version(1L).build());
+
+    repository.replaceAll(
+        Arrays.asList(
+            FeatureConfig.builder().feature("kept").version(2L).build(),
+            FeatureConfig.builder().feature("added").version(1L).build()),
+        Collections.singletonList(Segment.builder().identifier("beta").version(1L).build()));
+
+    assertEquals(Arrays.asList("added", "kept"), repository.getAllFeatureIdentifiers(""));
+    assertEquals(2L, repository.getFlag("kept").get().getVersion());
+    assertFalse(repository.getFlag("removed").isPresent());
+    assertFalse(repository.getSegment("gone").isPresent());
+    assertEquals(Collections.singletonList("beta"), repository.getAllSegmentIdentifiers());
+  }
+
   private void loadFlags(Repository repository, List<FeatureConfig> flags) {
     if (flags != null) {
       for (FeatureConfig nextFlag : flags) {
@@ -3,7 +3,7 @@ package io.harness.cf.client.api;
 import com.google.gson.Gson;
 import io.harness.cf.model.FeatureConfig;
 import io.harness.cf.model.FeatureSnapshot;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.*;
@@ -13,13 +13,28 @@ import org.openjdk.jmh.annotations.*;
  ./gradlew clean build
  ./gradlew jmh
 
- some results:
-  Benchmark                                                                Mode  Cnt    Score     Error  Units
-  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsCurrentOnly         avgt    5  805.511 ± 105.154  ms/op
-  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsPreviousAndCurrent  avgt    5  860.745 ±  61.876  ms/op
-  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigCurrentOnly           avgt    5    1.502 ±   0.198  ms/op
-  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigPreviousAndCurrent    avgt    5    2.071 ±   0.650  ms/op
-
+ some results, 10000 flags, -prof gc, -f 1 -wi 3 -w 2s -i 5 -r 2s, JDK 17:
+
+ before, a Gson string round-trip deep copy of every snapshot on each call
+  Benchmark                                                                Mode  Cnt     Score     Error  Units  gc.alloc.rate.norm
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsAfterUpdate         avgt    5  1306.028 ± 215.310  ms/op      567954938 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsCurrentOnly         avgt    5  1045.629 ± 319.634  ms/op      522592547 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsGsonCopy            avgt    5  1329.305 ± 409.124  ms/op      656780930 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsPreviousAndCurrent  avgt    5  1338.091 ± 503.060  ms/op      557428749 B/op
+  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigCurrentOnly           avgt    5     3.036 ±   0.207  ms/op        3760001 B/op
+  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigPreviousAndCurrent    avgt    5     6.073 ±   0.705  ms/op        3767555 B/op
+
+ after, each snapshot copied from the compiled plan by ModelCopier on each call
+  Benchmark                                                                Mode  Cnt     Score     Error  Units  gc.alloc.rate.norm
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsAfterUpdate         avgt    5    95.321 ±  26.732  ms/op       33791285 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsCurrentOnly         avgt    5     4.894 ±   1.005  ms/op        6920153 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsGsonCopy            avgt    5   184.352 ±  71.172  ms/op      109244910 B/op
+  StoreRepositoryBenchmark.BenchmarkGetFeatureSnapshotsPreviousAndCurrent  avgt    5    13.705 ±   2.438  ms/op        9652283 B/op
+  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigCurrentOnly           avgt    5     2.679 ±   0.274  ms/op        3760001 B/op
+  StoreRepositoryBenchmark.BenchmarkLoadFeatureConfigPreviousAndCurrent    avgt    5     6.087 ±   1.723  ms/op        3767718 B/op
+
+ BenchmarkGetFeatureSnapshotsGsonCopy runs an extra Gson string round-trip on every returned
+ snapshot, it shows what the old per-call copy costs next to the new one.
 */
 
 @State(Scope.Thread)
@@ -30,8 +45,12 @@ public class StoreRepositoryBenchmark {
 
   private Repository getSnapshotCurrentOnlyRepository;
   private Repository getSnapshotCurrentAndPreviousRepository;
+  private Repository getSnapshotAfterUpdateRepository;
+  private long version = 1;
   private List<FeatureConfig> featureConfigs;
   private List<FeatureConfig> updatedFeatureConfigs;
+  private List<FeatureConfig> oddFeatureConfigs;
+  private List<FeatureConfig> evenFeatureConfigs;
   private final Gson gson = new Gson();
   private final int FeatureConfigSize = 10000;
   private final int CacheSize = FeatureConfigSize * 2;
@@ -46,6 +65,11 @@ public class StoreRepositoryBenchmark {
     setupRepoWithCurrentAndPreviousRepository();
     setupRepoWithCurrentOnlyRepositoryForGetSnapshot();
     setupRepoWithCurrentAndPreviousRepositoryForGetSnapshot();
+    getSnapshotAfterUpdateRepository =
+        new StorageRepository(new CaffeineCache(CacheSize), null, true);
+    oddFeatureConfigs = tu.CreateBenchmarkData(FeatureConfigSize, 1);
+    evenFeatureConfigs = tu.CreateBenchmarkData(FeatureConfigSize, 1);
+    loadFlags(getSnapshotAfterUpdateRepository, oddFeatureConfigs);
   }
 
   @Setup
@@ -122,8 +146,7 @@ public class StoreRepositoryBenchmark {
       throw new IllegalStateException("Snapshots not equal");
     }
 
-    for (int i = 0; i < FeatureConfigSize; i++) {
-      FeatureSnapshot fs = snapshots.get(i);
+    for (FeatureSnapshot fs : snapshots) {
       if (fs.getPrevious() != null) {
         throw new IllegalStateException("Snapshots contains previous");
       }
@@ -147,8 +170,7 @@ public class StoreRepositoryBenchmark {
       throw new IllegalStateException("Snapshots not equal");
     }
 
-    for (int i = 0; i < FeatureConfigSize; i++) {
-      FeatureSnapshot fs = snapshots.get(i);
+    for (FeatureSnapshot fs : snapshots) {
       if (fs.getPrevious() == null) {
         throw new IllegalStateException("Snapshots does not contain previous");
       }
@@ -158,9 +180,41 @@ public class StoreRepositoryBenchmark {
     }
   }
 
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkGetFeatureSnapshotsGsonCopy() {
+    // Measures the previous behaviour, a Gson round-trip deep copy of every snapshot
+    List<FeatureSnapshot> snapshots = getFeatureSnapshots(getSnapshotCurrentAndPreviousRepository);
+    for (FeatureSnapshot fs : snapshots) {
+      if (gson.fromJson(gson.toJson(fs), FeatureSnapshot.class).getCurrent() == null) {
+        throw new IllegalStateException("Snapshots does not contain current");
+      }
+    }
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void BenchmarkGetFeatureSnapshotsAfterUpdate() {
+    // Measures storing a new version of every flag followed by a snapshot export. Alternates
+    // between two lists as the stored configs must not be modified in place.
+    List<FeatureConfig> configs = ++version % 2 == 0 ? evenFeatureConfigs : oddFeatureConfigs;
+    for (FeatureConfig flag : configs) {
+      flag.setVersion(version);
+    }
+    loadFlags(getSnapshotAfterUpdateRepository, configs);
+    List<FeatureSnapshot> snapshots = getFeatureSnapshots(getSnapshotAfterUpdateRepository);
+    if (snapshots.size() != FeatureConfigSize) {
+      throw new IllegalStateException("Snapshots not equal");
+    }
+  }
+
   private List<FeatureSnapshot> getFeatureSnapshots(Repository repository) {
     List<String> identifiers = repository.getAllFeatureIdentifiers("");
-    List<FeatureSnapshot> snapshots = new LinkedList<>();
+    List<FeatureSnapshot> snapshots = new ArrayList<>(identifiers.size());
     for (String identifier : identifiers) {
       FeatureSnapshot snapshot = repository.getFeatureSnapshot(identifier);
       snapshots.add(snapshot);
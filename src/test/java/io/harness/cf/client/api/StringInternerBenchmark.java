@@ -0,0 +1,113 @@
+package io.harness.cf.client.api;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ How to run it.
+ ./gradlew clean build
+ ./gradlew jmh
+
+ Parses a large environment (20k flags and 2k segments built from the local test cases, every
+ entry parsed from its own JSON document like the poller does) with and without interning.
+ Interning takes the path the repositories take: an interned copy of every parsed entry is made
+ with one long-lived interner, so repeated runs see the hit rate of repeated polls.
+ BenchmarkIngest measures the time, the heap retained by the entries and, with intern=true, by the
+ interner's table is printed once per parameter value during teardown, compare the intern=false
+ and intern=true lines.
+*/
+
+@State(Scope.Thread)
+public class StringInternerBenchmark {
+
+  private static final int FlagCount = 20_000;
+  private static final int SegmentCount = 2_000;
+
+  @Param({"false", "true"})
+  public boolean intern;
+
+  private final Gson gson = new Gson();
+  private final List<String> flagJson = new ArrayList<>(FlagCount);
+  private final List<String> segmentJson = new ArrayList<>(SegmentCount);
+  private StringInterner interner;
+
+  @Setup
+  public void setup() throws Exception {
+    final List<FeatureConfig> templates = new ArrayList<>();
+    templates.add(new TestUtils().GetFeatureConfigFromFile());
+    for (String resource :
+        new String[] {
+          "local-test-cases/percentage-rollout-with-zero-weights.json",
+          "local-test-cases/v2-andor-flags.json",
+          "local-test-cases/pre-req-id-and-value-differ.json"
+        }) {
+      templates.addAll(
+          gson.<List<FeatureConfig>>fromJson(
+              TestUtils.getJsonResource(resource),
+              new TypeToken<List<FeatureConfig>>() {}.getType()));
+    }
+    final List<Segment> segments =
+        gson.fromJson(
+            TestUtils.getJsonResource("local-test-cases/v2-andor-segments.json"),
+            new TypeToken<List<Segment>>() {}.getType());
+
+    for (int i = 0; i < FlagCount; i++) {
+      final FeatureConfig flag = templates.get(i % templates.size());
+      flag.setFeature("flag" + i);
+      flagJson.add(gson.toJson(flag));
+    }
+    for (int i = 0; i < SegmentCount; i++) {
+      final Segment segment = segments.get(i % segments.size());
+      segment.setIdentifier("segment" + i);
+      segmentJson.add(gson.toJson(segment));
+    }
+    interner = new StringInterner();
+  }
+
+  private List<Object> ingest(StringInterner interner) {
+    final List<Object> retained = new ArrayList<>(FlagCount + SegmentCount);
+    for (String json : flagJson) {
+      final FeatureConfig flag = gson.fromJson(json, FeatureConfig.class);
+      retained.add(intern ? interner.copyOf(flag) : flag);
+    }
+    for (String json : segmentJson) {
+      final Segment segment = gson.fromJson(json, Segment.class);
+      retained.add(intern ? interner.copyOf(segment) : segment);
+    }
+    return retained;
+  }
+
+  @Fork(value = 1, warmups = 1)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public List<Object> BenchmarkIngest() {
+    return ingest(interner);
+  }
+
+  @TearDown
+  public void reportFootprint() {
+    // a fresh interner, so that its table is part of the measured heap
+    final long before = usedHeap();
+    final StringInterner interner = new StringInterner();
+    final List<Object> retained = ingest(interner);
+    final long after = usedHeap();
+    System.out.printf(
+        "intern=%s: %d entries and %d interned strings retain %.1f MB%n",
+        intern, retained.size(), interner.size(), (after - before) / (1024.0 * 1024.0));
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,74 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import io.harness.cf.model.Clause;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class StringInternerTest {
+
+  @Test
+  void shouldShareRepeatedStringsBetweenStoredFlagsAndSegments() throws Exception {
+    final Gson gson = new Gson();
+    final String json = TestUtils.makeBasicFeatureJsonForRepoTest();
+    final FeatureConfig first = gson.fromJson(json, FeatureConfig.class);
+    final FeatureConfig second = gson.fromJson(json, FeatureConfig.class);
+    second.setFeature(first.getFeature() + "2");
+    assertNotSame(variation(first), variation(second));
+
+    final Repository repository = new StorageRepository(new CaffeineCache(10000), null, false);
+    repository.setFlag(first.getFeature(), first);
+    repository.setFlag(second.getFeature(), second);
+
+    // the stored copies share their strings, the flags that were passed in are not changed
+    final FeatureConfig storedFirst = repository.getFlag(first.getFeature()).get();
+    final FeatureConfig storedSecond = repository.getFlag(second.getFeature()).get();
+    assertNotSame(first, storedFirst);
+    assertSame(variation(storedFirst), variation(storedSecond));
+    assertSame(storedFirst.getEnvironment(), storedSecond.getEnvironment());
+    assertNotSame(variation(first), variation(second));
+    // variation values are mostly unique and are not interned
+    assertNotSame(
+        storedFirst.getVariations().get(0).getValue(),
+        storedSecond.getVariations().get(0).getValue());
+
+    final Segment segment =
+        Segment.builder()
+            .identifier("segment")
+            .environment(new String(first.getEnvironment()))
+            .rules(
+                Collections.singletonList(
+                    Clause.builder()
+                        .attribute("identifier")
+                        .op(Operators.EQUAL)
+                        .values(Collections.singletonList(new String("value")))
+                        .build()))
+            .build();
+    repository.setSegment("segment", segment);
+    final Segment storedSegment = repository.getSegment("segment").get();
+    assertSame(storedFirst.getEnvironment(), storedSegment.getEnvironment());
+    assertNotSame(storedSegment.getEnvironment(), segment.getEnvironment());
+    assertEquals(Collections.singletonList("value"), storedSegment.getRules().get(0).getValues());
+  }
+
+  @Test
+  void shouldEvictStringsOnceFull() {
+    final StringInterner interner = new StringInterner(2);
+    for (int i = 0; i < 10; i++) {
+      interner.intern(new String("value" + i));
+    }
+    assertTrue(interner.size() <= 2);
+
+    final String recent = interner.intern(new String("recent"));
+    assertSame(recent, interner.intern(new String("recent")));
+    assertNull(interner.intern((String) null));
+  }
+
+  private static String variation(FeatureConfig flag) {
+    return flag.getVariations().get(0).getIdentifier();
+  }
+}
@@ -0,0 +1,71 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class StripedExecutorTest {
+
+  @Test
+  void shouldRunTasksForOneKeyInSubmissionOrder() throws Exception {
+    final StripedExecutor executor = new StripedExecutor(4, "TestStripe");
+    final List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch done = new CountDownLatch(1000);
+    for (int i = 0; i < 1000; i++) {
+      final int event = i;
+      executor.execute(
+          "flag/test",
+          () -> {
+            applied.add(event);
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, applied.get(i));
+    }
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldRunDifferentKeysInParallelAndReportQueueDepth() throws Exception {
+    final StripedExecutor executor = new StripedExecutor(2, "TestStripe");
+    // find a key which lands on the other stripe than "a"
+    String other = "b";
+    for (int i = 0; stripe(other) == stripe("a"); i++) {
+      other = "b" + i;
+    }
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch otherRan = new CountDownLatch(1);
+    executor.execute("a", () -> awaitQuietly(release));
+    executor.execute("a", () -> {});
+    executor.execute(other, otherRan::countDown);
+
+    assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+    final StripeStats blocked = executor.stats().get(stripe("a"));
+    assertEquals(2, blocked.getQueueDepth());
+    assertEquals(0, blocked.getCompletedCount());
+
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  private static int stripe(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % 2;
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,14 +1,24 @@
 package io.harness.cf.client.api;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import io.harness.cf.client.connector.Connector;
 import io.harness.cf.client.connector.ConnectorException;
 import io.harness.cf.client.connector.Updater;
 import io.harness.cf.client.dto.Message;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 
 public class UpdateProcessorTest {
@@ -40,4 +50,77 @@ public class UpdateProcessorTest {
     verify(mockConnector, times(0)).getFlag(anyString());
     verify(mockRepo, times(1)).deleteFlag(anyString());
   }
+
+  @Test
+  public void shouldMergeEventsArrivingWhileFetchIsInFlight() throws Exception {
+    final Connector mockConnector = mock(Connector.class);
+    final Repository mockRepo = mock(Repository.class);
+    final Updater mockUpdater = mock(Updater.class);
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFetch = new CountDownLatch(1);
+    final FeatureConfig flag = FeatureConfig.builder().feature("test").build();
+    when(mockConnector.getFlag("test"))
+        .thenAnswer(
+            invocation -> {
+              fetchStarted.countDown();
+              releaseFetch.await(5, TimeUnit.SECONDS);
+              return flag;
+            });
+
+    final UpdateProcessor processor = new UpdateProcessor(mockConnector, mockRepo, mockUpdater);
+    processor.update(new Message("patch", "flag", "test", 1));
+    assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+    for (int version = 2; version <= 10; version++) {
+      processor.update(new Message("patch", "flag", "test", version));
+    }
+    releaseFetch.countDown();
+
+    verify(mockRepo, timeout(5000).times(2)).setFlag("test", flag);
+    verify(mockConnector, times(2)).getFlag("test");
+    processor.close();
+  }
+
+  @Test
+  public void shouldFetchOnceForEventsWithinDebounceWindow() throws Exception {
+    final Connector mockConnector = mock(Connector.class);
+    final Repository mockRepo = mock(Repository.class);
+    final Updater mockUpdater = mock(Updater.class);
+    final Segment segment = Segment.builder().identifier("test").build();
+    when(mockConnector.getSegment("test")).thenReturn(segment);
+
+    final UpdateProcessor processor =
+        new UpdateProcessor(mockConnector, mockRepo, mockUpdater, 500);
+    for (int version = 1; version <= 10; version++) {
+      processor.update(new Message("patch", "target-segment", "test", version));
+    }
+    processor.update(new Message("delete", "flag", "other", 1));
+
+    verify(mockRepo, timeout(5000).times(1)).setSegment("test", segment);
+    verify(mockRepo, timeout(5000).times(1)).deleteFlag("other");
+    verify(mockConnector, times(1)).getSegment("test");
+    assertTrue(debounceThreads().allMatch(Thread::isDaemon));
+    processor.close();
+  }
+
+  @Test
+  public void shouldNotStartDebounceThreadWithoutDebounce() throws Exception {
+    final Connector mockConnector = mock(Connector.class);
+    final Repository mockRepo = mock(Repository.class);
+    final Updater mockUpdater = mock(Updater.class);
+
+    // threads of processors closed by other tests may still be terminating
+    final Set<Thread> existing = debounceThreads().collect(Collectors.toSet());
+
+    final UpdateProcessor processor = new UpdateProcessor(mockConnector, mockRepo, mockUpdater);
+    processor.update(new Message("delete", "flag", "test", 1));
+
+    verify(mockRepo, timeout(5000).times(1)).deleteFlag("test");
+    assertTrue(debounceThreads().allMatch(existing::contains));
+    processor.close();
+  }
+
+  private static Stream<Thread> debounceThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().equals("StreamDebounceThread"));
+  }
 }
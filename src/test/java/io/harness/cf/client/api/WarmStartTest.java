@@ -0,0 +1,113 @@
+package io.harness.cf.client.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WarmStartTest {
+
+  private final Gson gson = new Gson();
+
+  @TempDir Path directory;
+
+  @Test
+  void shouldLoadFileWithoutRemovingExistingEntriesAndDeleteStaleOnesOnReconcile()
+      throws IOException {
+    final Path file = directory.resolve("warm-start.json");
+    writeSnapshot(
+        file, Arrays.asList(flag("a", 1L), flag("b", 1L), null), Arrays.asList(segment("s1")));
+    final Repository repository = new StorageRepository(new CaffeineCache(100), null, false);
+    repository.setFlag("existing", flag("existing", 1L));
+
+    final WarmStart warmStart = new WarmStart(file, repository, 3600);
+    warmStart.load();
+
+    assertEquals(Arrays.asList("a", "b", "existing"), repository.getAllFeatureIdentifiers(""));
+    assertTrue(repository.getSegment("s1").isPresent());
+    assertTrue(warmStart.getSnapshotAge().isPresent());
+
+    // the first fetch from the server replaces everything that was loaded from the file
+    repository.replaceAll(Collections.singletonList(flag("a", 2L)), Collections.emptyList());
+    warmStart.reconcile();
+
+    assertEquals(Collections.singletonList("a"), repository.getAllFeatureIdentifiers(""));
+    assertFalse(repository.getSegment("s1").isPresent());
+    assertFalse(warmStart.getSnapshotAge().isPresent());
+
+    warmStart.close();
+    final WarmStart.Snapshot written = readSnapshot(file);
+    assertEquals(1, written.flags.size());
+    assertEquals(2L, written.flags.get(0).getVersion());
+    assertTrue(written.segments.isEmpty());
+    assertFalse(Files.exists(directory.resolve("warm-start.json.tmp")));
+  }
+
+  @Test
+  void shouldIgnoreCorruptOrTruncatedFile() throws IOException {
+    final Path file = directory.resolve("warm-start.json");
+    writeSnapshot(file, Arrays.asList(flag("a", 1L), flag("b", 1L)), Collections.emptyList());
+    final byte[] complete = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(complete, complete.length / 2));
+    final Repository repository = new StorageRepository(new CaffeineCache(100), null, false);
+    repository.setFlag("existing", flag("existing", 1L));
+
+    final WarmStart warmStart = new WarmStart(file, repository, 3600);
+    warmStart.load();
+
+    assertEquals(Collections.singletonList("existing"), repository.getAllFeatureIdentifiers(""));
+    assertFalse(warmStart.getSnapshotAge().isPresent());
+    warmStart.close();
+  }
+
+  @Test
+  void shouldLeaveCurrentFileInPlaceWhenWriteFails() throws IOException {
+    final Path file = directory.resolve("warm-start.json");
+    writeSnapshot(file, Collections.singletonList(flag("a", 1L)), Collections.emptyList());
+    final byte[] before = Files.readAllBytes(file);
+    // the temporary file cannot be created, so the write fails before anything is moved
+    Files.createDirectory(directory.resolve("warm-start.json.tmp"));
+    final Repository repository = new StorageRepository(new CaffeineCache(100), null, false);
+
+    final WarmStart warmStart = new WarmStart(file, repository, 3600);
+    repository.replaceAll(Collections.singletonList(flag("b", 1L)), Collections.emptyList());
+    warmStart.reconcile();
+    warmStart.close();
+
+    assertArrayEquals(before, Files.readAllBytes(file));
+  }
+
+  private void writeSnapshot(Path file, List<FeatureConfig> flags, List<Segment> segments)
+      throws IOException {
+    final WarmStart.Snapshot snapshot = new WarmStart.Snapshot();
+    snapshot.createdAt = System.currentTimeMillis();
+    snapshot.flags = flags;
+    snapshot.segments = segments;
+    Files.write(file, gson.toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private WarmStart.Snapshot readSnapshot(Path file) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return gson.fromJson(reader, WarmStart.Snapshot.class);
+    }
+  }
+
+  private static FeatureConfig flag(String identifier, long version) {
+    return FeatureConfig.builder().feature(identifier).version(version).build();
+  }
+
+  private static Segment segment(String identifier) {
+    return Segment.builder().identifier(identifier).version(1L).build();
+  }
+}
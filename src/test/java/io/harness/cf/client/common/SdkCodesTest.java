@@ -6,6 +6,7 @@ import static org.mockito.Mockito.when;
 
 import io.harness.cf.client.api.BaseConfig;
 import io.harness.cf.client.dto.Target;
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -36,6 +37,8 @@ class SdkCodesTest {
           warnStreamDisconnected(null);
           warnPostMetricsFailed(null);
           warnPostMetricsFailed("error 3");
+          warnInvalidMatchRegex("clause1", "user-[", "Unclosed character class");
+          warnPrerequisiteCycle("flag1", Arrays.asList("flag1", "flag2", "flag1"));
           warnDefaultVariationServed("id1_6001visible", null, null, Mockito.mock(BaseConfig.class));
           warnDefaultVariationServed(
               "id1_6001visible", null, "defaultVal", Mockito.mock(BaseConfig.class));
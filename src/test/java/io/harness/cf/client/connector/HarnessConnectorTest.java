@@ -10,9 +10,27 @@ import io.harness.cf.api.ClientApi;
 import io.harness.cf.api.MetricsApi;
 import io.harness.cf.client.api.MissingSdkKeyException;
 import io.harness.cf.client.api.dispatchers.CannedResponses;
+import io.harness.cf.client.api.dispatchers.TestWebServerDispatcher;
+import io.harness.cf.model.FeatureConfig;
+import io.harness.cf.model.Segment;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullSource;
@@ -174,4 +192,125 @@ class HarnessConnectorTest {
       assertFalse(nextMap.containsKey("Harness-EnvironmentID"));
     }
   }
+
+  @Test
+  void shouldStreamFlagsAndSegmentsFromResponseBody() throws Exception {
+    try (MockWebServer mockSvr = new MockWebServer()) {
+      mockSvr.setDispatcher(new TestWebServerDispatcher());
+      mockSvr.start();
+
+      final HarnessConnector connector =
+          HarnessConnectorUtils.makeConnector(mockSvr.getHostName(), mockSvr.getPort());
+      connector.authenticate();
+
+      final List<FeatureConfig> flags = new ArrayList<>();
+      connector.streamFlags(flags::add);
+      final List<Segment> segments = new ArrayList<>();
+      connector.streamSegments(segments::add);
+
+      assertFalse(flags.isEmpty());
+      assertFalse(segments.isEmpty());
+      assertEquals(connector.getFlags(), flags);
+      assertEquals(connector.getSegments(), segments);
+      connector.close();
+    }
+  }
+
+  @Test
+  void shouldSkipUnmodifiedFlagsAndSegments() throws Exception {
+    try (MockWebServer mockSvr = new MockWebServer()) {
+      // flags are served with an ETag, segments without one so their body hash is compared
+      mockSvr.setDispatcher(
+          new TestWebServerDispatcher() {
+            @Override
+            @NotNull
+            public MockResponse dispatch(@NotNull RecordedRequest request)
+                throws InterruptedException {
+              if (Objects.requireNonNull(request.getPath()).contains("/feature-configs?")) {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                  return new MockResponse().setResponseCode(304);
+                }
+                return super.dispatch(request).setHeader("ETag", "\"v1\"");
+              }
+              return super.dispatch(request);
+            }
+          });
+      mockSvr.start();
+
+      final HarnessConnector connector =
+          HarnessConnectorUtils.makeConnector(mockSvr.getHostName(), mockSvr.getPort());
+      connector.authenticate();
+
+      final List<FeatureConfig> flags = new ArrayList<>();
+      final List<Segment> segments = new ArrayList<>();
+      assertTrue(connector.streamFlags(flags::add));
+      assertTrue(connector.streamSegments(segments::add));
+      assertFalse(flags.isEmpty());
+      assertFalse(segments.isEmpty());
+
+      final List<FeatureConfig> unmodifiedFlags = new ArrayList<>();
+      final List<Segment> unmodifiedSegments = new ArrayList<>();
+      assertFalse(connector.streamFlags(unmodifiedFlags::add));
+      assertFalse(connector.streamSegments(unmodifiedSegments::add));
+      assertTrue(unmodifiedFlags.isEmpty());
+      assertTrue(unmodifiedSegments.isEmpty());
+
+      // once the validators are cleared both lists are handed out again
+      connector.clearListValidators();
+      final List<FeatureConfig> refetchedFlags = new ArrayList<>();
+      final List<Segment> refetchedSegments = new ArrayList<>();
+      assertTrue(connector.streamFlags(refetchedFlags::add));
+      assertTrue(connector.streamSegments(refetchedSegments::add));
+      assertEquals(flags, refetchedFlags);
+      assertEquals(segments, refetchedSegments);
+      connector.close();
+    }
+  }
+
+  @Test
+  void shouldParseBodyWithoutETagOnlyWhenItsHashChanged() throws Exception {
+    try (MockWebServer mockSvr = new MockWebServer()) {
+      final AtomicBoolean emptySegments = new AtomicBoolean();
+      mockSvr.setDispatcher(
+          new TestWebServerDispatcher() {
+            @Override
+            @NotNull
+            public MockResponse dispatch(@NotNull RecordedRequest request)
+                throws InterruptedException {
+              if (Objects.requireNonNull(request.getPath()).contains("/target-segments?")
+                  && emptySegments.get()) {
+                return new MockResponse().setResponseCode(200).setBody("[]");
+              }
+              return super.dispatch(request);
+            }
+          });
+      mockSvr.start();
+
+      final HarnessConnector connector =
+          HarnessConnectorUtils.makeConnector(mockSvr.getHostName(), mockSvr.getPort());
+      connector.authenticate();
+      final Set<Path> spooled = spooledFiles();
+
+      final List<Segment> segments = new ArrayList<>();
+      assertTrue(connector.streamSegments(segments::add));
+      assertFalse(segments.isEmpty());
+      assertFalse(connector.streamSegments(segments::add));
+
+      // a changed body is parsed again, the temporary copies are removed either way
+      emptySegments.set(true);
+      final List<Segment> changed = new ArrayList<>();
+      assertTrue(connector.streamSegments(changed::add));
+      assertTrue(changed.isEmpty());
+      assertEquals(spooled, spooledFiles());
+      connector.close();
+    }
+  }
+
+  private static Set<Path> spooledFiles() throws IOException {
+    try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith("ff-list"))
+          .collect(Collectors.toSet());
+    }
+  }
 }